@@ -1,25 +1,33 @@
 package de.mimuc.senseeverything.activity;
 
 import java.io.File;
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 import android.content.Context;
 import android.os.Build;
 import android.os.Environment;
 import android.util.Log;
 
+import de.mimuc.senseeverything.helpers.ReadingFormatter;
+
 public class CONST
 {
 	private static final String TAG = "CONST";
 	
-	public static final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
-	
 	public static final String SP_LOG_EVERYTHING = "sp_log_everything";
 	public static final String SP_Accessibility_LOG_EVERYTHING = "sp_log_everything";
 	public static final String KEY_LOG_EVERYTHING_RUNNING = "key_log_everything_running";
 	public static final String KEY_Accessibility_LOG_EVERYTHING_RUNNING = "key_Accessibility_LOG_everything_running";
+	public static final String KEY_READING_STORE = "key_reading_store";
+	public static final String KEY_SENSOR_MAX_REPORT_LATENCY_US = "key_sensor_max_report_latency_us_";
+	public static final String KEY_SENSOR_READING_MODE = "key_sensor_reading_mode_";
+	public static final String KEY_SENSOR_AGGREGATION_WINDOW_MS = "key_sensor_aggregation_window_ms_";
+	public static final String KEY_UPLOAD_COMPRESSION_LEVEL = "key_upload_compression_level";
+	public static final String KEY_UPLOAD_BATCH_SIZE = "key_upload_batch_size";
+	public static final String KEY_UPLOAD_BATCH_SEQUENCE = "key_upload_batch_sequence";
+	public static final String KEY_FILE_UPLOAD_READING_ID = "key_file_upload_reading_id_";
+	public static final String KEY_CONVERSATION_STREAMING_DETECTION = "key_conversation_streaming_detection";
+	public static final String KEY_CONVERSATION_SPEECH_GATE = "key_conversation_speech_gate";
+	public static final String KEY_CONVERSATION_AUDIO_ENCODING = "key_conversation_audio_encoding";
 	
 	
 	
@@ -62,7 +70,7 @@ public class CONST
 			deviceId = "NULL";
 		}
 		Log.d(TAG, "DEVICE ID: " + deviceId);*/
-		String LOG_DIR = dateFormat.format(new Date());
+		String LOG_DIR = ReadingFormatter.get().appendTimestamp(System.currentTimeMillis()).toString();
 
 		ROOT_FOLDER = commonDocumentDirPath(BASE_DIR + File.separator + LOG_DIR + File.separator);
 
@@ -80,13 +88,6 @@ public class CONST
 	public static boolean sdk29AndUp() {
 	 	return (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q);
 	}
-
-	public static final NumberFormat numberFormat = NumberFormat.getInstance();
-
-	static {
-		numberFormat.setMaximumFractionDigits(Integer.MAX_VALUE);
-		numberFormat.setGroupingUsed(false);
-	}
 }
 	
 
@@ -2,9 +2,11 @@
 
 package de.mimuc.senseeverything.activity
 
+import android.app.Activity
 import android.app.Application
 import android.content.Context
 import android.content.Intent
+import android.content.SharedPreferences
 import android.os.Bundle
 import android.util.Log
 import androidx.activity.ComponentActivity
@@ -44,7 +46,6 @@ import androidx.compose.ui.unit.dp
 import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.viewModelScope
 import androidx.lifecycle.viewmodel.compose.viewModel
-import com.android.volley.VolleyError
 import dagger.hilt.android.AndroidEntryPoint
 import dagger.hilt.android.lifecycle.HiltViewModel
 import de.mimuc.senseeverything.activity.esm.QuestionnaireActivity
@@ -52,22 +53,26 @@ import de.mimuc.senseeverything.activity.ui.theme.AppandroidTheme
 import de.mimuc.senseeverything.api.ApiClient
 import de.mimuc.senseeverything.api.decodeError
 import de.mimuc.senseeverything.api.fetchAndPersistQuestionnaires
+import de.mimuc.senseeverything.api.getJson
+import de.mimuc.senseeverything.api.postJson
+import de.mimuc.senseeverything.api.model.ConversationRecordingConfiguration
 import de.mimuc.senseeverything.api.model.EnrolmentResponse
 import de.mimuc.senseeverything.api.model.FullQuestionnaire
+import de.mimuc.senseeverything.api.model.SensorReadingConfiguration
 import de.mimuc.senseeverything.api.model.Study
+import de.mimuc.senseeverything.api.model.StudyConfiguration
 import de.mimuc.senseeverything.data.DataStoreManager
+import de.mimuc.senseeverything.data.SensorReadingStores
 import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.db.LogDataPartitionRegistry
 import kotlinx.coroutines.Dispatchers.IO
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.launch
-import kotlinx.coroutines.suspendCancellableCoroutine
 import kotlinx.coroutines.withContext
 import org.json.JSONObject
 import javax.inject.Inject
-import kotlin.coroutines.resume
-import kotlin.coroutines.suspendCoroutine
 
 @AndroidEntryPoint
 class StudyEnrolment : ComponentActivity() {
@@ -148,17 +153,13 @@ class EnrolmentViewModel @Inject constructor(
             val body = JSONObject()
             body.put("enrolmentKey", text)
 
-            val response = suspendCoroutine { continuation ->
-                client.post("https://sisensing.medien.ifi.lmu.de/v1/enrolment", body, emptyMap(),
-                    { response ->
-                        continuation.resume(response)
-                    },
-                    { error ->
-                        continuation.resume(error)
-                    })
+            val response = try {
+                client.postJson("https://sisensing.medien.ifi.lmu.de/v1/enrolment", body)
+            } catch (e: Exception) {
+                e
             }
 
-            if (response is VolleyError) {
+            if (response is Exception) {
                 _isEnrolled.value = false
                 _isLoading.value = false
 
@@ -182,11 +183,57 @@ class EnrolmentViewModel @Inject constructor(
                     studyId,
                     enrolmentResponse.configuration
                 )
+                saveSensorReadingModes(context, enrolmentResponse.configuration)
+                saveConversationRecording(context, enrolmentResponse.configuration.conversationRecording)
                 finishedEnrolment()
             }
         }
     }
 
+    /**
+     * Sensors run in the remote process and cannot read the data store, so their reading modes are
+     * handed over through the shared preferences.
+     */
+    private fun saveSensorReadingModes(context: Context, configuration: StudyConfiguration) {
+        val editor = context.getSharedPreferences(CONST.SP_LOG_EVERYTHING, Activity.MODE_PRIVATE).edit()
+        removeSensorReadingModes(context, editor)
+        for ((sensorName, readingConfiguration) in configuration.sensorReadingModes) {
+            editor.putString(CONST.KEY_SENSOR_READING_MODE + sensorName, readingConfiguration.mode.name)
+            // WindowedAggregator needs a positive window, whatever the configuration says
+            val windowMs = readingConfiguration.windowMs.coerceIn(
+                SensorReadingConfiguration.MIN_AGGREGATION_WINDOW_MS,
+                SensorReadingConfiguration.MAX_AGGREGATION_WINDOW_MS
+            )
+            editor.putLong(CONST.KEY_SENSOR_AGGREGATION_WINDOW_MS + sensorName, windowMs)
+        }
+        editor.commit()
+    }
+
+    /**
+     * Like the reading modes, the conversation sensor reads its recording settings from the shared
+     * preferences. Settings the study leaves out are removed, so the sensor uses its defaults.
+     */
+    private fun saveConversationRecording(context: Context, recording: ConversationRecordingConfiguration) {
+        val editor = context.getSharedPreferences(CONST.SP_LOG_EVERYTHING, Activity.MODE_PRIVATE).edit()
+        if (recording.streamingDetection != null) {
+            editor.putBoolean(CONST.KEY_CONVERSATION_STREAMING_DETECTION, recording.streamingDetection)
+        } else {
+            editor.remove(CONST.KEY_CONVERSATION_STREAMING_DETECTION)
+        }
+        editor.putString(CONST.KEY_CONVERSATION_SPEECH_GATE, recording.speechGate)
+        editor.putString(CONST.KEY_CONVERSATION_AUDIO_ENCODING, recording.audioEncoding)
+        editor.commit()
+    }
+
+    private fun removeSensorReadingModes(context: Context, editor: SharedPreferences.Editor) {
+        val sp = context.getSharedPreferences(CONST.SP_LOG_EVERYTHING, Activity.MODE_PRIVATE)
+        for (key in sp.all.keys) {
+            if (key.startsWith(CONST.KEY_SENSOR_READING_MODE) || key.startsWith(CONST.KEY_SENSOR_AGGREGATION_WINDOW_MS)) {
+                editor.remove(key)
+            }
+        }
+    }
+
     private fun loadStudy(context: Context, studyId: Int) {
         if (studyId <= 0) {
             return
@@ -194,14 +241,10 @@ class EnrolmentViewModel @Inject constructor(
 
         viewModelScope.launch {
             val client = ApiClient.getInstance(context)
-            val response = suspendCancellableCoroutine { continuation ->
-                client.getJson("https://sisensing.medien.ifi.lmu.de/v1/study/$studyId",
-                    { response ->
-                        continuation.resume(response)
-                    },
-                    { error ->
-                        continuation.resume(null)
-                    })
+            val response = try {
+                client.getJson("https://sisensing.medien.ifi.lmu.de/v1/study/$studyId")
+            } catch (e: Exception) {
+                null
             }
 
             if (response != null) {
@@ -239,7 +282,17 @@ class EnrolmentViewModel @Inject constructor(
 
             withContext(IO) {
                 database.logDataDao().deleteAll()
+                database.motionChunkDao().deleteAll()
+                SensorReadingStores.getSegmentLog(context).deleteAll()
+                LogDataPartitionRegistry.getInstance(context).dropAll()
                 database.close()
+
+                val editor = context.getSharedPreferences(CONST.SP_LOG_EVERYTHING, Activity.MODE_PRIVATE).edit()
+                removeSensorReadingModes(context, editor)
+                editor.remove(CONST.KEY_CONVERSATION_STREAMING_DETECTION)
+                editor.remove(CONST.KEY_CONVERSATION_SPEECH_GATE)
+                editor.remove(CONST.KEY_CONVERSATION_AUDIO_ENCODING)
+                editor.commit()
             }
 
             _isEnrolled.value = false
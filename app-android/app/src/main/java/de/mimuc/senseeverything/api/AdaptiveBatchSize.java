@@ -0,0 +1,57 @@
+package de.mimuc.senseeverything.api;
+
+/**
+ * Chooses the number of readings per upload batch like AIMD congestion control: the size grows by
+ * {@link #INCREASE} after every batch that was acknowledged within {@link #TARGET_LATENCY_MS} and
+ * is halved when a batch took longer or failed.
+ * <p>
+ * Growth also stops once larger batches no longer raise the throughput (readings per second,
+ * smoothed over the last batches), since a saturated link only adds latency.
+ */
+public class AdaptiveBatchSize {
+    public static final int MIN_SIZE = 50;
+    public static final int MAX_SIZE = 5000;
+    public static final int DEFAULT_SIZE = 200;
+
+    static final int INCREASE = 200;
+    static final long TARGET_LATENCY_MS = 3000;
+    // growing is only worth it while throughput keeps up with the best seen so far
+    private static final double THROUGHPUT_TOLERANCE = 0.9;
+    private static final double SMOOTHING = 0.3;
+
+    private int size;
+    private double throughput = 0;
+    private double bestThroughput = 0;
+
+    public AdaptiveBatchSize(int initialSize) {
+        this.size = clamp(initialSize);
+    }
+
+    public synchronized int get() {
+        return size;
+    }
+
+    public synchronized void onAcknowledged(int readings, long latencyMs) {
+        if (latencyMs > TARGET_LATENCY_MS) {
+            size = clamp(size / 2);
+            return;
+        }
+
+        double batchThroughput = readings * 1000.0 / Math.max(1, latencyMs);
+        throughput = throughput == 0 ? batchThroughput : SMOOTHING * batchThroughput + (1 - SMOOTHING) * throughput;
+        bestThroughput = Math.max(bestThroughput, throughput);
+
+        // batches smaller than the planned size (the end of the backlog) say little about the link
+        if (readings >= size / 2 && throughput >= THROUGHPUT_TOLERANCE * bestThroughput) {
+            size = clamp(size + INCREASE);
+        }
+    }
+
+    public synchronized void onFailure() {
+        size = clamp(size / 2);
+    }
+
+    private static int clamp(int value) {
+        return Math.max(MIN_SIZE, Math.min(MAX_SIZE, value));
+    }
+}
@@ -1,106 +1,108 @@
 package de.mimuc.senseeverything.api;
 
+import android.app.ActivityManager;
 import android.content.Context;
-
-import com.android.volley.AuthFailureError;
-import com.android.volley.NetworkResponse;
-import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.Response;
-import com.android.volley.VolleyError;
-import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.StringRequest;
-import com.android.volley.toolbox.Volley;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.util.HashMap;
-import java.util.Map;
-
+import android.os.Process;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * The one HTTP client of a process. All backend traffic goes through the same {@link OkHttpClient},
+ * so requests share its connection pool and dispatcher and are multiplexed over HTTP/2 where the
+ * backend supports it. Every call is timed by {@link RequestMetrics}.
+ * <p>
+ * In the main process GET responses are kept in a disk cache and revalidated with their ETag. The
+ * sensor process has no cache, a cache directory must not be used by two processes.
+ * <p>
+ * Coroutines use the suspending requests in {@code ApiRequests.kt}, workers that stream request
+ * bodies use {@link #getHttpClient()} directly.
+ */
 public class ApiClient {
+    private static final String CACHE_DIRECTORY = "http-cache";
+    private static final long CACHE_SIZE = 10 * 1024 * 1024;
+
     private static ApiClient instance;
-    private RequestQueue requestQueue;
+    private final OkHttpClient httpClient;
+    private volatile boolean serverAcceptsGzip = false;
+    private volatile boolean serverAcceptsReadingBatches = false;
 
     private ApiClient(Context context) {
-        requestQueue = Volley.newRequestQueue(context.getApplicationContext());
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .eventListenerFactory(RequestMetrics.FACTORY)
+                .addInterceptor(chain -> {
+                    okhttp3.Response response = chain.proceed(chain.request());
+                    String acceptEncoding = response.header("Accept-Encoding");
+                    if (acceptEncoding != null) {
+                        serverAcceptsGzip = acceptEncoding.contains("gzip");
+                    }
+                    String acceptPost = response.header("Accept-Post");
+                    if (acceptPost != null) {
+                        serverAcceptsReadingBatches = acceptPost.contains(ReadingBatchEncoder.CONTENT_TYPE);
+                    }
+                    return response;
+                });
+
+        if (isMainProcess(context)) {
+            builder.cache(new Cache(new File(context.getCacheDir(), CACHE_DIRECTORY), CACHE_SIZE));
+        }
+
+        httpClient = builder.build();
     }
 
     public static synchronized ApiClient getInstance(Context context) {
         if (instance == null) {
-            instance = new ApiClient(context);
+            instance = new ApiClient(context.getApplicationContext());
         }
         return instance;
     }
 
-    public <T> void addToRequestQueue(Request<T> request) {
-        requestQueue.add(request);
-    }
-
-    // GET request
-    public void get(String url, Response.Listener<String> listener, Response.ErrorListener errorListener) {
-        StringRequest stringRequest = new StringRequest(Request.Method.GET, url, listener, errorListener);
-        addToRequestQueue(stringRequest);
+    /**
+     * The shared client, for requests the suspending helpers do not cover, e.g. streamed request
+     * bodies.
+     */
+    public OkHttpClient getHttpClient() {
+        return httpClient;
     }
 
-    public void getJson(String url, Response.Listener<JSONObject> listener, Response.ErrorListener errorListener) {
-        JsonObjectRequest jsonObjectRequest = new JsonObjectRequest(Request.Method.GET, url, null, listener, errorListener);
-        addToRequestQueue(jsonObjectRequest);
+    /**
+     * Whether the backend advertised gzip request bodies with an {@code Accept-Encoding} response
+     * header. Nothing is known before the first response of {@link #getHttpClient()}, so the first
+     * request of a process is sent uncompressed.
+     */
+    public boolean serverAcceptsGzip() {
+        return serverAcceptsGzip;
     }
 
-    public void getJsonArray(String url, Response.Listener<JSONArray> listener, Response.ErrorListener errorListener) {
-        MyJsonArrayRequest request = new MyJsonArrayRequest(Request.Method.GET, url, null, listener, errorListener);
-        addToRequestQueue(request);
+    /**
+     * Whether the backend advertised the binary format of {@link ReadingBatchEncoder} with an
+     * {@code Accept-Post} header on a previous reading upload.
+     */
+    public boolean serverAcceptsReadingBatches() {
+        return serverAcceptsReadingBatches;
     }
 
-    // POST request
-    public void post(String url, JSONObject jsonRequest, Map<String, String> headers, Response.Listener<JSONObject> listener, Response.ErrorListener errorListener) {
-        MyJsonObjectRequest jsonObjectRequest = new MyJsonObjectRequest(Request.Method.POST, url, jsonRequest, listener, errorListener);
-        if (!headers.isEmpty()) {
-           jsonObjectRequest.setHeaders(headers);
+    private static boolean isMainProcess(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        List<ActivityManager.RunningAppProcessInfo> processes = activityManager.getRunningAppProcesses();
+        if (processes == null) {
+            return false;
         }
-        addToRequestQueue(jsonObjectRequest);
-    }
-
-    public void postArray(String url, JSONArray jsonRequest, Map<String, String> headers, Response.Listener<JSONArray> listener, Response.ErrorListener errorListener) {
-        MyJsonArrayRequest request = new MyJsonArrayRequest(Request.Method.POST, url, jsonRequest, listener, errorListener);
-        if (!headers.isEmpty()) {
-            request.setHeaders(headers);
-        }
-        addToRequestQueue(request);
-    }
-
-    public void postFile(String url, String fileName, String contentType, byte[] fileData, Map<String, String> formData, Map<String, String> headers, Response.Listener<JSONObject> listener, Response.ErrorListener errorListener) {
-        MyMultipartRequest request = new MyMultipartRequest(Request.Method.POST, url, new Response.Listener<NetworkResponse>() {
-            @Override
-            public void onResponse(NetworkResponse response) {
-                String resultResponse = new String(response.data);
-                try {
-                    JSONObject result = new JSONObject(resultResponse);
 
-                    listener.onResponse(result);
-                } catch (JSONException e) {
-                    errorListener.onErrorResponse(new VolleyError("could not parse response"));
-                }
+        for (ActivityManager.RunningAppProcessInfo process : processes) {
+            if (process.pid == Process.myPid()) {
+                return process.processName.equals(context.getPackageName());
             }
-        }, errorListener) {
-            @Override
-            protected Map<String, String> getParams() {
-                return formData;
-            }
-
-            @Override
-            protected Map<String, DataPart> getByteData() {
-                Map<String, DataPart> params = new HashMap<>();
-                params.put("file", new DataPart(fileName, fileData, contentType));
-                return params;
-            }
-        };
-
-        if (!headers.isEmpty()) {
-            request.setHeaders(headers);
         }
-        addToRequestQueue(request);
+        return false;
     }
 }
@@ -0,0 +1,92 @@
+package de.mimuc.senseeverything.api
+
+import kotlinx.coroutines.suspendCancellableCoroutine
+import okhttp3.CacheControl
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+import okhttp3.Response
+import org.json.JSONArray
+import org.json.JSONObject
+import java.io.IOException
+import kotlin.coroutines.resumeWithException
+
+/**
+ * The backend rejected a request, [error] holds the decoded error response.
+ */
+class ApiException(val error: ApiError) : Exception("HTTP ${error.httpCode}: ${error.message}")
+
+suspend fun ApiClient.getJson(url: String, headers: Map<String, String> = emptyMap()): JSONObject {
+    return JSONObject(get(url, headers))
+}
+
+suspend fun ApiClient.getJsonArray(url: String, headers: Map<String, String> = emptyMap()): JSONArray {
+    return JSONArray(get(url, headers))
+}
+
+suspend fun ApiClient.postJson(url: String, body: JSONObject, headers: Map<String, String> = emptyMap()): JSONObject {
+    return JSONObject(execute(jsonRequest(url, headers).post(body.toString().toRequestBody(JSON)).build()))
+}
+
+suspend fun ApiClient.postJsonArray(url: String, body: JSONArray, headers: Map<String, String> = emptyMap()): JSONArray {
+    return JSONArray(execute(jsonRequest(url, headers).post(body.toString().toRequestBody(JSON)).build()))
+}
+
+/**
+ * GETs are revalidated with the cached ETag, without a connection the cached response is used if
+ * there is one.
+ */
+private suspend fun ApiClient.get(url: String, headers: Map<String, String>): String {
+    return try {
+        execute(jsonRequest(url, headers).get().build())
+    } catch (e: IOException) {
+        try {
+            execute(jsonRequest(url, headers).cacheControl(CacheControl.FORCE_CACHE).get().build())
+        } catch (cacheMiss: Exception) {
+            throw e
+        }
+    }
+}
+
+private fun jsonRequest(url: String, headers: Map<String, String>): Request.Builder {
+    val builder = Request.Builder()
+        .url(url)
+        .header("Accept", "application/json")
+    for ((name, value) in headers) {
+        builder.header(name, value)
+    }
+    return builder
+}
+
+/**
+ * Enqueues the request on the shared client and suspends until the body was read, which happens on
+ * the thread of OkHttp's dispatcher, not on the caller's. Cancelling the coroutine cancels the call.
+ */
+private suspend fun ApiClient.execute(request: Request): String = suspendCancellableCoroutine { continuation ->
+    val call = httpClient.newCall(request)
+    continuation.invokeOnCancellation { call.cancel() }
+
+    call.enqueue(object : Callback {
+        override fun onFailure(call: Call, e: IOException) {
+            continuation.resumeWithException(e)
+        }
+
+        override fun onResponse(call: Call, response: Response) {
+            continuation.resumeWith(runCatching { readBody(response) })
+        }
+    })
+}
+
+private fun readBody(response: Response): String {
+    response.use {
+        val body = it.body?.string() ?: ""
+        if (!it.isSuccessful) {
+            throw ApiException(decodeError(it.code, body))
+        }
+        return body
+    }
+}
+
+private val JSON = "application/json; charset=utf-8".toMediaType()
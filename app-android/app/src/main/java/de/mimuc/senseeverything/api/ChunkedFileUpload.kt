@@ -0,0 +1,154 @@
+package de.mimuc.senseeverything.api
+
+import okhttp3.MediaType
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okio.BufferedSink
+import okio.source
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.security.MessageDigest
+import java.util.Base64
+
+/**
+ * Uploads a file to the chunked `/v1/reading/:readingId/file` endpoint in chunks of [chunkSize]
+ * bytes. Every chunk is read from disk while its request is written, so memory use does not depend
+ * on the size of the file.
+ *
+ * The upload starts at the offset the backend reports, so an interrupted upload only repeats the
+ * chunk that was in flight. Every chunk carries its SHA-256 in `Upload-Checksum`.
+ *
+ * Not thread-safe, the checksum buffer is reused between chunks.
+ */
+class ChunkedFileUpload(private val client: OkHttpClient, private val chunkSize: Int = DEFAULT_CHUNK_SIZE) {
+    private val buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE)
+
+    /**
+     * Uploads [file] unless the backend already stored it.
+     *
+     * @throws IOException if a request failed and may succeed when repeated, [FileUploadException]
+     * if the backend rejected the file or reported an offset the upload cannot continue from
+     */
+    fun upload(url: String, token: String, file: File) {
+        val length = file.length()
+        var offset = queryOffset(url, token) ?: return
+        checkOffset(offset, -1, length)
+
+        RandomAccessFile(file, "r").use { input ->
+            val channel = input.channel
+            while (true) {
+                val count = minOf(chunkSize.toLong(), length - offset)
+                val request = Request.Builder()
+                    .url(url)
+                    .header("Authorization", "Bearer $token")
+                    .header("Upload-Offset", offset.toString())
+                    .header("Upload-Length", length.toString())
+                    .header("Upload-Filename", file.name)
+                    .header("Upload-Checksum", checksum(channel, offset, count))
+                    .patch(ChunkBody(file, offset, count))
+                    .build()
+
+                client.newCall(request).execute().use { response ->
+                    val next = when (response.code) {
+                        200 -> return
+                        // 409: the backend has a different offset, continue from there
+                        204, 409 -> response.header("Upload-Offset")?.toLongOrNull()
+                            ?: throw FileUploadException("HTTP ${response.code} without Upload-Offset")
+                        else -> throw uploadError(response.code)
+                    }
+                    // a chunk that was accepted has to move the offset forward
+                    checkOffset(next, if (response.code == 204) offset + 1 else -1, length)
+                    if (next == offset) {
+                        throw FileUploadException("HTTP 409 without a different offset than $offset")
+                    }
+                    offset = next
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes the backend received so far, `null` if it stored the file
+     */
+    private fun queryOffset(url: String, token: String): Long? {
+        val request = Request.Builder()
+            .url(url)
+            .header("Authorization", "Bearer $token")
+            .head()
+            .build()
+
+        client.newCall(request).execute().use { response ->
+            if (!response.isSuccessful) {
+                throw uploadError(response.code)
+            }
+            if (response.header("Upload-Complete") == "?1") {
+                return null
+            }
+            return response.header("Upload-Offset")?.toLongOrNull() ?: 0
+        }
+    }
+
+    private fun checkOffset(offset: Long, min: Long, length: Long) {
+        if (offset < maxOf(min, 0) || offset > length) {
+            throw FileUploadException("offset $offset outside of ${maxOf(min, 0)}..$length")
+        }
+    }
+
+    private fun checksum(channel: FileChannel, offset: Long, count: Long): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+        var position = offset
+        while (position < offset + count) {
+            buffer.clear()
+            buffer.limit(minOf(buffer.capacity().toLong(), offset + count - position).toInt())
+            val read = channel.read(buffer, position)
+            if (read < 0) {
+                throw EOFException("file shorter than expected")
+            }
+            digest.update(buffer.array(), 0, read)
+            position += read
+        }
+        return "sha256 " + Base64.getEncoder().encodeToString(digest.digest())
+    }
+
+    /**
+     * [count] bytes of [file] starting at [offset]. The file is opened for every write, so OkHttp
+     * can repeat the request.
+     */
+    private class ChunkBody(private val file: File, private val offset: Long, private val count: Long) : RequestBody() {
+        override fun contentType(): MediaType = CONTENT_TYPE
+
+        override fun contentLength(): Long = count
+
+        override fun writeTo(sink: BufferedSink) {
+            FileInputStream(file).use { input ->
+                input.channel.position(offset)
+                sink.write(input.source(), count)
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_CHUNK_SIZE = 1024 * 1024
+
+        private const val CHECKSUM_BUFFER_SIZE = 64 * 1024
+
+        private val CONTENT_TYPE = "application/offset+octet-stream".toMediaType()
+    }
+}
+
+/**
+ * The backend rejected a file, repeating the upload does not help. Not an [IOException], so it is
+ * not retried like a failed request.
+ */
+class FileUploadException(message: String) : Exception("file upload failed: $message")
+
+// client errors are permanent, anything else is worth a retry
+private fun uploadError(statusCode: Int): Exception =
+    if (statusCode in 400..499) FileUploadException("HTTP $statusCode") else IOException("file upload failed with HTTP $statusCode")
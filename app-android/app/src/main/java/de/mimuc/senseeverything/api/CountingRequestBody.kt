@@ -0,0 +1,40 @@
+package de.mimuc.senseeverything.api
+
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.Buffer
+import okio.BufferedSink
+import okio.ForwardingSink
+import okio.Sink
+import okio.buffer
+
+/**
+ * Counts the bytes of another request body while it is written. The number of bytes of the last
+ * write is kept in [writtenBytes].
+ */
+class CountingRequestBody(private val body: RequestBody) : RequestBody() {
+    var writtenBytes = 0L
+        private set
+
+    override fun contentType(): MediaType? = body.contentType()
+
+    override fun contentLength(): Long = body.contentLength()
+
+    override fun writeTo(sink: BufferedSink) {
+        val counting = CountingSink(sink)
+        val buffered = counting.buffer()
+        body.writeTo(buffered)
+        // hand everything to the counting sink without closing the request
+        buffered.emit()
+        writtenBytes = counting.count
+    }
+}
+
+internal class CountingSink(delegate: Sink) : ForwardingSink(delegate) {
+    var count = 0L
+
+    override fun write(source: Buffer, byteCount: Long) {
+        super.write(source, byteCount)
+        count += byteCount
+    }
+}
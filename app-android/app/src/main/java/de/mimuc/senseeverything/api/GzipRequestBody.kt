@@ -0,0 +1,38 @@
+package de.mimuc.senseeverything.api
+
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+import okio.GzipSink
+import okio.buffer
+
+/**
+ * Compresses another request body with gzip while it is written, at the given [level] of
+ * [java.util.zip.Deflater]. The request must carry `Content-Encoding: gzip`.
+ *
+ * The number of bytes before and after compression of the last write are kept in
+ * [uncompressedBytes] and [compressedBytes].
+ */
+class GzipRequestBody(private val body: RequestBody, private val level: Int) : RequestBody() {
+    var uncompressedBytes = 0L
+        private set
+    var compressedBytes = 0L
+        private set
+
+    override fun contentType(): MediaType? = body.contentType()
+
+    override fun contentLength(): Long = -1
+
+    override fun writeTo(sink: BufferedSink) {
+        val compressed = CountingSink(sink)
+        val gzip = GzipSink(compressed)
+        gzip.deflater.setLevel(level)
+        val uncompressed = CountingSink(gzip)
+
+        // closing writes the gzip trailer
+        uncompressed.buffer().use { body.writeTo(it) }
+
+        uncompressedBytes = uncompressed.count
+        compressedBytes = compressed.count
+    }
+}
@@ -1,29 +1,27 @@
 package de.mimuc.senseeverything.api
 
 import android.util.Log
-import com.android.volley.VolleyError
 import de.mimuc.senseeverything.api.model.Study
-import kotlinx.coroutines.suspendCancellableCoroutine
 import org.json.JSONObject
-import kotlin.coroutines.resume
 
 
 data class ApiError(val httpCode: Int, val appCode: String, val message: String)
 
-fun decodeError(error: VolleyError): ApiError {
-    val response = error.networkResponse
-    val message = error.message ?: "Unknown error"
-    return if (response != null) {
-        try {
-            val data = String(response.data)
-            val json = JSONObject(data)
-            ApiError(response.statusCode, json.getString("code"), json.getString("error"))
-        } catch (e: Exception) {
-            Log.e("Enrolment", "Error decoding error response: $e")
-            ApiError(response.statusCode, "unknown", message)
-        }
+fun decodeError(error: Exception): ApiError {
+    return if (error is ApiException) {
+        error.error
     } else {
-        ApiError(-1, "unknown", message)
+        ApiError(-1, "unknown", error.message ?: "Unknown error")
+    }
+}
+
+fun decodeError(httpCode: Int, body: String): ApiError {
+    return try {
+        val json = JSONObject(body)
+        ApiError(httpCode, json.getString("code"), json.getString("error"))
+    } catch (e: Exception) {
+        Log.e("Enrolment", "Error decoding error response: $e")
+        ApiError(httpCode, "unknown", body.ifEmpty { "Unknown error" })
     }
 }
 
@@ -32,15 +30,11 @@ suspend fun loadStudy(apiClient: ApiClient, studyId: Int): Study? {
         return null
     }
 
-    val response = suspendCancellableCoroutine { continuation ->
-        Log.d("Api", "Loading study $studyId")
-        apiClient.getJson("https://sisensing.medien.ifi.lmu.de/v1/study/$studyId",
-            { response ->
-                continuation.resume(response)
-            },
-            { error ->
-                continuation.resume(null)
-            })
+    Log.d("Api", "Loading study $studyId")
+    val response = try {
+        apiClient.getJson("https://sisensing.medien.ifi.lmu.de/v1/study/$studyId")
+    } catch (e: Exception) {
+        null
     }
 
     if (response != null) {
@@ -6,8 +6,6 @@ import de.mimuc.senseeverything.api.model.Questionnaire
 import de.mimuc.senseeverything.api.model.makeFullQuestionnaireFromJson
 import de.mimuc.senseeverything.api.model.makeQuestionnaireFromJson
 import de.mimuc.senseeverything.data.DataStoreManager
-import kotlin.coroutines.resume
-import kotlin.coroutines.suspendCoroutine
 
 suspend fun fetchAndPersistQuestionnaires(studyId: Int, dataStoreManager: DataStoreManager, client: ApiClient): List<FullQuestionnaire> {
     val questionnaires = fetchQuestionnairesForStudy(studyId, client)
@@ -15,13 +13,10 @@ suspend fun fetchAndPersistQuestionnaires(studyId: Int, dataStoreManager: DataSt
     // load full questionnaires
     val fullQuestionnaires = mutableListOf<FullQuestionnaire>()
     for (questionnaire in questionnaires) {
-        val json = suspendCoroutine { continuation ->
-            client.getJson("https://sisensing.medien.ifi.lmu.de/v1/study/$studyId/questionnaire/${questionnaire.id}",
-                { response ->
-                    continuation.resume(response)
-                }, { error ->
-                    continuation.resume(null)
-                })
+        val json = try {
+            client.getJson("https://sisensing.medien.ifi.lmu.de/v1/study/$studyId/questionnaire/${questionnaire.id}")
+        } catch (e: Exception) {
+            null
         }
 
         if (json == null) {
@@ -40,13 +35,10 @@ suspend fun fetchAndPersistQuestionnaires(studyId: Int, dataStoreManager: DataSt
 }
 
 suspend fun fetchQuestionnairesForStudy(studyId: Int, client: ApiClient): List<Questionnaire> {
-    val response = suspendCoroutine { continuation ->
-        client.getJsonArray("https://sisensing.medien.ifi.lmu.de/v1/study/$studyId/questionnaire",
-            { response ->
-                continuation.resume(response)
-            }, { error ->
-                continuation.resume(null)
-            })
+    val response = try {
+        client.getJsonArray("https://sisensing.medien.ifi.lmu.de/v1/study/$studyId/questionnaire")
+    } catch (e: Exception) {
+        null
     }
 
     // could not load questionnaires for study, for example study not found
@@ -0,0 +1,27 @@
+package de.mimuc.senseeverything.api
+
+import okhttp3.MediaType
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+
+/**
+ * Request body in the binary reading batch format, written by a [ReadingBatchEncoder] while OkHttp
+ * sends it. Like [StreamingJsonArrayBody], [writeReadings] is called again if the request is
+ * repeated.
+ */
+class ReadingBatchBody(private val writeReadings: (ReadingBatchEncoder) -> Unit) : RequestBody() {
+    override fun contentType(): MediaType = CONTENT_TYPE
+
+    override fun contentLength(): Long = -1
+
+    override fun writeTo(sink: BufferedSink) {
+        val encoder = ReadingBatchEncoder(sink.outputStream())
+        writeReadings(encoder)
+        encoder.finish()
+    }
+
+    companion object {
+        private val CONTENT_TYPE = ReadingBatchEncoder.CONTENT_TYPE.toMediaType()
+    }
+}
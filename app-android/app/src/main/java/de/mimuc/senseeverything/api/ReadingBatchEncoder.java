@@ -0,0 +1,202 @@
+package de.mimuc.senseeverything.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes readings in the binary batch format the backend accepts as {@link #CONTENT_TYPE}, instead
+ * of a JSON array of {@code {sensorType, timestamp, data}} objects.
+ * <p>
+ * Layout, all integers as unsigned LEB128 varints unless noted:
+ * <ul>
+ * <li>the magic {@code SRB1}</li>
+ * <li>blocks of up to {@link #BLOCK_SIZE} readings until the end of the body, each starting with
+ * the number of groups in the block</li>
+ * <li>per group, the readings of one sensor type in their original order: the sensor type as
+ * string, the number of readings, the column type ({@link #COLUMN_INTEGER} or
+ * {@link #COLUMN_STRING}) as single byte, then all timestamps as zigzag varint difference to the
+ * previous timestamp of the group (the first to 0), then all values as zigzag varint or string</li>
+ * </ul>
+ * Strings are references into a dictionary shared by the whole body: {@link #STRING_NEW} adds the
+ * string that follows (varint length, UTF-8) to the dictionary, {@link #STRING_LITERAL} is followed
+ * by a string that is not added, and any other value {@code n} refers to dictionary entry
+ * {@code n - 2}. Long strings and strings beyond {@link #MAX_DICTIONARY_SIZE} entries are sent as
+ * literals.
+ * <p>
+ * Only one block is buffered, so memory does not depend on the number of readings.
+ */
+public class ReadingBatchEncoder {
+    public static final String CONTENT_TYPE = "application/vnd.sisensing.readings-v1";
+
+    static final byte[] MAGIC = {'S', 'R', 'B', '1'};
+    static final int BLOCK_SIZE = 1024;
+    static final int COLUMN_INTEGER = 0;
+    static final int COLUMN_STRING = 1;
+    static final int STRING_NEW = 0;
+    static final int STRING_LITERAL = 1;
+    static final int MAX_DICTIONARY_SIZE = 4096;
+    private static final int MAX_DICTIONARY_STRING_LENGTH = 64;
+    // integers with more digits could lose precision in the backend
+    private static final int MAX_INTEGER_DIGITS = 15;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int position = 0;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    private final String[] sensorTypes = new String[BLOCK_SIZE];
+    private final long[] timestamps = new long[BLOCK_SIZE];
+    private final String[] values = new String[BLOCK_SIZE];
+    private int count = 0;
+
+    private final List<String> groupTypes = new ArrayList<>();
+
+    public ReadingBatchEncoder(OutputStream out) throws IOException {
+        this.out = out;
+        for (byte b : MAGIC) {
+            writeByte(b);
+        }
+    }
+
+    public void add(String sensorType, long timestamp, String data) throws IOException {
+        sensorTypes[count] = sensorType == null ? "" : sensorType;
+        timestamps[count] = timestamp;
+        values[count] = data == null ? "" : data;
+        count++;
+
+        if (count == BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the buffered readings and flushes the stream, which is not closed.
+     */
+    public void finish() throws IOException {
+        writeBlock();
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+
+    private void writeBlock() throws IOException {
+        if (count == 0) {
+            return;
+        }
+
+        groupTypes.clear();
+        for (int i = 0; i < count; i++) {
+            if (!groupTypes.contains(sensorTypes[i])) {
+                groupTypes.add(sensorTypes[i]);
+            }
+        }
+
+        writeVarint(groupTypes.size());
+        for (String sensorType : groupTypes) {
+            int groupSize = 0;
+            boolean integers = true;
+            for (int i = 0; i < count; i++) {
+                if (sensorTypes[i].equals(sensorType)) {
+                    groupSize++;
+                    integers &= isInteger(values[i]);
+                }
+            }
+
+            writeString(sensorType);
+            writeVarint(groupSize);
+            writeByte(integers ? COLUMN_INTEGER : COLUMN_STRING);
+
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                if (sensorTypes[i].equals(sensorType)) {
+                    writeVarint(zigzag(timestamps[i] - previous));
+                    previous = timestamps[i];
+                }
+            }
+
+            for (int i = 0; i < count; i++) {
+                if (sensorTypes[i].equals(sensorType)) {
+                    if (integers) {
+                        writeVarint(zigzag(Long.parseLong(values[i])));
+                    } else {
+                        writeString(values[i]);
+                    }
+                }
+            }
+        }
+
+        Arrays.fill(sensorTypes, 0, count, null);
+        Arrays.fill(values, 0, count, null);
+        count = 0;
+    }
+
+    private void writeString(String value) throws IOException {
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            writeVarint(index + 2);
+            return;
+        }
+
+        if (value.length() <= MAX_DICTIONARY_STRING_LENGTH && dictionary.size() < MAX_DICTIONARY_SIZE) {
+            dictionary.put(value, dictionary.size());
+            writeVarint(STRING_NEW);
+        } else {
+            writeVarint(STRING_LITERAL);
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        for (byte b : bytes) {
+            writeByte(b);
+        }
+    }
+
+    /**
+     * @return whether the value is written exactly like the backend would print the parsed number
+     */
+    static boolean isInteger(String value) {
+        int start = value.startsWith("-") ? 1 : 0;
+        int digits = value.length() - start;
+        if (digits == 0 || digits > MAX_INTEGER_DIGITS) {
+            return false;
+        }
+        if (value.charAt(start) == '0' && (digits > 1 || start == 1)) {
+            // leading zeros and "-0"
+            return false;
+        }
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    private void writeByte(int value) throws IOException {
+        if (position == buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        buffer[position++] = (byte) value;
+    }
+}
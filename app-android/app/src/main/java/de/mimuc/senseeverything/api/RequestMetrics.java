@@ -0,0 +1,116 @@
+package de.mimuc.senseeverything.api;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * Times a call of {@link ApiClient} and logs it when it ends: duration, time to the first response
+ * byte, protocol, bytes sent and received and whether a pooled connection was reused or the
+ * response came from the cache.
+ * <p>
+ * OkHttp creates one listener per call, so no state is shared.
+ */
+class RequestMetrics extends EventListener {
+    private static final String TAG = "ApiClient";
+
+    static final EventListener.Factory FACTORY = call -> new RequestMetrics();
+
+    private long callStartNs;
+    private long responseStartNs = -1;
+    private boolean connected;
+    private boolean cacheHit;
+    private Protocol protocol;
+    private int statusCode = -1;
+    private long bytesSent;
+    private long bytesReceived;
+
+    @Override
+    public void callStart(@NonNull Call call) {
+        callStartNs = System.nanoTime();
+    }
+
+    @Override
+    public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
+        connected = true;
+    }
+
+    @Override
+    public void connectionAcquired(@NonNull Call call, @NonNull Connection connection) {
+        protocol = connection.protocol();
+    }
+
+    @Override
+    public void requestBodyEnd(@NonNull Call call, long byteCount) {
+        bytesSent = byteCount;
+    }
+
+    @Override
+    public void responseHeadersStart(@NonNull Call call) {
+        responseStartNs = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersEnd(@NonNull Call call, @NonNull Response response) {
+        statusCode = response.code();
+    }
+
+    @Override
+    public void responseBodyEnd(@NonNull Call call, long byteCount) {
+        bytesReceived = byteCount;
+    }
+
+    @Override
+    public void cacheHit(@NonNull Call call, @NonNull Response response) {
+        cacheHit = true;
+        statusCode = response.code();
+    }
+
+    @Override
+    public void callEnd(@NonNull Call call) {
+        log(call, null);
+    }
+
+    @Override
+    public void callFailed(@NonNull Call call, @NonNull IOException e) {
+        log(call, e);
+    }
+
+    private void log(Call call, IOException failure) {
+        long now = System.nanoTime();
+        StringBuilder line = new StringBuilder()
+                .append(call.request().method()).append(' ')
+                .append(call.request().url().encodedPath()).append(' ');
+
+        if (failure != null) {
+            line.append("failed (").append(failure).append(')');
+        } else {
+            line.append(statusCode);
+        }
+        line.append(" in ").append((now - callStartNs) / 1_000_000).append("ms");
+
+        if (cacheHit) {
+            line.append(", from cache");
+        } else {
+            if (responseStartNs >= 0) {
+                line.append(", first byte after ").append((responseStartNs - callStartNs) / 1_000_000).append("ms");
+            }
+            line.append(", ").append(protocol)
+                    .append(connected ? ", new connection" : ", reused connection")
+                    .append(", ").append(bytesSent).append("B sent, ")
+                    .append(bytesReceived).append("B received");
+        }
+
+        Log.d(TAG, line.toString());
+    }
+}
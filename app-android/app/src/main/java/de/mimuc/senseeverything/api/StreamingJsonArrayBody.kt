@@ -0,0 +1,34 @@
+package de.mimuc.senseeverything.api
+
+import android.util.JsonWriter
+import okhttp3.MediaType
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+import java.io.OutputStreamWriter
+
+/**
+ * Request body that writes a JSON array item by item while OkHttp sends it, so the array never
+ * exists in memory as a whole. The length is not known in advance and the body is sent chunked.
+ *
+ * [writeItems] is called again if OkHttp has to repeat the request, so it must be able to produce
+ * the same items more than once.
+ */
+class StreamingJsonArrayBody(private val writeItems: (JsonWriter) -> Unit) : RequestBody() {
+    override fun contentType(): MediaType = JSON
+
+    override fun contentLength(): Long = -1
+
+    override fun writeTo(sink: BufferedSink) {
+        // not closed, that would close the sink owned by OkHttp
+        val writer = JsonWriter(OutputStreamWriter(sink.outputStream(), Charsets.UTF_8))
+        writer.beginArray()
+        writeItems(writer)
+        writer.endArray()
+        writer.flush()
+    }
+
+    companion object {
+        private val JSON = "application/json; charset=utf-8".toMediaType()
+    }
+}
@@ -22,18 +22,83 @@ data class EnrolmentResponse(
 
 @Serializable
 data class StudyConfiguration(
-    val interactionWidgetStrategy: InteractionWidgetDisplayStrategy
+    val interactionWidgetStrategy: InteractionWidgetDisplayStrategy,
+    val sensorReadingModes: Map<String, SensorReadingConfiguration> = emptyMap(),
+    val conversationRecording: ConversationRecordingConfiguration = ConversationRecordingConfiguration()
 ) {
     companion object {
         fun fromJson(json: JSONObject): StudyConfiguration {
             val interactionWidgetStrategy = InteractionWidgetDisplayStrategy.valueOf(
                 json.getString("interactionWidgetStrategy").uppercase()
             )
-            return StudyConfiguration(interactionWidgetStrategy)
+
+            val sensorReadingModes = mutableMapOf<String, SensorReadingConfiguration>()
+            val modesJson = json.optJSONObject("sensorReadingModes")
+            if (modesJson != null) {
+                for (sensorName in modesJson.keys()) {
+                    sensorReadingModes[sensorName] =
+                        SensorReadingConfiguration.fromJson(modesJson.getJSONObject(sensorName))
+                }
+            }
+
+            val conversationRecording = json.optJSONObject("conversationRecording")
+                ?.let { ConversationRecordingConfiguration.fromJson(it) }
+                ?: ConversationRecordingConfiguration()
+
+            return StudyConfiguration(interactionWidgetStrategy, sensorReadingModes, conversationRecording)
         }
     }
 }
 
+/**
+ * How a sensor stores its readings, see [de.mimuc.senseeverything.sensor.WindowedAggregator].
+ */
+@Serializable
+data class SensorReadingConfiguration(
+    val mode: SensorReadingMode,
+    val windowMs: Long = DEFAULT_AGGREGATION_WINDOW_MS
+) {
+    companion object {
+        const val DEFAULT_AGGREGATION_WINDOW_MS = 10_000L
+
+        // the range the backend accepts, shorter windows would produce more readings than raw mode
+        const val MIN_AGGREGATION_WINDOW_MS = 1_000L
+        const val MAX_AGGREGATION_WINDOW_MS = 60 * 60 * 1000L
+
+        fun fromJson(json: JSONObject): SensorReadingConfiguration {
+            val mode = SensorReadingMode.valueOf(json.getString("mode").uppercase())
+            val windowMs = json.optLong("windowMs", DEFAULT_AGGREGATION_WINDOW_MS)
+            return SensorReadingConfiguration(mode, windowMs)
+        }
+    }
+}
+
+/**
+ * How [de.mimuc.senseeverything.sensor.implementation.ConversationSensor] records, `null` keeps its
+ * default.
+ */
+@Serializable
+data class ConversationRecordingConfiguration(
+    val streamingDetection: Boolean? = null,
+    val speechGate: String? = null,
+    val audioEncoding: String? = null
+) {
+    companion object {
+        fun fromJson(json: JSONObject): ConversationRecordingConfiguration {
+            val streamingDetection = if (json.isNull("streamingDetection")) null else json.getBoolean("streamingDetection")
+            val speechGate = if (json.isNull("speechGate")) null else json.getString("speechGate")
+            val audioEncoding = if (json.isNull("audioEncoding")) null else json.getString("audioEncoding")
+            return ConversationRecordingConfiguration(streamingDetection, speechGate, audioEncoding)
+        }
+    }
+}
+
+enum class SensorReadingMode {
+    RAW,
+    AGGREGATE,
+    BOTH
+}
+
 enum class InteractionWidgetDisplayStrategy {
     DEFAULT,
     BUCKETED
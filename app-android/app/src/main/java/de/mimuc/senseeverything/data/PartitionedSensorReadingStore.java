@@ -0,0 +1,78 @@
+package de.mimuc.senseeverything.data;
+
+import de.mimuc.senseeverything.db.LogDataIngestionQueue;
+import de.mimuc.senseeverything.db.LogDataPartitionRegistry;
+import de.mimuc.senseeverything.db.MotionChunk;
+import de.mimuc.senseeverything.db.PartitionDatabase;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stores readings in the {@link PartitionDatabase} of the day they arrive on, group committed
+ * through an {@link LogDataIngestionQueue} per partition.
+ * <p>
+ * When the day changes, the queue of the previous partition is drained and shut down and its
+ * database is closed, so the upload can drop it once it is sealed. This happens on a background
+ * thread, the reading that crossed midnight must not wait for the last commits of the old day.
+ */
+public class PartitionedSensorReadingStore implements SensorReadingStore {
+    private final LogDataPartitionRegistry registry;
+    private final ExecutorService retiredQueues = Executors.newSingleThreadExecutor();
+
+    // guarded by this
+    private String activePartition;
+    private LogDataIngestionQueue activeQueue;
+
+    public PartitionedSensorReadingStore(LogDataPartitionRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public synchronized void append(long timestamp, String sensorName, String data, boolean hasFile, String filePath) {
+        queue().enqueue(timestamp, sensorName, data, hasFile, filePath);
+    }
+
+    @Override
+    public synchronized void appendMotionChunk(MotionChunk chunk) {
+        queue().enqueueChunk(chunk);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (activeQueue == null) {
+            return;
+        }
+
+        // also closes yesterday's partition if nothing has been logged since midnight
+        queue().requestFlush();
+    }
+
+    private LogDataIngestionQueue queue() {
+        String partition = registry.partitionFor(System.currentTimeMillis());
+        if (partition.equals(activePartition)) {
+            return activeQueue;
+        }
+
+        if (activeQueue != null) {
+            retire(activePartition, activeQueue);
+        }
+
+        PartitionDatabase database = registry.openForWriting(partition);
+        activeQueue = new LogDataIngestionQueue(database, database.logDataDao(), database.motionChunkDao(), "LogDataIngestionWriter-" + partition);
+        activePartition = partition;
+        return activeQueue;
+    }
+
+    private void retire(String partition, LogDataIngestionQueue queue) {
+        retiredQueues.execute(() -> {
+            queue.shutdown();
+            synchronized (this) {
+                // the clock may have been set back to the day in the meantime
+                if (!partition.equals(activePartition)) {
+                    registry.close(partition);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,31 @@
+package de.mimuc.senseeverything.data;
+
+import de.mimuc.senseeverything.db.LogDataIngestionQueue;
+import de.mimuc.senseeverything.db.MotionChunk;
+
+/**
+ * Stores readings as {@link de.mimuc.senseeverything.db.LogData} rows, group committed through the
+ * {@link LogDataIngestionQueue}.
+ */
+public class RoomSensorReadingStore implements SensorReadingStore {
+    private final LogDataIngestionQueue ingestionQueue;
+
+    public RoomSensorReadingStore(LogDataIngestionQueue ingestionQueue) {
+        this.ingestionQueue = ingestionQueue;
+    }
+
+    @Override
+    public void append(long timestamp, String sensorName, String data, boolean hasFile, String filePath) {
+        ingestionQueue.enqueue(timestamp, sensorName, data, hasFile, filePath);
+    }
+
+    @Override
+    public void appendMotionChunk(MotionChunk chunk) {
+        ingestionQueue.enqueueChunk(chunk);
+    }
+
+    @Override
+    public void flush() {
+        ingestionQueue.requestFlush();
+    }
+}
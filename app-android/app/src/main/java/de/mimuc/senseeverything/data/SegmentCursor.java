@@ -0,0 +1,172 @@
+package de.mimuc.senseeverything.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import de.mimuc.senseeverything.db.MotionChunk;
+
+/**
+ * Reads the records of a sealed segment one by one from a memory mapping, so the segment is never
+ * copied into the heap as a whole. Only the fields of the current record are decoded.
+ * <p>
+ * A record that is cut off at the end of the segment (crash while writing) ends the iteration. A
+ * record whose fields do not fit into its length is skipped and counted, see
+ * {@link #getSkippedRecords()}.
+ */
+public class SegmentCursor implements Closeable {
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+
+    private byte kind;
+    private long timestamp;
+    private String sensorName;
+    private String data;
+    private boolean hasFile;
+    private String filePath;
+    private MotionChunk motionChunk;
+    private int skippedRecords;
+
+    public SegmentCursor(File segment, long offset) throws IOException {
+        file = new RandomAccessFile(segment, "r");
+        FileChannel channel = file.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position((int) Math.min(offset, channel.size()));
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false at the end of the segment
+     */
+    public boolean next() {
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                return false;
+            }
+            int end = buffer.position() + length;
+
+            try {
+                readRecord(end);
+                return true;
+            } catch (CorruptRecordException e) {
+                skippedRecords++;
+            } finally {
+                buffer.position(end);
+            }
+        }
+        return false;
+    }
+
+    private void readRecord(int end) throws CorruptRecordException {
+        require(1, end);
+        kind = buffer.get();
+        motionChunk = null;
+        if (kind == SegmentLogSensorReadingStore.RECORD_MOTION_CHUNK) {
+            String name = readString(end);
+            require(8 + 8 + 4 + 4 + 4 + 4, end);
+            long startTimestamp = buffer.getLong();
+            long endTimestamp = buffer.getLong();
+            int sampleCount = buffer.getInt();
+            int channels = buffer.getInt();
+            int encoding = buffer.getInt();
+            int samplesLength = buffer.getInt();
+            require(samplesLength, end);
+            byte[] samples = new byte[samplesLength];
+            buffer.get(samples);
+            motionChunk = new MotionChunk(name, startTimestamp, endTimestamp, sampleCount, channels, encoding, samples);
+            sensorName = name;
+            timestamp = startTimestamp;
+            data = null;
+            hasFile = false;
+            filePath = null;
+        } else {
+            require(8, end);
+            timestamp = buffer.getLong();
+            sensorName = readString(end);
+            data = readString(end);
+            require(1, end);
+            hasFile = buffer.get() != 0;
+            filePath = readString(end);
+        }
+    }
+
+    private String readString(int end) throws CorruptRecordException {
+        require(4, end);
+        int length = buffer.getInt();
+        // -1 is written for null
+        if (length == -1) {
+            return null;
+        }
+
+        require(length, end);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void require(int length, int end) throws CorruptRecordException {
+        if (length < 0 || length > end - buffer.position()) {
+            throw new CorruptRecordException();
+        }
+    }
+
+    /**
+     * @return offset directly behind the current record, to resume reading from
+     */
+    public long position() {
+        return buffer.position();
+    }
+
+    public boolean isMotionChunk() {
+        return kind == SegmentLogSensorReadingStore.RECORD_MOTION_CHUNK;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getSensorName() {
+        return sensorName;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    public boolean hasFile() {
+        return hasFile;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public MotionChunk getMotionChunk() {
+        return motionChunk;
+    }
+
+    /**
+     * @return number of records skipped so far because their fields did not fit into them
+     */
+    public int getSkippedRecords() {
+        return skippedRecords;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static class CorruptRecordException extends Exception {
+    }
+}
@@ -0,0 +1,283 @@
+package de.mimuc.senseeverything.data;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import de.mimuc.senseeverything.db.MotionChunk;
+
+/**
+ * Stores readings as length-prefixed records in rolling segment files instead of a database.
+ * <p>
+ * Records are appended to the open segment through a write buffer. Once a segment exceeds
+ * {@link #SEGMENT_SIZE} bytes or is older than {@link #MAX_SEGMENT_AGE_MS} it is sealed and a new one
+ * is started. Sealed segments are read by the upload worker with a {@link SegmentCursor} and deleted
+ * as a whole once the server has confirmed all of their records. See {@link SegmentManifest} for how
+ * the state of the segments is shared between the logging and the upload process.
+ * <p>
+ * Record layout (little endian): {@code int32 length, int8 kind, payload}. A reading is
+ * {@code int64 timestamp, string sensorName, string data, int8 hasFile, string filePath}, a motion
+ * chunk is {@code string sensorName, int64 start, int64 end, int32 sampleCount, int32 channels,
+ * int32 encoding, int32 length, samples}. Strings are {@code int32 length} (-1 for null) followed by
+ * UTF-8 bytes.
+ */
+public class SegmentLogSensorReadingStore implements SensorReadingStore {
+    private static final String TAG = "SegmentLogStore";
+
+    static final byte RECORD_READING = 0;
+    static final byte RECORD_MOTION_CHUNK = 1;
+
+    private static final long SEGMENT_SIZE = 4 * 1024 * 1024;
+    private static final long MAX_SEGMENT_AGE_MS = 60 * 60 * 1000;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final SegmentManifest manifest;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    // guarded by this
+    private FileChannel channel;
+    private long openSequence;
+    private long openSize;
+    private long openedAt;
+    private boolean leftoversSealed = false;
+
+    public SegmentLogSensorReadingStore(File directory) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "could not create segment directory " + directory);
+        }
+
+        manifest = new SegmentManifest(directory);
+    }
+
+    @Override
+    public synchronized void append(long timestamp, String sensorName, String data, boolean hasFile, String filePath) {
+        byte[] name = encode(sensorName);
+        byte[] value = encode(data);
+        byte[] path = encode(filePath);
+
+        int length = 1 + 8 + stringSize(name) + stringSize(value) + 1 + stringSize(path);
+        ByteBuffer out = reserve(4 + length);
+        if (out == null) {
+            return;
+        }
+
+        out.putInt(length);
+        out.put(RECORD_READING);
+        out.putLong(timestamp);
+        putString(out, name);
+        putString(out, value);
+        out.put((byte) (hasFile ? 1 : 0));
+        putString(out, path);
+        commitRecord(out, 4 + length);
+    }
+
+    @Override
+    public synchronized void appendMotionChunk(MotionChunk chunk) {
+        byte[] name = encode(chunk.sensorName);
+        byte[] samples = chunk.samples != null ? chunk.samples : new byte[0];
+
+        int length = 1 + stringSize(name) + 8 + 8 + 4 + 4 + 4 + 4 + samples.length;
+        ByteBuffer out = reserve(4 + length);
+        if (out == null) {
+            return;
+        }
+
+        out.putInt(length);
+        out.put(RECORD_MOTION_CHUNK);
+        putString(out, name);
+        out.putLong(chunk.startTimestamp);
+        out.putLong(chunk.endTimestamp);
+        out.putInt(chunk.sampleCount);
+        out.putInt(chunk.channels);
+        out.putInt(chunk.encoding);
+        out.putInt(samples.length);
+        out.put(samples);
+        commitRecord(out, 4 + length);
+    }
+
+    /**
+     * Also seals the open segment if it is older than {@link #MAX_SEGMENT_AGE_MS}, so readings
+     * become visible to the upload even if logging pauses for a long time.
+     */
+    @Override
+    public synchronized void flush() {
+        if (channel == null) {
+            return;
+        }
+
+        writeOut();
+
+        if (System.currentTimeMillis() - openedAt >= MAX_SEGMENT_AGE_MS) {
+            sealOpenSegment();
+        }
+    }
+
+    /**
+     * @return sequence numbers of all sealed segments, oldest first
+     */
+    public List<Long> getSealedSegments() {
+        return manifest.sealedSegments();
+    }
+
+    public File getSegmentFile(long sequence) {
+        return manifest.sealedFile(sequence);
+    }
+
+    public long getUploadedOffset(long sequence) {
+        return manifest.uploadedOffset(sequence);
+    }
+
+    /**
+     * Records that all records of a sealed segment before {@code offset} have been confirmed.
+     */
+    public void setUploadedOffset(long sequence, long offset) {
+        manifest.setUploadedOffset(sequence, offset);
+    }
+
+    /**
+     * Drops a segment once all of its records have been confirmed by the server.
+     */
+    public void deleteSegment(long sequence) {
+        if (!manifest.delete(sequence)) {
+            Log.e(TAG, "could not delete segment " + sequence);
+        }
+    }
+
+    /**
+     * Deletes all sealed segments regardless of their upload state and the segment this store has
+     * open, e.g. when leaving a study.
+     * <p>
+     * A segment opened by another process is left alone. That process keeps appending to it, after
+     * a delete into a file that is gone and can no longer be sealed.
+     */
+    public synchronized void deleteAll() {
+        if (channel != null) {
+            writeBuffer.clear();
+            closeOpenSegment();
+            if (!manifest.deleteOpen(openSequence)) {
+                Log.e(TAG, "could not delete open segment " + openSequence);
+            }
+        }
+
+        for (Long sequence : manifest.sealedSegments()) {
+            deleteSegment(sequence);
+        }
+    }
+
+    private ByteBuffer reserve(int size) {
+        try {
+            if (channel == null) {
+                openSegment();
+            }
+            if (writeBuffer.remaining() < size) {
+                drainWriteBuffer();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "could not write to segment " + openSequence, e);
+            return null;
+        }
+
+        // records larger than the write buffer are written on their own
+        return size <= writeBuffer.capacity() ? writeBuffer : ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void commitRecord(ByteBuffer out, int size) {
+        try {
+            if (out != writeBuffer) {
+                out.flip();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            openSize += size;
+
+            if (openSize >= SEGMENT_SIZE || System.currentTimeMillis() - openedAt >= MAX_SEGMENT_AGE_MS) {
+                sealOpenSegment();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "could not write to segment " + openSequence, e);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        if (!leftoversSealed) {
+            // a segment left open by a previous logging process is sealed as it is, a cut off
+            // record at its end is skipped by the cursor
+            for (Long sequence : manifest.openSegments()) {
+                manifest.seal(sequence);
+            }
+            leftoversSealed = true;
+        }
+
+        openSequence = manifest.nextSequence();
+        channel = FileChannel.open(manifest.openFile(openSequence).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        openSize = channel.size();
+        openedAt = System.currentTimeMillis();
+    }
+
+    private void sealOpenSegment() {
+        if (channel == null) {
+            return;
+        }
+
+        writeOut();
+        closeOpenSegment();
+        manifest.seal(openSequence);
+    }
+
+    private void closeOpenSegment() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Log.e(TAG, "could not close segment " + openSequence, e);
+        }
+        channel = null;
+        openSize = 0;
+    }
+
+    private void writeOut() {
+        try {
+            drainWriteBuffer();
+            channel.force(false);
+        } catch (IOException e) {
+            Log.e(TAG, "could not flush segment " + openSequence, e);
+        }
+    }
+
+    private void drainWriteBuffer() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private static byte[] encode(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int stringSize(byte[] value) {
+        return 4 + (value != null ? value.length : 0);
+    }
+
+    private static void putString(ByteBuffer out, byte[] value) {
+        if (value == null) {
+            out.putInt(-1);
+            return;
+        }
+        out.putInt(value.length);
+        out.put(value);
+    }
+}
@@ -0,0 +1,152 @@
+package de.mimuc.senseeverything.data;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * State of the segments in a directory, kept on the file system only, because segments are written
+ * by the logging process and uploaded from the app process.
+ * <p>
+ * A segment is open while it is named {@code segment-<sequence>.open} and sealed once it has been
+ * renamed to {@code segment-<sequence>.log}, which is atomic. The offset up to which a sealed segment
+ * has been uploaded is kept next to it in {@code segment-<sequence>.ack}. A segment is uploaded once
+ * both files are gone.
+ */
+class SegmentManifest {
+    private static final String TAG = "SegmentManifest";
+
+    private static final String PREFIX = "segment-";
+    private static final String OPEN_SUFFIX = ".open";
+    private static final String SEALED_SUFFIX = ".log";
+    private static final String ACK_SUFFIX = ".ack";
+
+    private final File directory;
+
+    SegmentManifest(File directory) {
+        this.directory = directory;
+    }
+
+    File openFile(long sequence) {
+        return new File(directory, PREFIX + sequence + OPEN_SUFFIX);
+    }
+
+    File sealedFile(long sequence) {
+        return new File(directory, PREFIX + sequence + SEALED_SUFFIX);
+    }
+
+    private File ackFile(long sequence) {
+        return new File(directory, PREFIX + sequence + ACK_SUFFIX);
+    }
+
+    List<Long> openSegments() {
+        return list(OPEN_SUFFIX);
+    }
+
+    /**
+     * @return sequence numbers of all sealed segments, oldest first
+     */
+    List<Long> sealedSegments() {
+        return list(SEALED_SUFFIX);
+    }
+
+    /**
+     * @return a sequence number above all segments and upload offsets, an offset left behind by a
+     * deleted segment must not apply to a new one
+     */
+    long nextSequence() {
+        long last = 0;
+        for (String suffix : new String[]{OPEN_SUFFIX, SEALED_SUFFIX, ACK_SUFFIX}) {
+            for (Long sequence : list(suffix)) {
+                last = Math.max(last, sequence);
+            }
+        }
+        return last + 1;
+    }
+
+    boolean seal(long sequence) {
+        boolean sealed = openFile(sequence).renameTo(sealedFile(sequence));
+        if (!sealed) {
+            Log.e(TAG, "could not seal segment " + sequence);
+        }
+        return sealed;
+    }
+
+    long uploadedOffset(long sequence) {
+        File ack = ackFile(sequence);
+        if (!ack.exists()) {
+            return 0;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(ack))) {
+            String line = reader.readLine();
+            return line != null ? Long.parseLong(line.trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            Log.e(TAG, "could not read upload offset of segment " + sequence, e);
+            return 0;
+        }
+    }
+
+    void setUploadedOffset(long sequence, long offset) {
+        File ack = ackFile(sequence);
+        File tmp = new File(ack.getPath() + ".tmp");
+        try (Writer writer = new FileWriter(tmp)) {
+            writer.write(Long.toString(offset));
+        } catch (IOException e) {
+            Log.e(TAG, "could not write upload offset of segment " + sequence, e);
+            return;
+        }
+
+        if (!tmp.renameTo(ack)) {
+            Log.e(TAG, "could not replace upload offset of segment " + sequence);
+        }
+    }
+
+    /**
+     * Removes a sealed segment and its upload offset.
+     */
+    boolean delete(long sequence) {
+        // the offset goes last, so a segment is never re-uploaded from the start
+        return deleteIfExists(sealedFile(sequence)) && deleteIfExists(ackFile(sequence));
+    }
+
+    /**
+     * Removes an open segment, only for the process that writes it and has closed it.
+     */
+    boolean deleteOpen(long sequence) {
+        return deleteIfExists(openFile(sequence));
+    }
+
+    private boolean deleteIfExists(File file) {
+        return !file.exists() || file.delete();
+    }
+
+    private List<Long> list(String suffix) {
+        List<Long> sequences = new ArrayList<>();
+        String[] names = directory.list();
+        if (names == null) {
+            return sequences;
+        }
+
+        for (String name : names) {
+            if (!name.startsWith(PREFIX) || !name.endsWith(suffix)) {
+                continue;
+            }
+            try {
+                sequences.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - suffix.length())));
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "ignoring unexpected file " + name);
+            }
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+}
@@ -0,0 +1,18 @@
+package de.mimuc.senseeverything.data;
+
+import de.mimuc.senseeverything.db.MotionChunk;
+
+/**
+ * Persistence backend for sensor readings, see {@link SensorReadingStores} for the available
+ * implementations.
+ */
+public interface SensorReadingStore {
+    void append(long timestamp, String sensorName, String data, boolean hasFile, String filePath);
+
+    void appendMotionChunk(MotionChunk chunk);
+
+    /**
+     * Makes everything appended so far durable, e.g. when a sampling window ends.
+     */
+    void flush();
+}
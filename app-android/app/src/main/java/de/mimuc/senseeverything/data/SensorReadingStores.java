@@ -0,0 +1,56 @@
+package de.mimuc.senseeverything.data;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.File;
+
+import de.mimuc.senseeverything.activity.CONST;
+import de.mimuc.senseeverything.db.AppDatabase;
+import de.mimuc.senseeverything.db.LogDataIngestionQueue;
+import de.mimuc.senseeverything.db.LogDataPartitionRegistry;
+
+/**
+ * Picks the {@link SensorReadingStore} the sensors write to. The app database is used unless
+ * {@link CONST#KEY_READING_STORE} is set to {@link #STORE_SEGMENT_LOG} or {@link #STORE_PARTITIONED}.
+ * <p>
+ * The choice is made once per process, so all sensors of a session write to the same store.
+ */
+public class SensorReadingStores {
+    public static final String STORE_ROOM = "room";
+    public static final String STORE_SEGMENT_LOG = "segment-log";
+    public static final String STORE_PARTITIONED = "partitioned";
+
+    private static final String SEGMENT_DIRECTORY = "readings";
+
+    private static SensorReadingStore instance;
+    private static SegmentLogSensorReadingStore segmentLog;
+
+    public static synchronized SensorReadingStore getInstance(Context context, AppDatabase database) {
+        if (instance == null) {
+            SharedPreferences sp = context.getSharedPreferences(CONST.SP_LOG_EVERYTHING, Activity.MODE_PRIVATE);
+            String store = sp.getString(CONST.KEY_READING_STORE, STORE_ROOM);
+
+            if (STORE_SEGMENT_LOG.equals(store)) {
+                instance = getSegmentLog(context);
+            } else if (STORE_PARTITIONED.equals(store)) {
+                instance = new PartitionedSensorReadingStore(LogDataPartitionRegistry.getInstance(context));
+            } else {
+                instance = new RoomSensorReadingStore(LogDataIngestionQueue.getInstance(database));
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * The segment log is also needed while Room is selected, to upload segments written before
+     * the store was switched.
+     */
+    public static synchronized SegmentLogSensorReadingStore getSegmentLog(Context context) {
+        if (segmentLog == null) {
+            segmentLog = new SegmentLogSensorReadingStore(new File(context.getApplicationContext().getFilesDir(), SEGMENT_DIRECTORY));
+        }
+        return segmentLog;
+    }
+}
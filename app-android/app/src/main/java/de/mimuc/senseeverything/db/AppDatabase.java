@@ -4,11 +4,15 @@ import androidx.room.AutoMigration;
 import androidx.room.Database;
 import androidx.room.RoomDatabase;
 
-@Database(entities = {LogData.class, PendingQuestionnaire.class}, version = 2, autoMigrations = {
+@Database(entities = {LogData.class, PendingQuestionnaire.class, MotionChunk.class, UploadBatch.class}, version = 6, autoMigrations = {
         @AutoMigration(from = 1, to = 2)
 }, exportSchema = true)
 public abstract class AppDatabase extends RoomDatabase {
     public abstract LogDataDao logDataDao();
 
     public abstract PendingQuestionnaireDao pendingQuestionnaireDao();
+
+    public abstract MotionChunkDao motionChunkDao();
+
+    public abstract UploadBatchDao uploadBatchDao();
 }
@@ -0,0 +1,74 @@
+package de.mimuc.senseeverything.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Hand written migrations, auto migrations would need the exported schema of every intermediate
+ * version.
+ */
+public class DatabaseMigrations {
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `motion_chunk` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `sensorName` TEXT, `startTimestamp` INTEGER NOT NULL, `endTimestamp` INTEGER NOT NULL, `sampleCount` INTEGER NOT NULL, `channels` INTEGER NOT NULL, `encoding` INTEGER NOT NULL, `samples` BLOB)");
+        }
+    };
+
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_LogData_synced_timestamp_id` ON `LogData` (`synced`, `timestamp`, `id`)");
+        }
+    };
+
+    private static final String CREATE_UPLOAD_BATCH = "CREATE TABLE IF NOT EXISTS `upload_batch` (`sequence` INTEGER NOT NULL, `batchId` TEXT NOT NULL, `afterTimestamp` INTEGER NOT NULL, `afterId` INTEGER NOT NULL, `upToTimestamp` INTEGER NOT NULL, `upToId` INTEGER NOT NULL, `maxId` INTEGER NOT NULL, PRIMARY KEY(`sequence`))";
+
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL(CREATE_UPLOAD_BATCH);
+        }
+    };
+
+    /**
+     * Adds upload lanes. Existing rows are only moved to the priority lane if no batch is pending,
+     * a pending batch has to be sent again with the same rows.
+     */
+    private static void addUploadLanes(SupportSQLiteDatabase db) {
+        db.execSQL("ALTER TABLE `LogData` ADD COLUMN `lane` INTEGER NOT NULL DEFAULT 1");
+        db.execSQL("UPDATE `LogData` SET `lane` = " + UploadLane.PRIORITY + " WHERE (" + UploadLane.PRIORITY_SENSOR_CONDITION + ") AND NOT EXISTS (SELECT 1 FROM `upload_batch`)");
+        db.execSQL("DROP INDEX IF EXISTS `index_LogData_synced_timestamp_id`");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `index_LogData_synced_lane_timestamp_id` ON `LogData` (`synced`, `lane`, `timestamp`, `id`)");
+        db.execSQL("ALTER TABLE `upload_batch` ADD COLUMN `lane` INTEGER NOT NULL DEFAULT 1");
+    }
+
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            addUploadLanes(db);
+        }
+    };
+
+    public static final Migration[] ALL = {MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6};
+
+    public static final Migration PARTITION_MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL(CREATE_UPLOAD_BATCH);
+        }
+    };
+
+    public static final Migration PARTITION_MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            addUploadLanes(db);
+        }
+    };
+
+    /**
+     * Migrations of {@link PartitionDatabase}.
+     */
+    public static final Migration[] PARTITION = {PARTITION_MIGRATION_1_2, PARTITION_MIGRATION_2_3};
+}
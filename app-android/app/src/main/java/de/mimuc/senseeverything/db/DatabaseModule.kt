@@ -20,6 +20,7 @@ object DatabaseModule {
             AppDatabase::class.java,
             name = "senseeverything-roomdb"
         )
+            .addMigrations(*DatabaseMigrations.ALL)
             .fallbackToDestructiveMigration()
             .enableMultiInstanceInvalidation()
             .build()
@@ -30,6 +31,11 @@ object DatabaseModule {
         return appDatabase.logDataDao()
     }
 
+    @Provides
+    fun provideMotionChunkDao(appDatabase: AppDatabase): MotionChunkDao {
+        return appDatabase.motionChunkDao()
+    }
+
     @Provides
     fun providePendingQuestionnaireDao(appDatabase: AppDatabase): PendingQuestionnaireDao {
         return appDatabase.pendingQuestionnaireDao()
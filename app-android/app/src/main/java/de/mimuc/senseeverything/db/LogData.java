@@ -1,9 +1,12 @@
 package de.mimuc.senseeverything.db;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity
+// (timestamp, id) is the upload order within a lane, see LogDataDao#getBatchEndAfter
+@Entity(indices = {@Index(value = {"synced", "lane", "timestamp", "id"})})
 public class LogData {
 
     @PrimaryKey(autoGenerate = true)
@@ -13,6 +16,10 @@ public class LogData {
 
     public String sensorName;
 
+    /**
+     * Readings are deleted once uploaded, this only marks readings whose file the backend rejected.
+     * They are kept with their file but not uploaded again.
+     */
     public boolean synced;
 
     public String data;
@@ -21,6 +28,12 @@ public class LogData {
 
     public String filePath;
 
+    /**
+     * One of the {@link UploadLane} constants, derived from the sensor name.
+     */
+    @ColumnInfo(defaultValue = "1")
+    public int lane = UploadLane.BULK;
+
     public LogData(){}
 
     public LogData(long timestamp, String sensorName, String data){
@@ -28,6 +41,7 @@ public class LogData {
         this.sensorName = sensorName;
         this.data = data;
         this.synced = false;
+        this.lane = UploadLane.forSensor(sensorName);
     }
 
     public LogData(long timestamp, String sensorName, String data, boolean hasFile, String filePath) {
@@ -36,5 +50,6 @@ public class LogData {
         this.data = data;
         this.hasFile = hasFile;
         this.filePath = filePath;
+        this.lane = UploadLane.forSensor(sensorName);
     }
 }
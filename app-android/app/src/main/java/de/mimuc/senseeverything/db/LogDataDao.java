@@ -1,5 +1,7 @@
 package de.mimuc.senseeverything.db;
 
+import android.database.Cursor;
+
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
@@ -17,8 +19,57 @@ public interface LogDataDao {
     @Insert
     void insertAll(LogData... logDatas);
 
-    @Query("SELECT * FROM logdata WHERE synced = FALSE ORDER BY timestamp ASC LIMIT :n")
-    List<LogData> getNextNUnsynced(int n);
+    @Insert
+    void insertBatch(List<LogData> logDatas);
+
+    /**
+     * Unsynced readings with a file, which are uploaded one by one together with their file and
+     * are left out of the batches below.
+     */
+    @Query("SELECT * FROM logdata WHERE synced = FALSE AND hasFile = TRUE ORDER BY timestamp ASC, id ASC LIMIT :n")
+    List<LogData> getNextNUnsyncedWithFile(int n);
+
+    /**
+     * Whether the lane has unsynced readings.
+     */
+    @Query("SELECT EXISTS(SELECT 1 FROM logdata WHERE synced = FALSE AND lane = :lane)")
+    boolean hasUnsynced(int lane);
+
+    /**
+     * Key of the last row of a batch of {@code n} unsynced readings of the lane after the given key,
+     * or of the last unsynced reading if there are fewer, with the highest id of the batch.
+     * {@code null} if there is nothing after the key. Served by the (synced, lane, timestamp, id)
+     * index.
+     */
+    @Query("WITH batch AS (SELECT timestamp, id FROM logdata WHERE synced = FALSE AND lane = :lane AND hasFile = FALSE AND timestamp >= :afterTimestamp AND (timestamp > :afterTimestamp OR id > :afterId) ORDER BY timestamp ASC, id ASC LIMIT :n) SELECT timestamp, id, (SELECT MAX(id) FROM batch) AS maxId FROM batch ORDER BY timestamp DESC, id DESC LIMIT 1")
+    LogDataKey getBatchEndAfter(int lane, long afterTimestamp, int afterId, int n);
+
+    /**
+     * Unsynced readings of the lane with keys in (after, upTo] and an id of at most {@code maxId},
+     * read through a cursor so a batch can be streamed without loading it. The caller closes the
+     * cursor.
+     */
+    @Query("SELECT * FROM logdata WHERE synced = FALSE AND lane = :lane AND hasFile = FALSE AND timestamp >= :afterTimestamp AND timestamp <= :upToTimestamp AND (timestamp > :afterTimestamp OR id > :afterId) AND (timestamp < :upToTimestamp OR id <= :upToId) AND id <= :maxId ORDER BY timestamp ASC, id ASC")
+    Cursor getUnsyncedRangeCursor(int lane, long afterTimestamp, int afterId, long upToTimestamp, int upToId, int maxId);
+
+    /**
+     * Removes the readings of an acknowledged batch, i.e. the keys of the lane in (after, upTo]. Rows
+     * with an id above {@code maxId} were inserted after the batch was planned and are kept.
+     */
+    @Query("DELETE FROM logdata WHERE synced = FALSE AND lane = :lane AND hasFile = FALSE AND timestamp >= :afterTimestamp AND timestamp <= :upToTimestamp AND (timestamp > :afterTimestamp OR id > :afterId) AND (timestamp < :upToTimestamp OR id <= :upToId) AND id <= :maxId")
+    int deleteUnsyncedRange(int lane, long afterTimestamp, int afterId, long upToTimestamp, int upToId, int maxId);
+
+    /**
+     * Number of unsynced readings of the lane, counted on the (synced, lane, timestamp, id) index.
+     */
+    @Query("SELECT COUNT(*) FROM logdata WHERE synced = FALSE AND lane = :lane")
+    int getUnsyncedCount(int lane);
+
+    /**
+     * @return timestamp of the oldest unsynced reading of the lane, {@code null} if there is none
+     */
+    @Query("SELECT MIN(timestamp) FROM logdata WHERE synced = FALSE AND lane = :lane")
+    Long getOldestUnsyncedTimestamp(int lane);
 
     @Update
     public void updateLogData(LogData... logData);
@@ -0,0 +1,456 @@
+package de.mimuc.senseeverything.db;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.room.RoomDatabase;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ingestion stage between the sensors and Room.
+ * <p>
+ * Sensors enqueue readings into a bounded ring of preallocated slots, so producing a reading does
+ * not allocate. A single writer thread drains the ring and commits the readings in groups inside one
+ * transaction, as soon as either {@link #MAX_COMMIT_SIZE} readings are pending or
+ * {@link #MAX_COMMIT_DELAY_MS} have passed since the oldest pending reading arrived.
+ * <p>
+ * When the ring is full, producers wait up to {@link #ENQUEUE_WAIT_MS} for the writer to make room.
+ * They do not wait while commits are failing, the database may be unavailable for a long time. A
+ * reading that still finds no room is dropped and counted in {@link #getDroppedReadings()}, unless it
+ * belongs to {@link UploadLane#PRIORITY}: those are few and are kept in an overflow list instead.
+ * <p>
+ * {@link MotionChunk}s are already batched by the sensors and are committed with the next group. At
+ * most {@link #MAX_PENDING_CHUNKS} wait for a commit, further chunks are handled like readings and
+ * counted in {@link #getDroppedChunks()}.
+ * <p>
+ * A failed commit is retried with exponential backoff until it succeeds, new readings stay in the
+ * ring meanwhile. Only on {@link #shutdown()} the group is given up after
+ * {@link #MAX_COMMIT_ATTEMPTS} attempts and counted as dropped.
+ * <p>
+ * The app database uses the shared instance from {@link #getInstance(AppDatabase)}, partitions get a
+ * queue of their own that is shut down once the partition is no longer written to.
+ */
+public class LogDataIngestionQueue {
+    private static final String TAG = "LogDataIngestionQueue";
+
+    private static final int CAPACITY = 4096;
+    private static final int MAX_COMMIT_SIZE = 512;
+    private static final long MAX_COMMIT_DELAY_MS = 2000;
+    private static final int STATS_LOG_INTERVAL = 100; // commits
+    private static final int MAX_PENDING_CHUNKS = 64;
+    private static final long ENQUEUE_WAIT_MS = 100;
+    private static final int MAX_COMMIT_ATTEMPTS = 5; // on shutdown
+    private static final long COMMIT_RETRY_DELAY_MS = 200;
+    private static final long MAX_COMMIT_RETRY_DELAY_MS = 60 * 1000;
+    private static final int DROP_LOG_INTERVAL = 1000; // dropped readings
+
+    private static LogDataIngestionQueue instance;
+
+    private final RoomDatabase db;
+    private final LogDataDao logDataDao;
+    private final MotionChunkDao motionChunkDao;
+    private final Thread writer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition writerWakeup = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // ring slots, guarded by lock
+    private final long[] timestamps = new long[CAPACITY];
+    private final String[] sensorNames = new String[CAPACITY];
+    private final String[] data = new String[CAPACITY];
+    private final boolean[] hasFile = new boolean[CAPACITY];
+    private final String[] filePaths = new String[CAPACITY];
+    private int head = 0;
+    private int count = 0;
+    private long oldestPendingAt = 0;
+    private boolean flushRequested = false;
+    private volatile boolean shutdownRequested = false;
+    private final ArrayDeque<MotionChunk> pendingChunks = new ArrayDeque<>();
+    // priority readings that found the ring full, only allocated then
+    private final ArrayDeque<LogData> priorityOverflow = new ArrayDeque<>();
+
+    // owned by the writer thread, entities are reused between commits
+    private final LogData[] entityPool = new LogData[MAX_COMMIT_SIZE];
+    private final List<LogData> pendingCommit = new ArrayList<>(MAX_COMMIT_SIZE);
+    private final List<MotionChunk> pendingChunkCommit = new ArrayList<>();
+
+    // metrics
+    private volatile int maxQueueDepth = 0;
+    private volatile long commitCount = 0;
+    private volatile long committedReadings = 0;
+    private volatile long committedChunks = 0;
+    private volatile int lastCommitSize = 0;
+    private volatile long lastCommitLatencyMs = 0;
+    private volatile long maxCommitLatencyMs = 0;
+    private volatile long totalCommitLatencyMs = 0;
+    private volatile long droppedReadings = 0;
+    private volatile long droppedChunks = 0;
+    private volatile boolean commitFailing = false;
+
+    public LogDataIngestionQueue(RoomDatabase database, LogDataDao logDataDao, MotionChunkDao motionChunkDao, String name) {
+        db = database;
+        this.logDataDao = logDataDao;
+        this.motionChunkDao = motionChunkDao;
+
+        for (int i = 0; i < MAX_COMMIT_SIZE; i++) {
+            entityPool[i] = new LogData();
+        }
+
+        writer = new Thread(this::runWriter, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static synchronized LogDataIngestionQueue getInstance(AppDatabase database) {
+        if (instance == null) {
+            instance = new LogDataIngestionQueue(database, database.logDataDao(), database.motionChunkDao(), "LogDataIngestionWriter");
+        }
+        return instance;
+    }
+
+    /**
+     * Adds a reading to the queue. Waits at most {@link #ENQUEUE_WAIT_MS} if the queue is full and
+     * drops the reading if it is still full then, unless it is a priority reading.
+     */
+    public void enqueue(long timestamp, String sensorName, String value, boolean withFile, String filePath) {
+        lock.lock();
+        try {
+            if (count == CAPACITY) {
+                awaitRoom(false);
+            }
+            if (count == CAPACITY) {
+                if (UploadLane.forSensor(sensorName) == UploadLane.PRIORITY) {
+                    LogData entity = new LogData();
+                    entity.timestamp = timestamp;
+                    entity.sensorName = sensorName;
+                    entity.data = value;
+                    entity.hasFile = withFile;
+                    entity.filePath = filePath;
+                    priorityOverflow.add(entity);
+                    writerWakeup.signal();
+                } else if (droppedReadings++ % DROP_LOG_INTERVAL == 0) {
+                    Log.w(TAG, "ingestion queue full, dropped " + droppedReadings + " readings so far");
+                }
+                return;
+            }
+
+            int slot = (head + count) % CAPACITY;
+            timestamps[slot] = timestamp;
+            sensorNames[slot] = sensorName;
+            data[slot] = value;
+            hasFile[slot] = withFile;
+            filePaths[slot] = filePath;
+            count++;
+
+            if (count > maxQueueDepth) {
+                maxQueueDepth = count;
+            }
+
+            if (count == 1) {
+                oldestPendingAt = SystemClock.elapsedRealtime();
+                writerWakeup.signal();
+            } else if (count == MAX_COMMIT_SIZE) {
+                writerWakeup.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds an already batched chunk of motion samples, it is committed with the next group. Waits
+     * and drops like {@link #enqueue} if {@link #MAX_PENDING_CHUNKS} are pending.
+     */
+    public void enqueueChunk(MotionChunk chunk) {
+        lock.lock();
+        try {
+            if (pendingChunks.size() >= MAX_PENDING_CHUNKS) {
+                awaitRoom(true);
+            }
+            if (pendingChunks.size() >= MAX_PENDING_CHUNKS) {
+                droppedChunks++;
+                Log.w(TAG, "ingestion queue full, dropped " + droppedChunks + " motion chunks so far");
+                return;
+            }
+
+            pendingChunks.add(chunk);
+            writerWakeup.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // called with the lock held
+    private void awaitRoom(boolean forChunk) {
+        long deadline = SystemClock.elapsedRealtime() + ENQUEUE_WAIT_MS;
+        while (!commitFailing && !shutdownRequested
+                && (forChunk ? pendingChunks.size() >= MAX_PENDING_CHUNKS : count == CAPACITY)) {
+            long remaining = deadline - SystemClock.elapsedRealtime();
+            if (remaining <= 0) {
+                return;
+            }
+            try {
+                notFull.await(remaining, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Asks the writer to commit all pending readings right away instead of waiting for the
+     * commit delay, e.g. when a sampling window ends.
+     */
+    public void requestFlush() {
+        lock.lock();
+        try {
+            flushRequested = true;
+            writerWakeup.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commits everything still pending and stops the writer. Blocks until the writer is done, the
+     * queue must not be used afterwards.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdownRequested = true;
+            writerWakeup.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        while (true) {
+            int drained;
+            int depthBeforeDrain;
+
+            lock.lock();
+            try {
+                while (count == 0 && pendingChunks.isEmpty() && priorityOverflow.isEmpty()) {
+                    if (shutdownRequested) {
+                        return;
+                    }
+                    flushRequested = false;
+                    writerWakeup.awaitUninterruptibly();
+                }
+
+                long deadline = oldestPendingAt + MAX_COMMIT_DELAY_MS;
+                while (count < MAX_COMMIT_SIZE && !flushRequested && !shutdownRequested && pendingChunks.isEmpty() && priorityOverflow.isEmpty()) {
+                    long remaining = deadline - SystemClock.elapsedRealtime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    try {
+                        writerWakeup.await(remaining, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+
+                depthBeforeDrain = count;
+                drained = Math.min(count, MAX_COMMIT_SIZE);
+                pendingCommit.clear();
+                // the overflow is older than anything in the ring
+                while (!priorityOverflow.isEmpty()) {
+                    LogData entity = priorityOverflow.poll();
+                    entity.lane = UploadLane.PRIORITY;
+                    pendingCommit.add(entity);
+                }
+                for (int i = 0; i < drained; i++) {
+                    int slot = (head + i) % CAPACITY;
+                    LogData entity = entityPool[i];
+                    entity.id = 0;
+                    entity.timestamp = timestamps[slot];
+                    entity.sensorName = sensorNames[slot];
+                    entity.data = data[slot];
+                    entity.synced = false;
+                    entity.hasFile = hasFile[slot];
+                    entity.filePath = filePaths[slot];
+                    entity.lane = UploadLane.forSensor(entity.sensorName);
+                    pendingCommit.add(entity);
+
+                    sensorNames[slot] = null;
+                    data[slot] = null;
+                    filePaths[slot] = null;
+                }
+                head = (head + drained) % CAPACITY;
+                count -= drained;
+
+                pendingChunkCommit.clear();
+                pendingChunkCommit.addAll(pendingChunks);
+                pendingChunks.clear();
+                notFull.signalAll();
+
+                if (count == 0) {
+                    flushRequested = false;
+                } else {
+                    // whatever is left starts a new commit window
+                    oldestPendingAt = SystemClock.elapsedRealtime();
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            commit(depthBeforeDrain);
+        }
+    }
+
+    private void commit(int queueDepth) {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            if (!commitWithRetries()) {
+                // producers count their drops under the lock as well
+                lock.lock();
+                try {
+                    droppedReadings += pendingCommit.size();
+                    droppedChunks += pendingChunkCommit.size();
+                } finally {
+                    lock.unlock();
+                }
+                pendingChunkCommit.clear();
+                return;
+            }
+        } finally {
+            for (LogData entity : pendingCommit) {
+                entity.sensorName = null;
+                entity.data = null;
+                entity.filePath = null;
+            }
+        }
+        committedChunks += pendingChunkCommit.size();
+        pendingChunkCommit.clear();
+        long latency = SystemClock.elapsedRealtime() - start;
+
+        lastCommitSize = pendingCommit.size();
+        lastCommitLatencyMs = latency;
+        if (latency > maxCommitLatencyMs) {
+            maxCommitLatencyMs = latency;
+        }
+        totalCommitLatencyMs += latency;
+        committedReadings += lastCommitSize;
+        commitCount++;
+
+        if (commitCount % STATS_LOG_INTERVAL == 0) {
+            Log.i(TAG, "commits: " + commitCount
+                    + ", readings: " + committedReadings
+                    + ", motion chunks: " + committedChunks
+                    + ", avg commit size: " + (committedReadings / commitCount)
+                    + ", avg commit latency: " + (totalCommitLatencyMs / commitCount) + "ms"
+                    + ", max commit latency: " + maxCommitLatencyMs + "ms"
+                    + ", queue depth: " + queueDepth + " (max " + maxQueueDepth + ")"
+                    + ", dropped: " + droppedReadings + " readings, " + droppedChunks + " motion chunks");
+        }
+    }
+
+    /**
+     * Commits the drained group in one transaction. A failed attempt leaves nothing behind, so the
+     * same group is retried until it is committed, while producers keep filling the ring.
+     *
+     * @return false if the queue is shut down and the last {@link #MAX_COMMIT_ATTEMPTS} attempts
+     * failed, the group is given up then
+     */
+    private boolean commitWithRetries() {
+        long delay = COMMIT_RETRY_DELAY_MS;
+        int attemptsSinceShutdown = 0;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                db.runInTransaction(() -> {
+                    if (!pendingCommit.isEmpty()) {
+                        logDataDao.insertBatch(pendingCommit);
+                    }
+                    if (!pendingChunkCommit.isEmpty()) {
+                        motionChunkDao.insertBatch(pendingChunkCommit);
+                    }
+                });
+                commitFailing = false;
+                return true;
+            } catch (Exception e) {
+                commitFailing = true;
+                if (shutdownRequested && ++attemptsSinceShutdown >= MAX_COMMIT_ATTEMPTS) {
+                    Log.e(TAG, "could not commit " + pendingCommit.size() + " readings and " + pendingChunkCommit.size() + " motion chunks before shutdown, dropping them", e);
+                    return false;
+                }
+                Log.w(TAG, "commit attempt " + attempt + " failed, retrying in " + delay + "ms", e);
+            }
+
+            SystemClock.sleep(delay);
+            delay = Math.min(delay * 2, MAX_COMMIT_RETRY_DELAY_MS);
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public long getCommitCount() {
+        return commitCount;
+    }
+
+    public long getCommittedReadings() {
+        return committedReadings;
+    }
+
+    public long getCommittedChunks() {
+        return committedChunks;
+    }
+
+    public int getLastCommitSize() {
+        return lastCommitSize;
+    }
+
+    public long getLastCommitLatencyMs() {
+        return lastCommitLatencyMs;
+    }
+
+    public long getMaxCommitLatencyMs() {
+        return maxCommitLatencyMs;
+    }
+
+    /**
+     * @return bulk readings dropped because the queue was full, or because their commit still failed
+     * when the queue was shut down
+     */
+    public long getDroppedReadings() {
+        return droppedReadings;
+    }
+
+    /**
+     * @return motion chunks dropped like {@link #getDroppedReadings()}
+     */
+    public long getDroppedChunks() {
+        return droppedChunks;
+    }
+}
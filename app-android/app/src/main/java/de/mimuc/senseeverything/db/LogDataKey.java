@@ -0,0 +1,14 @@
+package de.mimuc.senseeverything.db;
+
+/**
+ * Position in the (timestamp, id) upload order of {@link LogData}.
+ */
+public class LogDataKey {
+    public long timestamp;
+    public int id;
+
+    /**
+     * Highest id among the rows up to this key, set by {@link LogDataDao#getBatchEndAfter}.
+     */
+    public int maxId;
+}
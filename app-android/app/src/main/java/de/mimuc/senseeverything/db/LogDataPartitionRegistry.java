@@ -0,0 +1,232 @@
+package de.mimuc.senseeverything.db;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.room.Room;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the per-day {@link PartitionDatabase}s that readings are written to when
+ * partitioning is enabled.
+ * <p>
+ * Every partition is a database file of its own named after its local day, so once a day has been
+ * uploaded it is dropped by deleting the file instead of deleting its rows, which leaves nothing to
+ * vacuum in the remaining partitions.
+ * <p>
+ * Partitions are written by the logging process and uploaded from the app process, so their state
+ * is derived from the file names and the clock only. A partition is sealed once its day ended more
+ * than {@link #SEAL_GRACE_MS} ago, which leaves time for the last readings of the day to be
+ * committed.
+ */
+public class LogDataPartitionRegistry {
+    private static final String TAG = "LogDataPartitions";
+
+    private static final String PREFIX = "readings-";
+    private static final long SEAL_GRACE_MS = 60 * 60 * 1000;
+
+    private static final String SP_PARTITION_UPLOADS = "partition_uploads";
+
+    private static LogDataPartitionRegistry instance;
+
+    private final Context context;
+    private final Map<String, PartitionDatabase> openPartitions = new HashMap<>();
+    // partitions a store of this process writes to, and the number of readers of each partition,
+    // a partition is only closed on release once neither is left
+    private final Set<String> writtenPartitions = new HashSet<>();
+    private final Map<String, Integer> readers = new HashMap<>();
+    private final Calendar calendar = Calendar.getInstance();
+
+    private LogDataPartitionRegistry(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized LogDataPartitionRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new LogDataPartitionRegistry(context);
+        }
+        return instance;
+    }
+
+    /**
+     * @return name of the partition readings arriving at {@code timestamp} belong to
+     */
+    public synchronized String partitionFor(long timestamp) {
+        calendar.setTimeInMillis(timestamp);
+        return String.format(Locale.US, "%s%04d%02d%02d", PREFIX,
+                calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    /**
+     * @return start of the day of the partition
+     */
+    public synchronized long getDayStart(String name) {
+        String day = name.substring(PREFIX.length());
+        calendar.clear();
+        calendar.set(Integer.parseInt(day.substring(0, 4)),
+                Integer.parseInt(day.substring(4, 6)) - 1,
+                Integer.parseInt(day.substring(6, 8)));
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * @return whether no more readings will be written to the partition
+     */
+    public boolean isSealed(String name, long now) {
+        // names sort by day
+        return name.compareTo(partitionFor(now - SEAL_GRACE_MS)) < 0;
+    }
+
+    /**
+     * @return names of all partitions on disk, oldest first
+     */
+    public List<String> getPartitions() {
+        List<String> partitions = new ArrayList<>();
+        for (String name : context.databaseList()) {
+            if (name.startsWith(PREFIX) && name.indexOf('-', PREFIX.length()) == -1) {
+                partitions.add(name);
+            }
+        }
+        Collections.sort(partitions);
+        return partitions;
+    }
+
+    public synchronized PartitionDatabase open(String name) {
+        PartitionDatabase partition = openPartitions.get(name);
+        if (partition == null) {
+            partition = Room.databaseBuilder(context, PartitionDatabase.class, name)
+                    .addMigrations(DatabaseMigrations.PARTITION)
+                    .build();
+            openPartitions.put(name, partition);
+        }
+        return partition;
+    }
+
+    public synchronized PartitionDatabase openForWriting(String name) {
+        writtenPartitions.add(name);
+        return open(name);
+    }
+
+    /**
+     * Opens a partition for reading until {@link #release(String)}, e.g. for one upload run.
+     */
+    public synchronized PartitionDatabase acquire(String name) {
+        Integer count = readers.get(name);
+        readers.put(name, count == null ? 1 : count + 1);
+        return open(name);
+    }
+
+    /**
+     * Closes a partition once no reader needs it anymore, unless a store of this process writes to
+     * it.
+     */
+    public synchronized void release(String name) {
+        Integer count = readers.get(name);
+        if (count != null && count > 1) {
+            readers.put(name, count - 1);
+            return;
+        }
+
+        readers.remove(name);
+        if (!writtenPartitions.contains(name)) {
+            close(name);
+        }
+    }
+
+    public synchronized void close(String name) {
+        writtenPartitions.remove(name);
+        PartitionDatabase partition = openPartitions.remove(name);
+        if (partition != null) {
+            partition.close();
+        }
+    }
+
+    /**
+     * Deletes a partition and its journal files in one go.
+     */
+    public synchronized void drop(String name) {
+        close(name);
+        if (!context.deleteDatabase(name)) {
+            Log.e(TAG, "could not drop partition " + name);
+        }
+        clearUploadCursor(name);
+    }
+
+    /**
+     * Deletes all partitions regardless of their upload state, e.g. when leaving a study.
+     */
+    public synchronized void dropAll() {
+        for (String name : getPartitions()) {
+            drop(name);
+        }
+    }
+
+    /**
+     * @return bytes used by all partitions including their write-ahead logs
+     */
+    public long getSizeOnDisk() {
+        long size = 0;
+        for (String name : getPartitions()) {
+            File file = context.getDatabasePath(name);
+            size += file.length();
+            size += new File(file.getPath() + "-wal").length();
+        }
+        return size;
+    }
+
+    // upload progress of sealed partitions per lane, only used by the uploading process. Progress
+    // saved before lanes existed covers all lanes and is where every lane continues from.
+
+    public long getUploadedTimestamp(String name, int lane) {
+        SharedPreferences uploads = uploads();
+        return uploads.getLong(name + "_timestamp_" + lane, uploads.getLong(name + "_timestamp", Long.MIN_VALUE));
+    }
+
+    public int getUploadedId(String name, int lane) {
+        SharedPreferences uploads = uploads();
+        return uploads.getInt(name + "_id_" + lane, uploads.getInt(name + "_id", 0));
+    }
+
+    public int getUploadedChunkId(String name) {
+        return uploads().getInt(name + "_chunk_id", 0);
+    }
+
+    public void setUploadedReadings(String name, int lane, long timestamp, int id) {
+        uploads().edit()
+                .putLong(name + "_timestamp_" + lane, timestamp)
+                .putInt(name + "_id_" + lane, id)
+                .commit();
+    }
+
+    public void setUploadedChunkId(String name, int id) {
+        uploads().edit().putInt(name + "_chunk_id", id).commit();
+    }
+
+    private void clearUploadCursor(String name) {
+        SharedPreferences.Editor editor = uploads().edit()
+                .remove(name + "_timestamp")
+                .remove(name + "_id")
+                .remove(name + "_chunk_id");
+        for (int lane : UploadLane.ALL) {
+            editor.remove(name + "_timestamp_" + lane).remove(name + "_id_" + lane);
+        }
+        editor.commit();
+    }
+
+    private SharedPreferences uploads() {
+        return context.getSharedPreferences(SP_PARTITION_UPLOADS, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,57 @@
+package de.mimuc.senseeverything.db;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * A chunk of consecutive samples of a numeric sensor, stored in binary form instead of one text
+ * {@link LogData} row per sample.
+ * <p>
+ * Layout of {@link #samples} ({@link #ENCODING_PACKED_V1}), little endian, per sample:
+ * int32 milliseconds since {@link #startTimestamp}, {@link #channels} float32 axis values and
+ * one byte with the sensor accuracy ({@code SensorManager.SENSOR_STATUS_*}).
+ * <p>
+ * {@link #ENCODING_GORILLA_V1} holds the same samples compressed, see
+ * {@code de.mimuc.senseeverything.sensor.MotionChunkEncoder}.
+ */
+@Entity(tableName = "motion_chunk")
+public class MotionChunk {
+    public static final int ENCODING_PACKED_V1 = 1;
+    public static final int ENCODING_GORILLA_V1 = 2;
+
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+
+    public String sensorName;
+
+    public long startTimestamp;
+
+    public long endTimestamp;
+
+    public int sampleCount;
+
+    public int channels;
+
+    public int encoding;
+
+    public byte[] samples;
+
+    public MotionChunk() {}
+
+    public MotionChunk(String sensorName, long startTimestamp, long endTimestamp, int sampleCount, int channels, int encoding, byte[] samples) {
+        this.sensorName = sensorName;
+        this.startTimestamp = startTimestamp;
+        this.endTimestamp = endTimestamp;
+        this.sampleCount = sampleCount;
+        this.channels = channels;
+        this.encoding = encoding;
+        this.samples = samples;
+    }
+
+    /**
+     * @return name of the encoding as understood by the backend
+     */
+    public static String encodingName(int encoding) {
+        return encoding == ENCODING_GORILLA_V1 ? "motion-gorilla-v1" : "motion-packed-v1";
+    }
+}
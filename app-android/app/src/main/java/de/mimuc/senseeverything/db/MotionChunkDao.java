@@ -0,0 +1,35 @@
+package de.mimuc.senseeverything.db;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface MotionChunkDao {
+    @Insert
+    void insertBatch(List<MotionChunk> chunks);
+
+    @Query("SELECT * FROM motion_chunk ORDER BY id ASC LIMIT :n")
+    List<MotionChunk> getNextN(int n);
+
+    @Query("SELECT * FROM motion_chunk WHERE id > :afterId ORDER BY id ASC LIMIT :n")
+    List<MotionChunk> getNextNAfter(int afterId, int n);
+
+    @Query("SELECT COALESCE(SUM(LENGTH(samples)), 0) FROM motion_chunk")
+    long getSamplesSize();
+
+    /**
+     * @return start of the oldest chunk, {@code null} if there is none
+     */
+    @Query("SELECT MIN(startTimestamp) FROM motion_chunk")
+    Long getOldestTimestamp();
+
+    @Delete
+    void deleteChunks(MotionChunk... chunks);
+
+    @Query("DELETE FROM motion_chunk")
+    void deleteAll();
+}
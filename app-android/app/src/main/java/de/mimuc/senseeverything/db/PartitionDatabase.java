@@ -0,0 +1,18 @@
+package de.mimuc.senseeverything.db;
+
+import androidx.room.Database;
+import androidx.room.RoomDatabase;
+
+/**
+ * One time partition of sensor readings, see {@link LogDataPartitionRegistry}.
+ * <p>
+ * Partitions are dropped as a whole once uploaded, so the schema is not exported.
+ */
+@Database(entities = {LogData.class, MotionChunk.class, UploadBatch.class}, version = 3, exportSchema = false)
+public abstract class PartitionDatabase extends RoomDatabase {
+    public abstract LogDataDao logDataDao();
+
+    public abstract MotionChunkDao motionChunkDao();
+
+    public abstract UploadBatchDao uploadBatchDao();
+}
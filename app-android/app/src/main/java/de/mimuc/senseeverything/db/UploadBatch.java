@@ -0,0 +1,52 @@
+package de.mimuc.senseeverything.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * A batch of {@link LogData} that is being uploaded, i.e. the unsynced rows of {@link #lane} with
+ * keys in (after, upTo] and an id of at most {@link #maxId}.
+ * <p>
+ * Batches are stored before they are sent and removed once acknowledged, together with their rows.
+ * A batch left behind by an interrupted upload is sent again with the same {@link #batchId} and the
+ * same rows, so the backend can recognize it if it already stored it.
+ */
+@Entity(tableName = "upload_batch")
+public class UploadBatch {
+    /**
+     * Per device, increasing in the order batches were planned.
+     */
+    @PrimaryKey
+    public long sequence;
+
+    @NonNull
+    public String batchId = "";
+
+    @ColumnInfo(defaultValue = "1")
+    public int lane = UploadLane.BULK;
+
+    public long afterTimestamp;
+
+    public int afterId;
+
+    public long upToTimestamp;
+
+    public int upToId;
+
+    public int maxId;
+
+    public UploadBatch() {}
+
+    public UploadBatch(long sequence, @NonNull String batchId, int lane, long afterTimestamp, int afterId, long upToTimestamp, int upToId, int maxId) {
+        this.sequence = sequence;
+        this.batchId = batchId;
+        this.lane = lane;
+        this.afterTimestamp = afterTimestamp;
+        this.afterId = afterId;
+        this.upToTimestamp = upToTimestamp;
+        this.upToId = upToId;
+        this.maxId = maxId;
+    }
+}
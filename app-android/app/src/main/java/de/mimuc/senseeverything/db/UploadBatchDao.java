@@ -0,0 +1,23 @@
+package de.mimuc.senseeverything.db;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface UploadBatchDao {
+    @Insert
+    void insert(UploadBatch batch);
+
+    /**
+     * Batches of the lane that were planned but not acknowledged, in the order they were planned.
+     */
+    @Query("SELECT * FROM upload_batch WHERE lane = :lane ORDER BY sequence ASC")
+    List<UploadBatch> getPending(int lane);
+
+    @Delete
+    void delete(UploadBatch batch);
+}
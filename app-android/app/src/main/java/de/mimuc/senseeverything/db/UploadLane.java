@@ -0,0 +1,37 @@
+package de.mimuc.senseeverything.db;
+
+/**
+ * Upload priority classes of {@link LogData}, stored per row in {@link LogData#lane}.
+ * <p>
+ * Readings in the {@link #PRIORITY} lane are small and wanted soon, e.g. interaction widget logs and
+ * the results of conversation detection. They are uploaded within minutes on any network and
+ * separately from the {@link #BULK} lane, which holds all other sensor data and waits for an
+ * unmetered network and a larger backlog. Questionnaire answers are not readings and are uploaded
+ * right away by their own worker.
+ */
+public final class UploadLane {
+    public static final int PRIORITY = 0;
+    public static final int BULK = 1;
+
+    // highest priority first
+    public static final int[] ALL = {PRIORITY, BULK};
+
+    private static final String INTERACTION_LOG = "Interaction Log";
+    private static final String CONVERSATION_PREFIX = "Conversation";
+
+    /**
+     * Rows written before lanes existed are moved with this condition, it has to match
+     * {@link #forSensor(String)}.
+     */
+    static final String PRIORITY_SENSOR_CONDITION = "sensorName = '" + INTERACTION_LOG + "' OR sensorName LIKE '" + CONVERSATION_PREFIX + "%'";
+
+    private UploadLane() {
+    }
+
+    public static int forSensor(String sensorName) {
+        if (sensorName != null && (sensorName.equals(INTERACTION_LOG) || sensorName.startsWith(CONVERSATION_PREFIX))) {
+            return PRIORITY;
+        }
+        return BULK;
+    }
+}
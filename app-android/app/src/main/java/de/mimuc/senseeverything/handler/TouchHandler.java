@@ -6,7 +6,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import de.mimuc.senseeverything.activity.CONST;
+import de.mimuc.senseeverything.helpers.ReadingFormatter;
 
 import android.os.Handler;
 import android.os.Looper;
@@ -38,6 +38,18 @@ public final class TouchHandler extends Handler {
     	m_Listeners.add(toAdd);
     }
 	
+    private String formatTouch(String event) {
+        return ReadingFormatter.get()
+                .appendTimestamp(System.currentTimeMillis()).append(',')
+                .append(finger).append(',')
+                .append(event).append(',')
+                .append(x).append(',')
+                .append(y).append(',')
+                .append(prs).append(',')
+                .append(q)
+                .toString();
+    }
+
     private void sendMessage(String msg) {
         // Notify everybody that may be interested.
         for (HandlerListener hl : m_Listeners)
@@ -75,7 +87,7 @@ public final class TouchHandler extends Handler {
 				  
     					if (code0 == 0 && code1 == 0 && code2 == 0)
     					{
-    						sendMessage(CONST.dateFormat.format(System.currentTimeMillis()) + ","+ finger +"," + e + "," + x + "," + y + "," + prs  + "," + q);
+    						sendMessage(formatTouch(e));
     					}
     					else
     					{
@@ -92,7 +104,7 @@ public final class TouchHandler extends Handler {
     						else if (code0 == 3 && code1 == 57) //HEX: 39 
     						{
     							if (code2.equals(maxVal)) //HEX: FFFFFFFF
-    								sendMessage(CONST.dateFormat.format(System.currentTimeMillis()) + ","+ finger +"," + "ende" + "," + x + "," + y + "," + prs  + "," + q);
+    								sendMessage(formatTouch("ende"));
     							else
     								e = "start";
     						}
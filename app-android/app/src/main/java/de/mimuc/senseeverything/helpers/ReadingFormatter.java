@@ -0,0 +1,175 @@
+package de.mimuc.senseeverything.helpers;
+
+import java.util.Calendar;
+
+/**
+ * Builds the text of a reading in a per-thread buffer, replacing the shared (and not thread-safe)
+ * {@code NumberFormat} and {@code SimpleDateFormat} instances that were used before.
+ * <p>
+ * Usage: {@code ReadingFormatter.get().appendTimestamp(t).append(',').append(value).toString()}.
+ * Only the final {@link #toString()} allocates. The per-thread buffer is in use from {@link #get()}
+ * until {@link #toString()}, a nested {@link #get()} in between, e.g. from the {@code toString()} of
+ * an appended value, gets a new formatter instead.
+ * <p>
+ * Timestamps are written in local time as {@code yyyy-MM-dd HH:mm:ss.SSS}. The date and hour are
+ * computed with a {@link Calendar} once per hour and reused, the rest is plain arithmetic.
+ * <p>
+ * Floating point values are written with up to six fraction digits and without trailing zeros,
+ * values too large for that fall back to {@link StringBuilder#append(double)}.
+ */
+public final class ReadingFormatter {
+    private static final ThreadLocal<ReadingFormatter> INSTANCE = ThreadLocal.withInitial(ReadingFormatter::new);
+
+    private static final int FRACTION_DIGITS = 6;
+    private static final double FRACTION_SCALE = 1e6;
+    // keeps value * scale well inside the long range and exact to the last digit
+    private static final double MAX_FIXED = 1e12;
+
+    private static final long HOUR_MS = 60 * 60 * 1000;
+
+    private final StringBuilder builder = new StringBuilder(256);
+    private final Calendar calendar = Calendar.getInstance();
+
+    // "yyyy-MM-dd HH" of the cached hour
+    private final char[] hourPrefix = new char[13];
+    private long hourStart = Long.MIN_VALUE;
+    private long hourEnd = Long.MIN_VALUE;
+
+    private boolean inUse;
+
+    private ReadingFormatter() {
+    }
+
+    /**
+     * @return the formatter of the calling thread, emptied, or a new one if it is still in use
+     */
+    public static ReadingFormatter get() {
+        ReadingFormatter formatter = INSTANCE.get();
+        if (formatter.inUse) {
+            // clearing it would corrupt the reading being built
+            formatter = new ReadingFormatter();
+        }
+        formatter.inUse = true;
+        formatter.builder.setLength(0);
+        return formatter;
+    }
+
+    public ReadingFormatter appendTimestamp(long millis) {
+        if (millis < hourStart || millis >= hourEnd) {
+            cacheHour(millis);
+        }
+
+        long withinHour = millis - hourStart;
+        builder.append(hourPrefix).append(':');
+        appendPadded(withinHour / 60_000, 2);
+        builder.append(':');
+        appendPadded(withinHour / 1000 % 60, 2);
+        builder.append('.');
+        appendPadded(withinHour % 1000, 3);
+        return this;
+    }
+
+    public ReadingFormatter append(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= MAX_FIXED) {
+            builder.append(value);
+            return this;
+        }
+
+        long scaled = Math.round(Math.abs(value) * FRACTION_SCALE);
+        if (value < 0 && scaled != 0) {
+            builder.append('-');
+        }
+        builder.append(scaled / (long) FRACTION_SCALE);
+
+        long fraction = scaled % (long) FRACTION_SCALE;
+        if (fraction != 0) {
+            int digits = FRACTION_DIGITS;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            builder.append('.');
+            appendPadded(fraction, digits);
+        }
+        return this;
+    }
+
+    public ReadingFormatter append(float value) {
+        return append((double) value);
+    }
+
+    public ReadingFormatter append(long value) {
+        builder.append(value);
+        return this;
+    }
+
+    public ReadingFormatter append(int value) {
+        builder.append(value);
+        return this;
+    }
+
+    public ReadingFormatter append(boolean value) {
+        builder.append(value);
+        return this;
+    }
+
+    public ReadingFormatter append(char value) {
+        builder.append(value);
+        return this;
+    }
+
+    public ReadingFormatter append(CharSequence value) {
+        builder.append(value);
+        return this;
+    }
+
+    public ReadingFormatter append(Object value) {
+        builder.append(value);
+        return this;
+    }
+
+    /**
+     * @return the text of the reading, the formatter can be reused afterwards
+     */
+    @Override
+    public String toString() {
+        inUse = false;
+        return builder.toString();
+    }
+
+    private void cacheHour(long millis) {
+        calendar.setTimeInMillis(millis);
+        hourStart = millis
+                - calendar.get(Calendar.MINUTE) * 60_000L
+                - calendar.get(Calendar.SECOND) * 1000L
+                - calendar.get(Calendar.MILLISECOND);
+        hourEnd = hourStart + HOUR_MS;
+
+        writeDigits(hourPrefix, 0, calendar.get(Calendar.YEAR), 4);
+        hourPrefix[4] = '-';
+        writeDigits(hourPrefix, 5, calendar.get(Calendar.MONTH) + 1, 2);
+        hourPrefix[7] = '-';
+        writeDigits(hourPrefix, 8, calendar.get(Calendar.DAY_OF_MONTH), 2);
+        hourPrefix[10] = ' ';
+        writeDigits(hourPrefix, 11, calendar.get(Calendar.HOUR_OF_DAY), 2);
+    }
+
+    private void appendPadded(long value, int width) {
+        for (long limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) {
+                for (int i = 1; i < width; i++) {
+                    builder.append('0');
+                }
+                break;
+            }
+        }
+        builder.append(value);
+    }
+
+    private static void writeDigits(char[] target, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            target[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package de.mimuc.senseeverything.sensor;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener2;
+import android.hardware.SensorManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import de.mimuc.senseeverything.activity.CONST;
+import de.mimuc.senseeverything.db.AppDatabase;
+
+/**
+ * Base for sensors read through the {@link SensorManager} whose samples are stored with
+ * {@link #onLogMotionSample(long, float[], int)}.
+ * <p>
+ * Sensors are registered with a maximum report latency, so the sensor hub collects samples in its
+ * FIFO and delivers them in bursts instead of waking the application processor for every sample.
+ * The latency defaults to {@link #getDefaultMaxReportLatencyUs()} and can be changed per sensor with
+ * {@link CONST#KEY_SENSOR_MAX_REPORT_LATENCY_US} followed by the sensor name, 0 disables batching.
+ * Devices without a FIFO ignore the latency.
+ * <p>
+ * Because batched events are delivered late, sample times are taken from
+ * {@link SensorEvent#timestamp} (elapsed realtime) and converted to wall clock time. When stopped, the
+ * FIFO is flushed first and the listener is only unregistered once the flush completed.
+ * <p>
+ * Three-axis sensors can additionally store features of their signal with a
+ * {@link MotionFeatureExtractor}, see {@link #extractsMotionFeatures()}.
+ */
+public abstract class AbstractHardwareSensor extends AbstractSensor implements SensorEventListener2 {
+	private static final long serialVersionUID = 1L;
+
+	protected static final int DEFAULT_MAX_REPORT_LATENCY_US = 10_000_000;
+
+	private transient SensorManager sensorManager;
+	private transient MotionFeatureExtractor featureExtractor;
+	private boolean flushPending = false;
+
+	protected AbstractHardwareSensor(Context applicationContext, AppDatabase database) {
+		super(applicationContext, database);
+	}
+
+	/**
+	 * @return one of the {@code Sensor.TYPE_*} constants
+	 */
+	protected abstract int getSensorType();
+
+	/**
+	 * @return sampling period in microseconds or one of the {@code SensorManager.SENSOR_DELAY_*} constants
+	 */
+	protected int getSamplingPeriodUs() {
+		return SensorManager.SENSOR_DELAY_NORMAL;
+	}
+
+	protected int getDefaultMaxReportLatencyUs() {
+		return DEFAULT_MAX_REPORT_LATENCY_US;
+	}
+
+	protected boolean extractsMotionFeatures() {
+		return false;
+	}
+
+	@Override
+	public boolean isAvailable(Context context) {
+		SensorManager sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+		return sensorManager.getDefaultSensor(getSensorType()) != null;
+	}
+
+	@Override
+	public void start(Context context) {
+		if (flushPending) {
+			// restarted before the previous flush completed
+			finishStop();
+		}
+
+		super.start(context);
+		if (!m_isSensorAvailable)
+			return;
+
+		SharedPreferences sp = context.getSharedPreferences(CONST.SP_LOG_EVERYTHING, Activity.MODE_PRIVATE);
+		int maxReportLatencyUs = sp.getInt(CONST.KEY_SENSOR_MAX_REPORT_LATENCY_US + SENSOR_NAME, getDefaultMaxReportLatencyUs());
+
+		if (extractsMotionFeatures()) {
+			if (featureExtractor == null) {
+				featureExtractor = new MotionFeatureExtractor(SENSOR_NAME, getReadingStore());
+			} else {
+				featureExtractor.reset();
+			}
+		}
+
+		sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+		Sensor sensor = sensorManager.getDefaultSensor(getSensorType());
+		sensorManager.registerListener(this, sensor, getSamplingPeriodUs(), maxReportLatencyUs);
+		Log.d(TAG, "registered with max report latency " + maxReportLatencyUs + "us, fifo size " + sensor.getFifoMaxEventCount());
+		m_IsRunning = true;
+	}
+
+	@Override
+	public void stop() {
+		if (m_IsRunning) {
+			m_IsRunning = false;
+			flushPending = sensorManager.flush(this);
+			if (!flushPending) {
+				finishStop();
+			}
+		}
+	}
+
+	private void finishStop() {
+		flushPending = false;
+		sensorManager.unregisterListener(this);
+		flushSamples();
+		try {
+			closeDataSource();
+		} catch (Exception e) {
+			Log.e(TAG, e.toString());
+		}
+	}
+
+	@Override
+	public void onFlushCompleted(Sensor sensor) {
+		if (flushPending) {
+			finishStop();
+		}
+	}
+
+	@Override
+	public void onAccuracyChanged(Sensor sensor, int accuracy) {
+	}
+
+	@Override
+	public void onSensorChanged(SensorEvent event) {
+		if (m_IsRunning || flushPending) {
+			long wallClockOffset = System.currentTimeMillis() - SystemClock.elapsedRealtime();
+			long timestamp = wallClockOffset + event.timestamp / 1_000_000;
+			onLogMotionSample(timestamp, event.values, event.accuracy);
+			if (featureExtractor != null) {
+				featureExtractor.add(timestamp, event.values);
+			}
+		}
+	}
+}
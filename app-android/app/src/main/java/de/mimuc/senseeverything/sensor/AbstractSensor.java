@@ -1,15 +1,21 @@
 package de.mimuc.senseeverything.sensor;
 
+import android.app.Activity;
 import android.content.Context;
-import android.os.AsyncTask;
+import android.content.SharedPreferences;
 import android.util.Log;
 import android.view.View;
 
 import java.io.Serializable;
 
+import de.mimuc.senseeverything.activity.CONST;
+import de.mimuc.senseeverything.api.model.SensorReadingConfiguration;
+import de.mimuc.senseeverything.api.model.SensorReadingMode;
 import de.mimuc.senseeverything.data.SensorReadingDiskDataSource;
+import de.mimuc.senseeverything.data.SensorReadingStore;
+import de.mimuc.senseeverything.data.SensorReadingStores;
 import de.mimuc.senseeverything.db.AppDatabase;
-import de.mimuc.senseeverything.db.LogData;
+import de.mimuc.senseeverything.helpers.ReadingFormatter;
 
 public abstract class AbstractSensor implements Serializable  {
 
@@ -25,10 +31,16 @@ public abstract class AbstractSensor implements Serializable  {
 
 	protected boolean m_isSensorAvailable = false;
 
-	private final AppDatabase db;
+	private final transient SensorReadingStore readingStore;
+
+	private transient MotionSampleBuffer motionSampleBuffer;
+
+	private transient SensorReadingMode readingMode = SensorReadingMode.RAW;
+	private transient long aggregationWindowMs = SensorReadingConfiguration.DEFAULT_AGGREGATION_WINDOW_MS;
+	private transient WindowedAggregator aggregator;
 
 	protected AbstractSensor(Context applicationContext, AppDatabase database) {
-		db = database;
+		readingStore = SensorReadingStores.getInstance(applicationContext, database);
 	}
 	
 	protected boolean m_IsRunning = false;
@@ -71,14 +83,34 @@ public abstract class AbstractSensor implements Serializable  {
 			Log.i(TAG, "Sensor not available");
 
 		dataSource = new SensorReadingDiskDataSource(context, getSensorName());
+
+		SharedPreferences sp = context.getSharedPreferences(CONST.SP_LOG_EVERYTHING, Activity.MODE_PRIVATE);
+		readingMode = readingModeFor(sp.getString(CONST.KEY_SENSOR_READING_MODE + getSensorName(), null));
+		aggregationWindowMs = sp.getLong(CONST.KEY_SENSOR_AGGREGATION_WINDOW_MS + getSensorName(), SensorReadingConfiguration.DEFAULT_AGGREGATION_WINDOW_MS);
+		if (aggregationWindowMs <= 0) {
+			// stored before enrolment clamped the window
+			aggregationWindowMs = SensorReadingConfiguration.DEFAULT_AGGREGATION_WINDOW_MS;
+		}
+		aggregator = null;
+	}
+
+	private SensorReadingMode readingModeFor(String mode) {
+		if (mode == null) {
+			return SensorReadingMode.RAW;
+		}
+
+		try {
+			return SensorReadingMode.valueOf(mode);
+		} catch (IllegalArgumentException e) {
+			Log.e(TAG, "unknown reading mode " + mode);
+			return SensorReadingMode.RAW;
+		}
 	}
 
 	protected void onLogDataItem(Long timestamp, String data){
 		// Log.d(TAG, "onLogDataItem from " + SENSOR_NAME + ": " + data + " at " + timestamp);
 
-		AsyncTask.execute(() -> {
-			db.logDataDao().insertAll(new LogData(timestamp,SENSOR_NAME, data));
-		});
+		readingStore.append(timestamp, SENSOR_NAME, data, false, null);
 	}
 
 	public void tryLogStringData(String data) throws SensorNotRunningException {
@@ -90,9 +122,66 @@ public abstract class AbstractSensor implements Serializable  {
 	}
 
 	protected void onLogDataItemWithFile(Long timestamp, String data, String fileName) {
-		AsyncTask.execute(() -> {
-			db.logDataDao().insertAll(new LogData(timestamp, SENSOR_NAME, data, true, fileName));
-		});
+		readingStore.append(timestamp, SENSOR_NAME, data, true, fileName);
+	}
+
+	/**
+	 * Buffers a sample of a numeric sensor in compressed binary form, see {@link MotionSampleBuffer}.
+	 * The first {@link #getMotionChannels()} values of the sample are kept.
+	 * <p>
+	 * Depending on the {@link SensorReadingMode} of the sensor, the sample is summarized by a
+	 * {@link WindowedAggregator} instead or as well.
+	 */
+	protected void onLogMotionSample(long timestamp, float[] values, int accuracy) {
+		if (readingMode != SensorReadingMode.AGGREGATE) {
+			if (motionSampleBuffer == null) {
+				motionSampleBuffer = new MotionSampleBuffer(SENSOR_NAME, getMotionChannels(), readingStore);
+			}
+			motionSampleBuffer.add(timestamp, values, accuracy);
+		}
+		if (readingMode != SensorReadingMode.RAW) {
+			aggregator(getMotionChannels()).add(timestamp, values);
+		}
+	}
+
+	/**
+	 * Logs a single numeric value as text reading, or summarizes it depending on the
+	 * {@link SensorReadingMode} of the sensor.
+	 */
+	protected void onLogValue(long timestamp, double value) {
+		if (readingMode != SensorReadingMode.AGGREGATE) {
+			onLogDataItem(timestamp, ReadingFormatter.get().append(value).toString());
+		}
+		if (readingMode != SensorReadingMode.RAW) {
+			aggregator(1).add(timestamp, value);
+		}
+	}
+
+	private WindowedAggregator aggregator(int channels) {
+		if (aggregator == null) {
+			aggregator = new WindowedAggregator(SENSOR_NAME, channels, aggregationWindowMs, readingStore);
+		}
+		return aggregator;
+	}
+
+	protected SensorReadingStore getReadingStore() {
+		return readingStore;
+	}
+
+	protected int getMotionChannels() {
+		return 3;
+	}
+
+	/**
+	 * Stores buffered samples and the current aggregation window, e.g. when the sensor stops.
+	 */
+	protected void flushSamples() {
+		if (motionSampleBuffer != null) {
+			motionSampleBuffer.flush();
+		}
+		if (aggregator != null) {
+			aggregator.flush();
+		}
 	}
 
 	protected void closeDataSource() {
@@ -0,0 +1,80 @@
+package de.mimuc.senseeverything.sensor;
+
+/**
+ * In-place radix-2 FFT of a fixed size. Twiddle factors and the bit reversal permutation are
+ * computed once, so repeated transforms do not allocate.
+ * <p>
+ * Not thread-safe, {@link #re} and {@link #im} are the workspace of the transform.
+ */
+public class FFT {
+	private final int size;
+	private final double[] cos;
+	private final double[] sin;
+	private final int[] reversed;
+
+	public final double[] re;
+	public final double[] im;
+
+	public FFT(int size) {
+		if (size < 2 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("FFT size must be a power of two, got " + size);
+		}
+
+		this.size = size;
+		this.re = new double[size];
+		this.im = new double[size];
+
+		cos = new double[size / 2];
+		sin = new double[size / 2];
+		for (int i = 0; i < size / 2; i++) {
+			cos[i] = Math.cos(2 * Math.PI * i / size);
+			sin[i] = Math.sin(2 * Math.PI * i / size);
+		}
+
+		int bits = Integer.numberOfTrailingZeros(size);
+		reversed = new int[size];
+		for (int i = 0; i < size; i++) {
+			reversed[i] = Integer.reverse(i) >>> (32 - bits);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Replaces {@link #re} and {@link #im} with their forward transform.
+	 */
+	public void transform() {
+		for (int i = 0; i < size; i++) {
+			int j = reversed[i];
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+
+		for (int length = 2; length <= size; length <<= 1) {
+			int half = length / 2;
+			int step = size / length;
+			for (int start = 0; start < size; start += length) {
+				for (int k = 0; k < half; k++) {
+					int even = start + k;
+					int odd = even + half;
+					double c = cos[k * step];
+					double s = sin[k * step];
+					double oddRe = re[odd] * c + im[odd] * s;
+					double oddIm = im[odd] * c - re[odd] * s;
+					re[odd] = re[even] - oddRe;
+					im[odd] = im[even] - oddIm;
+					re[even] += oddRe;
+					im[even] += oddIm;
+				}
+			}
+		}
+	}
+}
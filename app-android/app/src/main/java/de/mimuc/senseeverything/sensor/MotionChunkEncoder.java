@@ -0,0 +1,148 @@
+package de.mimuc.senseeverything.sensor;
+
+import java.util.Arrays;
+
+import de.mimuc.senseeverything.db.MotionChunk;
+
+/**
+ * Compresses a chunk of samples into the {@link MotionChunk#ENCODING_GORILLA_V1} format.
+ * <p>
+ * Layout:
+ * <ul>
+ * <li>varint sample count</li>
+ * <li>for every sample after the first, the zigzag varint delta-of-delta of its timestamp in
+ * milliseconds, the first sample is at the chunk timestamp</li>
+ * <li>accuracy runs of {@code int8 accuracy, varint length} until all samples are covered</li>
+ * <li>a bit stream of all values, sample by sample and channel by channel, each XORed with the
+ * previous value of its channel as in Facebook's Gorilla, padded to a full byte</li>
+ * </ul>
+ * Regularly sampled, slowly changing signals mostly cost one byte per timestamp and a few bits per
+ * value instead of 4 bytes each.
+ * <p>
+ * Not thread-safe, the output buffer is reused between chunks.
+ */
+public class MotionChunkEncoder {
+	private final int channels;
+
+	// per channel state of the XOR stream
+	private final int[] previousValue;
+	private final int[] previousLeading;
+	private final int[] previousTrailing;
+
+	private byte[] out = new byte[1024];
+	private int position;
+	private long bitBuffer;
+	private int bitCount;
+
+	public MotionChunkEncoder(int channels) {
+		this.channels = channels;
+		this.previousValue = new int[channels];
+		this.previousLeading = new int[channels];
+		this.previousTrailing = new int[channels];
+	}
+
+	/**
+	 * @param timestamps milliseconds of the first {@code count} samples
+	 * @param values     {@code channels} values per sample, sample by sample
+	 * @param accuracies sensor accuracy per sample
+	 */
+	public byte[] encode(long[] timestamps, float[] values, byte[] accuracies, int count) {
+		position = 0;
+		bitBuffer = 0;
+		bitCount = 0;
+
+		writeVarint(count);
+
+		long previousDelta = 0;
+		for (int i = 1; i < count; i++) {
+			long delta = timestamps[i] - timestamps[i - 1];
+			writeVarint(zigzag(delta - previousDelta));
+			previousDelta = delta;
+		}
+
+		int runStart = 0;
+		for (int i = 1; i <= count; i++) {
+			if (i == count || accuracies[i] != accuracies[runStart]) {
+				ensureCapacity(1);
+				out[position++] = accuracies[runStart];
+				writeVarint(i - runStart);
+				runStart = i;
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			for (int channel = 0; channel < channels; channel++) {
+				writeValue(channel, Float.floatToRawIntBits(values[i * channels + channel]), i == 0);
+			}
+		}
+		if (bitCount > 0) {
+			writeBits(0, 8 - bitCount);
+		}
+
+		return Arrays.copyOf(out, position);
+	}
+
+	private void writeValue(int channel, int bits, boolean first) {
+		if (first) {
+			writeBits(bits, 32);
+			previousValue[channel] = bits;
+			previousLeading[channel] = -1;
+			return;
+		}
+
+		int xor = bits ^ previousValue[channel];
+		previousValue[channel] = bits;
+		if (xor == 0) {
+			writeBits(0, 1);
+			return;
+		}
+
+		int leading = Integer.numberOfLeadingZeros(xor);
+		int trailing = Integer.numberOfTrailingZeros(xor);
+		if (previousLeading[channel] >= 0 && leading >= previousLeading[channel] && trailing >= previousTrailing[channel]) {
+			// meaningful bits fit into the window of the previous value
+			writeBits(0b10, 2);
+			writeBits(xor >>> previousTrailing[channel], 32 - previousLeading[channel] - previousTrailing[channel]);
+			return;
+		}
+
+		int meaningful = 32 - leading - trailing;
+		writeBits(0b11, 2);
+		writeBits(leading, 5);
+		writeBits(meaningful - 1, 5);
+		writeBits(xor >>> trailing, meaningful);
+		previousLeading[channel] = leading;
+		previousTrailing[channel] = trailing;
+	}
+
+	private void writeBits(int value, int count) {
+		long mask = count == 32 ? 0xffffffffL : (1L << count) - 1;
+		bitBuffer = (bitBuffer << count) | (value & mask);
+		bitCount += count;
+
+		ensureCapacity(5);
+		while (bitCount >= 8) {
+			bitCount -= 8;
+			out[position++] = (byte) (bitBuffer >>> bitCount);
+		}
+	}
+
+	private void writeVarint(long value) {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			out[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out[position++] = (byte) value;
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private void ensureCapacity(int bytes) {
+		if (position + bytes > out.length) {
+			out = Arrays.copyOf(out, Math.max(out.length * 2, position + bytes));
+		}
+	}
+}
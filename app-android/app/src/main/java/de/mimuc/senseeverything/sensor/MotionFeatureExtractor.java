@@ -0,0 +1,149 @@
+package de.mimuc.senseeverything.sensor;
+
+import de.mimuc.senseeverything.data.SensorReadingStore;
+import de.mimuc.senseeverything.helpers.ReadingFormatter;
+
+/**
+ * Computes features of a three-axis motion signal over sliding windows of {@link #WINDOW_SIZE}
+ * samples that advance by {@link #HOP_SIZE} samples, and stores them as one reading per window
+ * under the sensor name followed by {@link #SENSOR_NAME_SUFFIX}.
+ * <p>
+ * The reading is timestamped with the first sample of the window, its data is
+ * {@code samples,sampleRateHz,meanMagnitude,stdMagnitude,energy,zeroCrossings,dominantFrequencyHz,meanJerk}:
+ * <ul>
+ * <li>magnitude is the euclidean norm of the three axes</li>
+ * <li>energy is the mean squared magnitude</li>
+ * <li>zero crossings are counted on the magnitude after removing its mean</li>
+ * <li>the dominant frequency is the strongest non-constant bin of the Hann windowed magnitude
+ * spectrum, using the sample rate measured over the window</li>
+ * <li>jerk is the norm of the change of the three axes per second</li>
+ * </ul>
+ * Samples are kept in primitive ring buffers and the {@link FFT} workspace is reused, so adding a
+ * sample does not allocate. Only the stored reading does.
+ * <p>
+ * Not thread-safe, samples are expected to arrive on the sensor callback thread.
+ */
+public class MotionFeatureExtractor {
+	public static final String SENSOR_NAME_SUFFIX = " Features";
+	public static final int WINDOW_SIZE = 128;
+	public static final int HOP_SIZE = 64;
+
+	private final String sensorName;
+	private final SensorReadingStore readingStore;
+
+	// ring buffers, the oldest sample is at head once the window is full
+	private final long[] timestamps = new long[WINDOW_SIZE];
+	private final float[] x = new float[WINDOW_SIZE];
+	private final float[] y = new float[WINDOW_SIZE];
+	private final float[] z = new float[WINDOW_SIZE];
+	private int head = 0;
+	private int count = 0;
+	private int sinceLastWindow = 0;
+
+	private final FFT fft = new FFT(WINDOW_SIZE);
+	private final double[] hann = new double[WINDOW_SIZE];
+
+	public MotionFeatureExtractor(String sensorName, SensorReadingStore readingStore) {
+		this.sensorName = sensorName + SENSOR_NAME_SUFFIX;
+		this.readingStore = readingStore;
+		for (int i = 0; i < WINDOW_SIZE; i++) {
+			hann[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (WINDOW_SIZE - 1));
+		}
+	}
+
+	public void add(long timestamp, float[] values) {
+		timestamps[head] = timestamp;
+		x[head] = values[0];
+		y[head] = values[1];
+		z[head] = values[2];
+		head = (head + 1) % WINDOW_SIZE;
+		if (count < WINDOW_SIZE) {
+			count++;
+		}
+		sinceLastWindow++;
+
+		if (count == WINDOW_SIZE && sinceLastWindow >= HOP_SIZE) {
+			storeFeatures();
+			sinceLastWindow = 0;
+		}
+	}
+
+	/**
+	 * Drops the buffered samples, e.g. when the sensor restarts after a gap.
+	 */
+	public void reset() {
+		head = 0;
+		count = 0;
+		sinceLastWindow = 0;
+	}
+
+	private void storeFeatures() {
+		double[] magnitude = fft.re;
+
+		double sum = 0;
+		double squaredSum = 0;
+		double jerkSum = 0;
+		for (int i = 0; i < WINDOW_SIZE; i++) {
+			int index = (head + i) % WINDOW_SIZE;
+			double m = Math.sqrt(x[index] * x[index] + y[index] * y[index] + z[index] * z[index]);
+			magnitude[i] = m;
+			sum += m;
+			squaredSum += m * m;
+
+			if (i > 0) {
+				int previous = (index + WINDOW_SIZE - 1) % WINDOW_SIZE;
+				long dt = timestamps[index] - timestamps[previous];
+				if (dt > 0) {
+					double dx = x[index] - x[previous];
+					double dy = y[index] - y[previous];
+					double dz = z[index] - z[previous];
+					jerkSum += Math.sqrt(dx * dx + dy * dy + dz * dz) * 1000.0 / dt;
+				}
+			}
+		}
+
+		double mean = sum / WINDOW_SIZE;
+		double energy = squaredSum / WINDOW_SIZE;
+		double std = Math.sqrt(Math.max(0, energy - mean * mean));
+
+		int zeroCrossings = 0;
+		boolean previousPositive = magnitude[0] >= mean;
+		for (int i = 0; i < WINDOW_SIZE; i++) {
+			boolean positive = magnitude[i] >= mean;
+			if (positive != previousPositive) {
+				zeroCrossings++;
+			}
+			previousPositive = positive;
+
+			magnitude[i] = (magnitude[i] - mean) * hann[i];
+			fft.im[i] = 0;
+		}
+
+		fft.transform();
+		int dominantBin = 1;
+		double dominantPower = -1;
+		for (int bin = 1; bin <= WINDOW_SIZE / 2; bin++) {
+			double power = fft.re[bin] * fft.re[bin] + fft.im[bin] * fft.im[bin];
+			if (power > dominantPower) {
+				dominantPower = power;
+				dominantBin = bin;
+			}
+		}
+
+		long first = timestamps[head];
+		long last = timestamps[(head + WINDOW_SIZE - 1) % WINDOW_SIZE];
+		double sampleRate = last > first ? (WINDOW_SIZE - 1) * 1000.0 / (last - first) : 0;
+
+		String data = ReadingFormatter.get()
+				.append(WINDOW_SIZE).append(',')
+				.append(sampleRate).append(',')
+				.append(mean).append(',')
+				.append(std).append(',')
+				.append(energy).append(',')
+				.append(zeroCrossings).append(',')
+				.append(dominantBin * sampleRate / WINDOW_SIZE).append(',')
+				.append(jerkSum / (WINDOW_SIZE - 1))
+				.toString();
+		readingStore.append(first, sensorName, data, false, null);
+	}
+}
@@ -0,0 +1,59 @@
+package de.mimuc.senseeverything.sensor;
+
+import de.mimuc.senseeverything.data.SensorReadingStore;
+import de.mimuc.senseeverything.db.MotionChunk;
+
+/**
+ * Collects samples of a numeric sensor in primitive form and hands them to the reading store as
+ * compressed {@link MotionChunk}s once {@link #CHUNK_SIZE} samples are buffered.
+ * <p>
+ * Not thread-safe, samples are expected to arrive on the sensor callback thread.
+ */
+public class MotionSampleBuffer {
+	public static final int CHUNK_SIZE = 512;
+
+	private final String sensorName;
+	private final int channels;
+	private final SensorReadingStore readingStore;
+	private final MotionChunkEncoder encoder;
+
+	private final long[] timestamps = new long[CHUNK_SIZE];
+	private final float[] values;
+	private final byte[] accuracies = new byte[CHUNK_SIZE];
+	private int sampleCount = 0;
+
+	public MotionSampleBuffer(String sensorName, int channels, SensorReadingStore readingStore) {
+		this.sensorName = sensorName;
+		this.channels = channels;
+		this.readingStore = readingStore;
+		this.encoder = new MotionChunkEncoder(channels);
+		this.values = new float[CHUNK_SIZE * channels];
+	}
+
+	public void add(long timestamp, float[] sample, int accuracy) {
+		timestamps[sampleCount] = timestamp;
+		for (int i = 0; i < channels; i++) {
+			values[sampleCount * channels + i] = i < sample.length ? sample[i] : 0f;
+		}
+		accuracies[sampleCount] = (byte) accuracy;
+		sampleCount++;
+
+		if (sampleCount == CHUNK_SIZE) {
+			flush();
+		}
+	}
+
+	/**
+	 * Hands the buffered samples to the reading store, e.g. when the sensor stops.
+	 */
+	public void flush() {
+		if (sampleCount == 0) {
+			return;
+		}
+
+		byte[] samples = encoder.encode(timestamps, values, accuracies, sampleCount);
+		readingStore.appendMotionChunk(new MotionChunk(sensorName, timestamps[0], timestamps[sampleCount - 1], sampleCount, channels, MotionChunk.ENCODING_GORILLA_V1, samples));
+
+		sampleCount = 0;
+	}
+}
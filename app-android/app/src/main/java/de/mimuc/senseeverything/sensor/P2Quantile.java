@@ -0,0 +1,110 @@
+package de.mimuc.senseeverything.sensor;
+
+import java.util.Arrays;
+
+/**
+ * Streaming estimate of a single quantile with the P-square algorithm (Jain and Chlamtac, 1985).
+ * <p>
+ * Only five markers are kept, whose heights are adjusted with a piecewise parabolic fit as
+ * observations arrive, so memory and time per observation are constant. Until five observations
+ * are seen, the quantile is computed exactly.
+ */
+class P2Quantile {
+	private static final int MARKERS = 5;
+
+	private final double quantile;
+	private final double[] increments;
+
+	private final double[] heights = new double[MARKERS];
+	private final int[] positions = new int[MARKERS];
+	private final double[] desiredPositions = new double[MARKERS];
+	private final double[] sorted = new double[MARKERS];
+	private int count;
+
+	P2Quantile(double quantile) {
+		this.quantile = quantile;
+		this.increments = new double[]{0, quantile / 2, quantile, (1 + quantile) / 2, 1};
+	}
+
+	void add(double value) {
+		if (count < MARKERS) {
+			heights[count++] = value;
+			if (count == MARKERS) {
+				Arrays.sort(heights);
+				for (int i = 0; i < MARKERS; i++) {
+					positions[i] = i;
+				}
+				desiredPositions[0] = 0;
+				desiredPositions[1] = 2 * quantile;
+				desiredPositions[2] = 4 * quantile;
+				desiredPositions[3] = 2 + 2 * quantile;
+				desiredPositions[4] = 4;
+			}
+			return;
+		}
+
+		int cell;
+		if (value < heights[0]) {
+			heights[0] = value;
+			cell = 0;
+		} else if (value >= heights[MARKERS - 1]) {
+			heights[MARKERS - 1] = value;
+			cell = MARKERS - 2;
+		} else {
+			cell = 0;
+			while (value >= heights[cell + 1]) {
+				cell++;
+			}
+		}
+
+		for (int i = cell + 1; i < MARKERS; i++) {
+			positions[i]++;
+		}
+		for (int i = 0; i < MARKERS; i++) {
+			desiredPositions[i] += increments[i];
+		}
+		count++;
+
+		for (int i = 1; i < MARKERS - 1; i++) {
+			double offset = desiredPositions[i] - positions[i];
+			if ((offset >= 1 && positions[i + 1] - positions[i] > 1) || (offset <= -1 && positions[i - 1] - positions[i] < -1)) {
+				int step = offset >= 0 ? 1 : -1;
+				double height = parabolic(i, step);
+				if (heights[i - 1] < height && height < heights[i + 1]) {
+					heights[i] = height;
+				} else {
+					heights[i] = heights[i] + step * (heights[i + step] - heights[i]) / (positions[i + step] - positions[i]);
+				}
+				positions[i] += step;
+			}
+		}
+	}
+
+	/**
+	 * @return the estimated quantile or {@code NaN} if nothing was added
+	 */
+	double value() {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		if (count >= MARKERS) {
+			return heights[2];
+		}
+
+		System.arraycopy(heights, 0, sorted, 0, count);
+		Arrays.sort(sorted, 0, count);
+		return sorted[(int) Math.round(quantile * (count - 1))];
+	}
+
+	void reset() {
+		count = 0;
+	}
+
+	private double parabolic(int i, int step) {
+		double below = positions[i] - positions[i - 1];
+		double above = positions[i + 1] - positions[i];
+		return heights[i] + step / (double) (positions[i + 1] - positions[i - 1])
+				* ((below + step) * (heights[i + 1] - heights[i]) / above
+				+ (above - step) * (heights[i] - heights[i - 1]) / below);
+	}
+}
@@ -0,0 +1,126 @@
+package de.mimuc.senseeverything.sensor;
+
+import de.mimuc.senseeverything.data.SensorReadingStore;
+import de.mimuc.senseeverything.helpers.ReadingFormatter;
+
+/**
+ * Summarizes the samples of a numeric sensor over fixed windows and stores one reading per window
+ * instead of every sample.
+ * <p>
+ * Windows are aligned to multiples of the window length in wall clock time. A window is stored as
+ * soon as a sample of a later window arrives or {@link #flush()} is called, under the sensor name
+ * followed by {@link #SENSOR_NAME_SUFFIX} and with the start of the window as timestamp. Its data is
+ * {@code windowMs,count} followed by {@code mean,variance,min,max,p50,p90} for every channel.
+ * <p>
+ * Statistics are updated incrementally (Welford's algorithm for mean and variance, {@link P2Quantile}
+ * for the percentiles), so memory does not depend on the sampling rate.
+ * <p>
+ * Not thread-safe, samples are expected to arrive on the sensor callback thread.
+ */
+public class WindowedAggregator {
+	public static final String SENSOR_NAME_SUFFIX = " Aggregate";
+
+	private final String sensorName;
+	private final long windowMs;
+	private final SensorReadingStore readingStore;
+	private final ChannelStatistics[] channels;
+
+	private long windowStart = Long.MIN_VALUE;
+	private int count = 0;
+
+	public WindowedAggregator(String sensorName, int channels, long windowMs, SensorReadingStore readingStore) {
+		this.sensorName = sensorName + SENSOR_NAME_SUFFIX;
+		this.windowMs = windowMs;
+		this.readingStore = readingStore;
+		this.channels = new ChannelStatistics[channels];
+		for (int i = 0; i < channels; i++) {
+			this.channels[i] = new ChannelStatistics();
+		}
+	}
+
+	public void add(long timestamp, float[] sample) {
+		startWindowFor(timestamp);
+		for (int i = 0; i < channels.length; i++) {
+			channels[i].add(i < sample.length ? sample[i] : 0f);
+		}
+		count++;
+	}
+
+	public void add(long timestamp, double value) {
+		startWindowFor(timestamp);
+		channels[0].add(value);
+		count++;
+	}
+
+	/**
+	 * Stores the current window even though it is not complete yet, e.g. when the sensor stops.
+	 */
+	public void flush() {
+		if (count == 0) {
+			return;
+		}
+
+		ReadingFormatter formatter = ReadingFormatter.get().append(windowMs).append(',').append(count);
+		for (ChannelStatistics channel : channels) {
+			channel.appendTo(formatter);
+			channel.reset();
+		}
+		readingStore.append(windowStart, sensorName, formatter.toString(), false, null);
+
+		count = 0;
+	}
+
+	private void startWindowFor(long timestamp) {
+		if (count > 0 && timestamp >= windowStart && timestamp < windowStart + windowMs) {
+			return;
+		}
+
+		flush();
+		windowStart = timestamp - Math.floorMod(timestamp, windowMs);
+	}
+
+	private static class ChannelStatistics {
+		private int count;
+		private double mean;
+		private double squaredDistance;
+		private double min;
+		private double max;
+		private final P2Quantile median = new P2Quantile(0.5);
+		private final P2Quantile p90 = new P2Quantile(0.9);
+
+		ChannelStatistics() {
+			reset();
+		}
+
+		void add(double value) {
+			count++;
+			double delta = value - mean;
+			mean += delta / count;
+			squaredDistance += delta * (value - mean);
+
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			median.add(value);
+			p90.add(value);
+		}
+
+		void appendTo(ReadingFormatter formatter) {
+			formatter.append(',').append(mean)
+					.append(',').append(squaredDistance / count)
+					.append(',').append(min)
+					.append(',').append(max)
+					.append(',').append(median.value())
+					.append(',').append(p90.value());
+		}
+
+		void reset() {
+			count = 0;
+			mean = 0;
+			squaredDistance = 0;
+			min = Double.POSITIVE_INFINITY;
+			max = Double.NEGATIVE_INFINITY;
+			median.reset();
+			p90.reset();
+		}
+	}
+}
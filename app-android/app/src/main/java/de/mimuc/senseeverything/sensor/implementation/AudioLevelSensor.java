@@ -97,13 +97,13 @@ public class AudioLevelSensor extends AbstractSensor {
 	}
 	
 	private void getNoiseLevel() {
-		Long t = System.currentTimeMillis();
+		long t = System.currentTimeMillis();
 		if (mediaRecorder == null)
 			return;
 		
 		try {
 			int amplitude = mediaRecorder.getMaxAmplitude();
-			onLogDataItem(t,String.valueOf(amplitude));
+			onLogValue(t, amplitude);
 		} catch (Exception e) {
 			Log.d(TAG, e.toString());
 		}
@@ -113,6 +113,7 @@ public class AudioLevelSensor extends AbstractSensor {
 	public void stop() {
 		if(m_IsRunning) {
 			m_IsRunning = false;
+			flushSamples();
 			closeDataSource();
 		}	
 	}	
@@ -1,8 +1,11 @@
 package de.mimuc.senseeverything.sensor.implementation;
 
 import static de.mimuc.senseeverything.workers.ConversationDetectionWorkerKt.enqueueConversationDetectionWorker;
+import static de.mimuc.senseeverything.workers.conversation.SpeechGateKt.createSpeechGate;
 
+import android.app.Activity;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.media.AudioFormat;
 import android.media.AudioRecord;
 import android.media.MediaRecorder;
@@ -11,6 +14,7 @@ import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -18,16 +22,49 @@ import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+import de.mimuc.senseeverything.activity.CONST;
+import de.mimuc.senseeverything.data.SensorReadingStore;
 import de.mimuc.senseeverything.db.AppDatabase;
 import de.mimuc.senseeverything.sensor.AbstractSensor;
-
+import de.mimuc.senseeverything.workers.conversation.ConversationDetectionResult;
+import de.mimuc.senseeverything.workers.conversation.LosslessAudioOutputStream;
+import de.mimuc.senseeverything.workers.conversation.SpeechGate;
+import de.mimuc.senseeverything.workers.conversation.SpeechGatedWriter;
+import de.mimuc.senseeverything.workers.conversation.StreamingConversationDetector;
+
+/**
+ * Records audio and detects conversations in it. By default the audio is recorded to a WAV file
+ * that is analyzed afterwards by the {@code ConversationDetectionWorker}. With
+ * {@link CONST#KEY_CONVERSATION_STREAMING_DETECTION} enabled, the detectors run on the audio while
+ * it is recorded and their results are logged when recording stops, nothing is written to disk.
+ * <p>
+ * Recordings can be gated with {@link CONST#KEY_CONVERSATION_SPEECH_GATE}, then only the audio
+ * around speech is written, see {@link SpeechGatedWriter}. The bytes captured and written are logged
+ * per recording as {@value #GATE_SENSOR_NAME}.
+ * <p>
+ * With {@link CONST#KEY_CONVERSATION_AUDIO_ENCODING} set to {@link #AUDIO_ENCODING_LOSSLESS},
+ * recordings are compressed while they are written, see {@link LosslessAudioOutputStream}.
+ * <p>
+ * These settings are saved from the conversation recording of the study at enrolment.
+ */
 public class ConversationSensor extends AbstractSensor {
     private static final long serialVersionUID = 1L;
+    private static final String GATE_SENSOR_NAME = "Conversation Gate";
+
+    public static final String AUDIO_ENCODING_WAV = "wav";
+    public static final String AUDIO_ENCODING_LOSSLESS = "lossless";
     private final Context context;
     private final String guid = UUID.randomUUID().toString();
     private String currentRecordingFilename;
+    private boolean streamingDetection;
+    private String speechGate;
+    private boolean losslessAudio;
 
     private AsyncTask<File, Void, Object[]> runningTask;
 
@@ -66,28 +103,40 @@ public class ConversationSensor extends AbstractSensor {
 
         Log.d(TAG, "conversationSensor: start called, guid" + guid);
 
+        SharedPreferences sp = context.getSharedPreferences(CONST.SP_LOG_EVERYTHING, Activity.MODE_PRIVATE);
+        streamingDetection = sp.getBoolean(CONST.KEY_CONVERSATION_STREAMING_DETECTION, false);
+        speechGate = sp.getString(CONST.KEY_CONVERSATION_SPEECH_GATE, null);
+        losslessAudio = AUDIO_ENCODING_LOSSLESS.equals(sp.getString(CONST.KEY_CONVERSATION_AUDIO_ENCODING, AUDIO_ENCODING_WAV));
+
         startRecording(context);
         m_IsRunning = true;
     }
 
     private String getFilenameForSampleStorage() {
         String path = context.getFilesDir().getAbsolutePath();
-        String recordingName = "se-" + SENSOR_NAME + "-" + System.currentTimeMillis() / 1000 + ".wav";
+        String extension = losslessAudio ? LosslessAudioOutputStream.EXTENSION : ".wav";
+        String recordingName = "se-" + SENSOR_NAME + "-" + System.currentTimeMillis() / 1000 + extension;
 
         return path + "/" + recordingName;
     }
 
     private void stopRecording() {
+        // the task logs the detection results or enqueues the detection worker once it finished,
+        // a recording is only analyzed after its file has been closed
         runningTask.cancel(true);
-        Log.d(TAG, "Enqueueing speech detection worker");
-        enqueueConversationDetectionWorker(this.context, currentRecordingFilename, System.currentTimeMillis() / 1000);
     }
 
     private void startRecording(Context context) {
+        if (streamingDetection) {
+            Log.i(TAG, "detecting conversation while recording");
+            runningTask = new RecordWaveTask(context, getReadingStore(), null, false).execute();
+            return;
+        }
+
         String filename = getFilenameForSampleStorage();
         Log.i(TAG, "saving recording at location " + filename);
         currentRecordingFilename = filename;
-        runningTask = new RecordWaveTask(context).execute(new File(currentRecordingFilename));
+        runningTask = new RecordWaveTask(context, getReadingStore(), createSpeechGate(speechGate), losslessAudio).execute(new File(currentRecordingFilename));
     }
 
     @Override
@@ -114,11 +163,22 @@ public class ConversationSensor extends AbstractSensor {
         //
 
         private static final int BUFFER_SIZE = 2 * AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_MASK, ENCODING);
+        // the recorder keeps up to a second of audio while the loop is not reading
+        private static final int RECORD_BUFFER_SIZE = Math.max(BUFFER_SIZE, SAMPLE_RATE * 2);
+        private static final int GATED_WRITE_BUFFER_SIZE = 64 * 1024;
+        private static final long MAX_WAV_DATA_SIZE = 4294967295L;
 
         private Context ctx;
+        private final SensorReadingStore store;
+        private final SpeechGate gate;
+        private final boolean lossless;
+        private File recording;
 
-        private RecordWaveTask(Context ctx) {
+        private RecordWaveTask(Context ctx, SensorReadingStore store, SpeechGate gate, boolean lossless) {
             setContext(ctx);
+            this.store = store;
+            this.gate = gate;
+            this.lossless = lossless;
         }
 
         private void setContext(Context ctx) {
@@ -129,41 +189,86 @@ public class ConversationSensor extends AbstractSensor {
          * Opens up the given file, writes the header, and keeps filling it with raw PCM bytes from
          * AudioRecord until it reaches 4GB or is stopped by the user. It then goes back and updates
          * the WAV header to include the proper final chunk sizes.
+         * <p>
+         * Without a file, the PCM bytes are passed to a {@link StreamingConversationDetector}
+         * instead, and its results are logged when stopped. With a {@link SpeechGate}, only the
+         * audio around speech is written to the file. Lossless files are compressed instead of
+         * having a WAV header.
          *
-         * @param files Index 0 should be the file to write to
-         * @return Either an Exception (error) or two longs, the filesize, elapsed time in ms (success)
+         * @param files Index 0 should be the file to write to, none to detect while recording
+         * @return Either an Exception (error) or two longs, the filesize or number of bytes
+         * analyzed, elapsed time in ms (success)
          */
         @Override
         protected Object[] doInBackground(File... files) {
+            File wav = files.length > 0 ? files[0] : null;
+            recording = wav;
             AudioRecord audioRecord = null;
-            FileOutputStream wavOut = null;
+            OutputStream wavOut = null;
+            SpeechGatedWriter gatedWriter = null;
+            DetectorThread detector = null;
             long startTime = 0;
             long endTime = 0;
+            long total = 0;
 
             try {
-                // Open our two resources
-                audioRecord = new AudioRecord(AUDIO_SOURCE, SAMPLE_RATE, CHANNEL_MASK, ENCODING, BUFFER_SIZE);
-                wavOut = new FileOutputStream(files[0]);
+                if (wav != null) {
+                    wavOut = new FileOutputStream(wav);
 
-                // Write out the wav file header
-                writeWavHeader(wavOut, CHANNEL_MASK, SAMPLE_RATE, ENCODING);
+                    if (lossless) {
+                        wavOut = new LosslessAudioOutputStream(wavOut, SAMPLE_RATE);
+                    } else {
+                        // Write out the wav file header
+                        writeWavHeader(wavOut, CHANNEL_MASK, SAMPLE_RATE, ENCODING);
+                    }
+
+                    if (gate != null) {
+                        // the gated writer writes single frames
+                        wavOut = new BufferedOutputStream(wavOut, GATED_WRITE_BUFFER_SIZE);
+                        gatedWriter = new SpeechGatedWriter(wavOut, gate);
+                    }
+                } else {
+                    // created before recording starts, loading the models takes a moment
+                    detector = new DetectorThread(new StreamingConversationDetector(ctx));
+                    detector.start();
+                }
+
+                audioRecord = new AudioRecord(AUDIO_SOURCE, SAMPLE_RATE, CHANNEL_MASK, ENCODING, RECORD_BUFFER_SIZE);
 
                 // Avoiding loop allocations
                 byte[] buffer = new byte[BUFFER_SIZE];
                 boolean run = true;
                 int read;
-                long total = 0;
 
                 // Let's go
                 startTime = SystemClock.elapsedRealtime();
                 audioRecord.startRecording();
                 while (run && !isCancelled()) {
                     read = audioRecord.read(buffer, 0, buffer.length);
+                    if (read < 0) {
+                        Log.e(RecordWaveTask.class.getSimpleName(), "reading audio failed with " + read);
+                        break;
+                    }
+
+                    if (detector != null) {
+                        detector.offer(buffer, read);
+                        total += read;
+                        continue;
+                    }
+
+                    if (gatedWriter != null) {
+                        if (gatedWriter.getWrittenBytes() + gatedWriter.maxWrite(read) > MAX_WAV_DATA_SIZE) {
+                            run = false;
+                        } else {
+                            gatedWriter.write(buffer, 0, read);
+                        }
+                        continue;
+                    }
 
                     // WAVs cannot be > 4 GB due to the use of 32 bit unsigned integers.
-                    if (total + read > 4294967295L) {
+                    if (total + read > MAX_WAV_DATA_SIZE) {
                         // Write as many bytes as we can before hitting the max size
-                        for (int i = 0; i < read && total <= 4294967295L; i++, total++) {
+                        for (int i = 0; i < read && total <= MAX_WAV_DATA_SIZE; i++, total++) {
                             wavOut.write(buffer[i]);
                         }
                         run = false;
@@ -173,7 +278,16 @@ public class ConversationSensor extends AbstractSensor {
                         total += read;
                     }
                 }
-            } catch (IOException ex) {
+
+                if (wavOut != null) {
+                    // closed here, so the last block of a lossless file is not lost silently
+                    wavOut.close();
+                    wavOut = null;
+                }
+            } catch (Exception ex) {
+                if (detector != null) {
+                    detector.cancel();
+                }
                 return new Object[]{ex};
             } finally {
                 if (audioRecord != null) {
@@ -196,17 +310,58 @@ public class ConversationSensor extends AbstractSensor {
                         //
                     }
                 }
+                if (gate != null) {
+                    gate.close();
+                }
             }
 
-            try {
-                // This is not put in the try/catch/finally above since it needs to run
-                // after we close the FileOutputStream
-                updateWavHeader(files[0]);
-            } catch (IOException ex) {
-                return new Object[]{ex};
+            if (detector != null) {
+                logDetectionResults(detector);
+                return new Object[]{total, endTime - startTime};
+            }
+
+            if (!lossless) {
+                try {
+                    // This is not put in the try/catch/finally above since it needs to run
+                    // after we close the FileOutputStream
+                    updateWavHeader(wav);
+                } catch (IOException ex) {
+                    return new Object[]{ex};
+                }
+            }
+
+            if (gatedWriter != null) {
+                logGateMetrics(gatedWriter);
             }
 
-            return new Object[]{files[0].length(), endTime - startTime};
+            return new Object[]{wav.length(), endTime - startTime};
+        }
+
+        private void logGateMetrics(SpeechGatedWriter gatedWriter) {
+            long captured = gatedWriter.getCapturedBytes();
+            long written = gatedWriter.getWrittenBytes();
+            Log.i(RecordWaveTask.class.getSimpleName(), "speech gate wrote " + written + " of " + captured + " bytes captured");
+
+            // same timestamp as the results of the ConversationDetectionWorker
+            store.append(System.currentTimeMillis() / 1000, GATE_SENSOR_NAME, "captured:" + captured + ";written:" + written, false, null);
+        }
+
+        private void logDetectionResults(DetectorThread detector) {
+            // same timestamp as the results of the ConversationDetectionWorker
+            long timestamp = System.currentTimeMillis() / 1000;
+            // recording is stopped by cancelling the task, which interrupts this thread
+            Thread.interrupted();
+            try {
+                for (ConversationDetectionResult result : detector.finish()) {
+                    String summary = result.summary();
+                    Log.d(RecordWaveTask.class.getSimpleName(), "speech detected in " + result.getDetector() + " audio " + summary);
+                    store.append(timestamp, result.getSensorName(), summary, false, null);
+                }
+            } catch (Exception ex) {
+                Log.e(RecordWaveTask.class.getSimpleName(), "detecting conversation failed", ex);
+            } finally {
+                detector.cancel();
+            }
         }
 
         /**
@@ -335,6 +490,83 @@ public class ConversationSensor extends AbstractSensor {
             }
         }
 
+        /**
+         * Runs a {@link StreamingConversationDetector} next to the recording loop, so the loop only
+         * copies frames and the recorder is read in time. Frames arriving while the queue is full
+         * are dropped and counted, the detector then misses that audio.
+         */
+        private static class DetectorThread extends Thread {
+            private static final int QUEUE_FRAMES = 64;
+            private static final byte[] END = new byte[0];
+
+            private final StreamingConversationDetector detector;
+            private final BlockingQueue<byte[]> frames = new ArrayBlockingQueue<>(QUEUE_FRAMES);
+            private long droppedFrames;
+            private long droppedBytes;
+            private volatile Exception failure;
+
+            DetectorThread(StreamingConversationDetector detector) {
+                super("ConversationDetector");
+                this.detector = detector;
+            }
+
+            void offer(byte[] buffer, int length) {
+                if (length == 0) {
+                    return;
+                }
+                if (!frames.offer(Arrays.copyOf(buffer, length))) {
+                    droppedFrames++;
+                    droppedBytes += length;
+                    if (droppedFrames == 1 || droppedFrames % 100 == 0) {
+                        Log.w(RecordWaveTask.class.getSimpleName(), "detection falling behind, dropped " + droppedFrames + " frames");
+                    }
+                }
+            }
+
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        byte[] frame = frames.take();
+                        if (frame == END) {
+                            return;
+                        }
+                        detector.write(frame, 0, frame.length);
+                    }
+                } catch (InterruptedException ex) {
+                    // cancelled, the results are not needed anymore
+                } catch (Exception ex) {
+                    failure = ex;
+                    frames.clear();
+                }
+            }
+
+            /**
+             * Waits for the queued frames to be analyzed and returns the results.
+             */
+            List<ConversationDetectionResult> finish() throws Exception {
+                frames.put(END);
+                join();
+                if (droppedFrames > 0) {
+                    Log.w(RecordWaveTask.class.getSimpleName(), "detection dropped " + droppedFrames + " frames, " + droppedBytes + " bytes");
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                return detector.finish();
+            }
+
+            void cancel() {
+                interrupt();
+                try {
+                    join();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                detector.close();
+            }
+        }
+
         @Override
         protected void onCancelled(Object[] results) {
             // Handling cancellations and successful runs in the same way
@@ -349,6 +581,12 @@ public class ConversationSensor extends AbstractSensor {
                 throwable = (Throwable) results[0];
                 Log.e(RecordWaveTask.class.getSimpleName(), throwable.getMessage(), throwable);
             }
+
+            // the file is closed by now, even after an error what was recorded can be analyzed
+            if (recording != null && recording.exists()) {
+                Log.d(RecordWaveTask.class.getSimpleName(), "Enqueueing speech detection worker");
+                enqueueConversationDetectionWorker(ctx, recording.getAbsolutePath(), System.currentTimeMillis() / 1000);
+            }
         }
     }
 }
\ No newline at end of file
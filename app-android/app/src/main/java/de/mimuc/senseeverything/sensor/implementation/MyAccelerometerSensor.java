@@ -2,10 +2,6 @@ package de.mimuc.senseeverything.sensor.implementation;
 
 import android.content.Context;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
-import android.util.Log;
 import android.util.TypedValue;
 import android.view.View;
 import android.widget.LinearLayout;
@@ -13,16 +9,12 @@ import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 
-import de.mimuc.senseeverything.activity.CONST;
 import de.mimuc.senseeverything.db.AppDatabase;
-import de.mimuc.senseeverything.sensor.AbstractSensor;
+import de.mimuc.senseeverything.sensor.AbstractHardwareSensor;
 
-public class MyAccelerometerSensor extends AbstractSensor implements SensorEventListener {
+public class MyAccelerometerSensor extends AbstractHardwareSensor {
 
 	private static final long serialVersionUID = 1L;
-	
-	private SensorManager sensorManager;
-	private long count;
 
 	public MyAccelerometerSensor(Context applicationContext, AppDatabase database) {
 		super(applicationContext, database);
@@ -55,61 +47,19 @@ public class MyAccelerometerSensor extends AbstractSensor implements SensorEvent
 		return linearLayout;
 	}
 
-	public boolean isAvailable(Context context) {
-		SensorManager sensorManager = (SensorManager) context
-				.getSystemService(Context.SENSOR_SERVICE);
-		return !(sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER) == null);
-	}
-
-	@Override
-	public boolean availableForPeriodicSampling() {
-		return true;
-	}
-
 	@Override
-	public void start(Context context) {
-		super.start(context);
-		if (!m_isSensorAvailable)
-			return;
-
-		sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
-		sensorManager.registerListener(this,
-                sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-				SensorManager.SENSOR_DELAY_NORMAL);
-		m_IsRunning = true;
-		count = 0;
-	}
-
-	@Override
-	public void stop() {
-		if (m_IsRunning) {
-			sensorManager.unregisterListener(this);
-			try {
-				closeDataSource();
-			} catch (Exception e) {
-				Log.e(TAG, e.toString());
-			}
-			m_IsRunning = false;
-		}
+	protected int getSensorType() {
+		return Sensor.TYPE_ACCELEROMETER;
 	}
 
 	@Override
-	public void onAccuracyChanged(Sensor sensor, int accuracy) {
+	protected boolean extractsMotionFeatures() {
+		return true;
 	}
 
 	@Override
-	public void onSensorChanged(SensorEvent event) {
-		Log.d(TAG,  event.values + ",");
-        Long t = System.currentTimeMillis();
-		if (m_IsRunning) {
-			if (event.accuracy == SensorManager.SENSOR_STATUS_UNRELIABLE) {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + "," + CONST.numberFormat.format(event.values[1]) + ","
-						+ CONST.numberFormat.format(event.values[2]) + ",false");
-			} else {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + "," + CONST.numberFormat.format(event.values[1]) + ","
-						+ CONST.numberFormat.format(event.values[2]) + ",true");
-			}
-		}
+	public boolean availableForPeriodicSampling() {
+		return true;
 	}
 
 }
\ No newline at end of file
@@ -2,9 +2,6 @@ package de.mimuc.senseeverything.sensor.implementation;
 
 import android.content.Context;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
 import android.util.TypedValue;
 import android.view.View;
 import android.widget.LinearLayout;
@@ -12,16 +9,12 @@ import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 
-import de.mimuc.senseeverything.activity.CONST;
 import de.mimuc.senseeverything.db.AppDatabase;
-import de.mimuc.senseeverything.sensor.AbstractSensor;
+import de.mimuc.senseeverything.sensor.AbstractHardwareSensor;
 
-public class MyGyroscopeSensor extends AbstractSensor implements SensorEventListener {
+public class MyGyroscopeSensor extends AbstractHardwareSensor {
 	
 	private static final long serialVersionUID = 1L;
-	
-	private SensorManager sensorManager;
-	private long count;
 
 	public MyGyroscopeSensor(Context applicationContext, AppDatabase database) {
 		super(applicationContext, database);
@@ -56,55 +49,19 @@ public class MyGyroscopeSensor extends AbstractSensor implements SensorEventList
 		return linearLayout;
 	}
 	
-	public boolean isAvailable(Context context) {
-		SensorManager sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
-		return !(sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE) == null);
-	}
-
 	@Override
-	public boolean availableForPeriodicSampling() {
-		return true;
+	protected int getSensorType() {
+		return Sensor.TYPE_GYROSCOPE;
 	}
 
 	@Override
-	public void start(Context context) {
-		super.start(context);
-		if (!m_isSensorAvailable)
-			return;
-
-		sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
-		sensorManager.registerListener(this, sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE), SensorManager.SENSOR_DELAY_NORMAL);
-		m_IsRunning = true;
-	}
-	
-	@Override
-	public void stop() {
-		if(m_IsRunning) {
-			m_IsRunning = false;
-			sensorManager.unregisterListener(this);
-			closeDataSource();
-		}	
+	protected boolean extractsMotionFeatures() {
+		return true;
 	}
 
 	@Override
-	public void onAccuracyChanged(Sensor sensor, int accuracy) {
+	public boolean availableForPeriodicSampling() {
+		return true;
 	}
 
-	@Override
-	public void onSensorChanged(SensorEvent event) {
-		Long t = System.currentTimeMillis();
-		if(m_IsRunning) {
-			count++;
-			if(event.accuracy == SensorManager.SENSOR_STATUS_UNRELIABLE) {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + "," +
-						CONST.numberFormat.format(event.values[1]) + "," +
-						CONST.numberFormat.format(event.values[2]) + ",false");
-			} else {
-				onLogDataItem(t, CONST.numberFormat.format(event.values[0]) + "," +
-						CONST.numberFormat.format(event.values[1]) + "," +
-						CONST.numberFormat.format(event.values[2]) + ",true");
-			}
-		}
-	}
-	
 }
\ No newline at end of file
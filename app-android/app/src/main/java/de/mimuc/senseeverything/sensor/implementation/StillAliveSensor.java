@@ -2,6 +2,7 @@ package de.mimuc.senseeverything.sensor.implementation;
 
 import java.io.IOException;
 
+import de.mimuc.senseeverything.api.ApiClient;
 import de.mimuc.senseeverything.db.AppDatabase;
 import de.mimuc.senseeverything.sensor.AbstractSensor;
 
@@ -16,7 +17,6 @@ import android.widget.TextView;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
@@ -28,8 +28,6 @@ public class StillAliveSensor extends AbstractSensor {
 		
 	private long count = -1;
 
-    private final OkHttpClient client = new OkHttpClient();
-
 	public StillAliveSensor(Context applicationContext, AppDatabase database) {
 		super(applicationContext, database);
 		TAG = getClass().getName();
@@ -103,7 +101,7 @@ public class StillAliveSensor extends AbstractSensor {
                 .url("http://projects.hcilab.org/tapsnap/logeverything/php/stillalive.php?id=" + deviceId)
                 .post(body).build();
 
-        client.newCall(request).enqueue(new Callback() {
+        ApiClient.getInstance(context).getHttpClient().newCall(request).enqueue(new Callback() {
 			@Override
 			public void onFailure(Call call, IOException e) {
 				// TODO
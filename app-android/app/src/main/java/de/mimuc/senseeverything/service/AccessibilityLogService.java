@@ -2,7 +2,7 @@ package de.mimuc.senseeverything.service;
 
 
 import de.mimuc.senseeverything.R;
-import de.mimuc.senseeverything.activity.CONST;
+import de.mimuc.senseeverything.helpers.ReadingFormatter;
 
 import android.accessibilityservice.AccessibilityService;
 import android.accessibilityservice.AccessibilityServiceInfo;
@@ -99,10 +99,14 @@ public class AccessibilityLogService extends AccessibilityService {
     	if (AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED == event.getEventType())
     		return;
     	
-    	String s = String.format("%s,%s,%s,%s,%s,%s\n",
-    			CONST.dateFormat.format(System.currentTimeMillis()), event.getEventTime(), getEventType(event),
-                event.getClassName(), event.getPackageName(),
-                 getEventText(event));
+    	String s = ReadingFormatter.get()
+    			.appendTimestamp(System.currentTimeMillis()).append(',')
+    			.append(event.getEventTime()).append(',')
+    			.append(getEventType(event)).append(',')
+    			.append(event.getClassName()).append(',')
+    			.append(event.getPackageName()).append(',')
+    			.append(getEventText(event)).append('\n')
+    			.toString();
 		
 		Intent message = new Intent(TAG);
 		message.putExtra(android.content.Intent.EXTRA_TEXT, s);
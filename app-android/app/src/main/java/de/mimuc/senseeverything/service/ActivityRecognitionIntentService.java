@@ -1,6 +1,6 @@
 package de.mimuc.senseeverything.service;
 
-import de.mimuc.senseeverything.activity.CONST;
+import de.mimuc.senseeverything.helpers.ReadingFormatter;
 
 import android.app.IntentService;
 import android.content.Intent;
@@ -22,7 +22,11 @@ public class ActivityRecognitionIntentService extends IntentService {
 			ActivityRecognitionResult result = ActivityRecognitionResult.extractResult(intent);
 			DetectedActivity mostProbableActivity = result.getMostProbableActivity();
 			
-			String s = CONST.dateFormat.format(System.currentTimeMillis()) + "," + getNameFromType(mostProbableActivity.getType()) + "," + mostProbableActivity.getConfidence() + "\n";
+			String s = ReadingFormatter.get()
+					.appendTimestamp(System.currentTimeMillis()).append(',')
+					.append(getNameFromType(mostProbableActivity.getType())).append(',')
+					.append(mostProbableActivity.getConfidence()).append('\n')
+					.toString();
 			
 			Intent message = new Intent(TAG);
 			message.putExtra(android.content.Intent.EXTRA_TEXT, s);
@@ -19,6 +19,7 @@ import javax.inject.Inject;
 import dagger.hilt.android.AndroidEntryPoint;
 import de.mimuc.senseeverything.R;
 import de.mimuc.senseeverything.data.DataStoreManager;
+import de.mimuc.senseeverything.data.SensorReadingStores;
 import de.mimuc.senseeverything.db.AppDatabase;
 import de.mimuc.senseeverything.sensor.AbstractSensor;
 import de.mimuc.senseeverything.sensor.SensorNotRunningException;
@@ -311,6 +312,9 @@ public class LogService extends AbstractService {
             }
         }
 
+        // commit whatever the sensors produced in this sampling window
+        SensorReadingStores.getInstance(this, database).flush();
+
         isSampling = false;
     }
 
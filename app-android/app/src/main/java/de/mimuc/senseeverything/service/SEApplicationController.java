@@ -10,10 +10,6 @@ import androidx.hilt.work.HiltWorkerFactory;
 import androidx.work.Configuration;
 import androidx.work.WorkerFactory;
 
-import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.toolbox.Volley;
-
 import javax.inject.Inject;
 
 import dagger.hilt.android.HiltAndroidApp;
@@ -33,11 +29,6 @@ public class SEApplicationController extends Application implements Configuratio
      */
     protected static SEApplicationController sInstance;
 
-    /**
-     * Global request queue for Volley
-     */
-    private RequestQueue mRequestQueue;
-
     private SamplingManager mSamplingManager;
 
     private EsmHandler mEsmHandler;
@@ -67,29 +58,6 @@ public class SEApplicationController extends Application implements Configuratio
         }
     }
 
-    /**
-     * Method to lazy initialize the request queue, the queue instance will be created when it is accessed for the first time
-     * @return The Volley Request queue, the queue will be created if it is null
-     */
-    public RequestQueue getRequestQueue() {
-        if (mRequestQueue == null) {
-            mRequestQueue = Volley.newRequestQueue(getApplicationContext());
-        }
-        return mRequestQueue;
-    }
-
-    /**
-     * Adds the specified request to the global queue using the Default TAG.
-     *
-     * @param req
-     */
-    public <T> void addToRequestQueue(Request<T> req) {
-        // set the default tag if tag is empty
-        req.setTag(TAG);
-
-        getRequestQueue().add(req);
-    }
-
     public SamplingManager getSamplingManager() {
         if (mSamplingManager == null) {
             mSamplingManager = new SamplingManager(new OnUnlockAndPeriodicSamplingStrategy());
@@ -15,15 +15,10 @@ import de.mimuc.senseeverything.data.DataStoreManager
 import de.mimuc.senseeverything.db.AppDatabase
 import de.mimuc.senseeverything.db.LogData
 import de.mimuc.senseeverything.helpers.backgroundWorkForegroundInfo
-import de.mimuc.senseeverything.workers.conversation.VadReader
-import de.mimuc.senseeverything.workers.conversation.VadReader.Companion.calculateLength
-import de.mimuc.senseeverything.workers.conversation.VadReader.Companion.calculateSpeechPercentage
-import de.mimuc.senseeverything.workers.conversation.WebRTCReader
-import de.mimuc.senseeverything.workers.conversation.YAMNetReader
+import de.mimuc.senseeverything.workers.conversation.ConversationDetectionEngine
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.invoke
 import java.io.File
-import java.util.Locale
 
 @HiltWorker
 class ConversationDetectionWorker @AssistedInject constructor(
@@ -55,33 +50,18 @@ class ConversationDetectionWorker @AssistedInject constructor(
     }
 
     private suspend fun run(filename: String, timestamp: Long) {
-        runDetection(filename, timestamp, WebRTCReader())
-        runDetection(filename, timestamp, YAMNetReader())
-        deleteFile(filename)
-    }
-
-    private suspend fun runDetection(filename: String, timestamp: Long, reader: VadReader) {
-        val segments = reader.detect(filename, applicationContext)
-        val speechPercentage = calculateSpeechPercentage(segments)
-        val lengthInSeconds = calculateLength(segments, 44100, 16)
-
-        val log = String.format(
-            Locale.GERMAN,
-            "%.2f;%2f;labels:[%s]",
-            lengthInSeconds,
-            speechPercentage,
-            segments.map { it.label }.toSet().joinToString(",")
-        )
+        for (result in ConversationDetectionEngine(applicationContext).detect(filename)) {
+            val log = result.summary()
+            Log.d(TAG, "speech detected in ${result.detector} audio $log")
 
-        val name = reader.TAG
-        Log.d(TAG, "speech detected in $name audio $log")
-
-        logSpeechDetectionResult(name, timestamp, log)
+            logSpeechDetectionResult(result.sensorName, timestamp, log)
+        }
+        deleteFile(filename)
     }
 
-    private suspend fun logSpeechDetectionResult(type: String, timestamp: Long, line: String) {
+    private suspend fun logSpeechDetectionResult(sensorName: String, timestamp: Long, line: String) {
         (Dispatchers.IO) {
-            database.logDataDao().insertAll(LogData(timestamp, "Conversation ${type}", line))
+            database.logDataDao().insertAll(LogData(timestamp, sensorName, line))
         }
     }
 
@@ -9,16 +9,13 @@ import androidx.work.OneTimeWorkRequestBuilder
 import androidx.work.WorkManager
 import androidx.work.WorkerParameters
 import androidx.work.workDataOf
-import com.android.volley.NetworkError
-import com.android.volley.TimeoutError
 import de.mimuc.senseeverything.api.ApiClient
+import de.mimuc.senseeverything.api.postJson
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import org.json.JSONArray
 import org.json.JSONObject
-import kotlin.coroutines.resume
-import kotlin.coroutines.resumeWithException
-import kotlin.coroutines.suspendCoroutine
+import java.io.IOException
 
 class QuestionnaireUploadWorker(appContext: Context, workerParams: WorkerParameters):
     CoroutineWorker(appContext, workerParams) {
@@ -37,7 +34,7 @@ class QuestionnaireUploadWorker(appContext: Context, workerParams: WorkerParamet
                 upload(questionnaireAnswers, questionnaireId, studyId, userToken)
                 Result.success()
             } catch (e: Exception) {
-                if (e is NetworkError || e is TimeoutError) {
+                if (e is IOException) {
                     Result.retry()
                 } else {
                     Log.d("QuestionnaireUploadWorker", "Error uploading questionnaire answers: $e, ${e.stackTraceToString()}")
@@ -52,20 +49,11 @@ class QuestionnaireUploadWorker(appContext: Context, workerParams: WorkerParamet
         val json = JSONObject()
         json.put("answers", JSONArray(answers))
         val headers = mapOf("Authorization" to "Bearer $userToken")
-        val response = suspendCoroutine { continuation ->
-            client.post(
-                "https://sisensing.medien.ifi.lmu.de/v1/study/$studyId/questionnaire/$questionnaireId/answer",
-                json,
-                headers,
-                { response ->
-                    // Success
-                    continuation.resume(response)
-                },
-                { error ->
-                    // Error
-                    continuation.resumeWithException(error)
-                })
-        }
+        client.postJson(
+            "https://sisensing.medien.ifi.lmu.de/v1/study/$studyId/questionnaire/$questionnaireId/answer",
+            json,
+            headers
+        )
     }
 }
 
@@ -1,33 +1,66 @@
 package de.mimuc.senseeverything.workers
 
+import android.app.Activity
 import android.app.NotificationManager
 import android.content.Context
+import android.os.SystemClock
+import android.util.Base64
 import android.util.Log
 import androidx.hilt.work.HiltWorker
+import androidx.room.RoomDatabase
+import androidx.work.BackoffPolicy
 import androidx.work.Constraints
 import androidx.work.CoroutineWorker
+import androidx.work.ExistingWorkPolicy
+import androidx.work.ForegroundInfo
 import androidx.work.NetworkType
 import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.OutOfQuotaPolicy
+import androidx.work.WorkInfo
 import androidx.work.PeriodicWorkRequestBuilder
 import androidx.work.WorkManager
+import androidx.work.WorkRequest
 import androidx.work.WorkerParameters
 import androidx.work.workDataOf
-import com.android.volley.NetworkError
-import com.android.volley.TimeoutError
 import dagger.assisted.Assisted
 import dagger.assisted.AssistedInject
+import de.mimuc.senseeverything.activity.CONST
+import de.mimuc.senseeverything.api.AdaptiveBatchSize
 import de.mimuc.senseeverything.api.ApiClient
+import de.mimuc.senseeverything.api.ChunkedFileUpload
+import de.mimuc.senseeverything.api.CountingRequestBody
+import de.mimuc.senseeverything.api.FileUploadException
+import de.mimuc.senseeverything.api.GzipRequestBody
+import de.mimuc.senseeverything.api.ReadingBatchBody
+import de.mimuc.senseeverything.api.StreamingJsonArrayBody
+import de.mimuc.senseeverything.data.SegmentCursor
+import de.mimuc.senseeverything.data.SensorReadingStores
 import de.mimuc.senseeverything.db.AppDatabase
 import de.mimuc.senseeverything.db.LogData
+import de.mimuc.senseeverything.db.LogDataDao
+import de.mimuc.senseeverything.db.LogDataPartitionRegistry
+import de.mimuc.senseeverything.db.MotionChunk
+import de.mimuc.senseeverything.db.MotionChunkDao
+import de.mimuc.senseeverything.db.UploadBatch
+import de.mimuc.senseeverything.db.UploadBatchDao
+import de.mimuc.senseeverything.db.UploadLane
 import de.mimuc.senseeverything.helpers.backgroundWorkForegroundInfo
+import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.withContext
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.RequestBody.Companion.toRequestBody
 import org.json.JSONArray
 import org.json.JSONObject
+import org.json.JSONTokener
+import java.io.File
+import java.io.IOException
+import java.util.UUID
 import java.util.concurrent.TimeUnit
-import kotlin.coroutines.resume
-import kotlin.coroutines.resumeWithException
-import kotlin.coroutines.suspendCoroutine
 
 @HiltWorker
 class SensorReadingsUploadWorker @AssistedInject constructor(
@@ -44,6 +77,8 @@ class SensorReadingsUploadWorker @AssistedInject constructor(
 
     private val notificationId = 1012
 
+    private var budget = UploadBudget(Long.MAX_VALUE)
+
     override suspend fun doWork(): Result {
         val db = database
 
@@ -53,90 +88,759 @@ class SensorReadingsUploadWorker @AssistedInject constructor(
             return Result.failure()
         }
 
-        setForeground(
-            backgroundWorkForegroundInfo(notificationId, applicationContext, notificationManager)
-        )
+        setForeground(getForegroundInfo())
+
+        budget = UploadBudget(inputData.getLong("maxBytes", Long.MAX_VALUE))
+        val lanes = inputData.getIntArray("lanes") ?: UploadLane.ALL
+        // files, motion chunks and segments are bulk data
+        val bulk = UploadLane.BULK in lanes
+
+        // the batch size learned in the previous run is a better start than the default
+        val sp = applicationContext.getSharedPreferences(CONST.SP_LOG_EVERYTHING, Activity.MODE_PRIVATE)
+        val batchSize = AdaptiveBatchSize(sp.getInt(CONST.KEY_UPLOAD_BATCH_SIZE, AdaptiveBatchSize.DEFAULT_SIZE))
 
         return withContext(Dispatchers.IO) {
             try {
-                syncNextNActivities(db, applicationContext, token, 200)
-                Result.success()
+                // the first failure ends the run, so a retry is backed off
+                for (lane in lanes) {
+                    val activityResult = syncActivities(db, db.logDataDao(), db.uploadBatchDao(), lane, applicationContext, token, batchSize)
+                    if (activityResult != Result.success()) {
+                        return@withContext activityResult
+                    }
+                }
+                if (bulk) {
+                    val fileResult = syncFiles(db.logDataDao(), applicationContext, token, 10)
+                    if (fileResult != Result.success()) {
+                        return@withContext fileResult
+                    }
+                    val motionResult = syncNextNMotionChunks(db.motionChunkDao(), applicationContext, token, 10)
+                    if (motionResult != Result.success()) {
+                        return@withContext motionResult
+                    }
+                    val segmentResult = syncSegments(applicationContext, token, 200)
+                    if (segmentResult != Result.success()) {
+                        return@withContext segmentResult
+                    }
+                }
+                syncPartitions(applicationContext, token, lanes, batchSize, 10)
             } catch (e: Exception) {
                 Result.retry()
+            } finally {
+                sp.edit().putInt(CONST.KEY_UPLOAD_BATCH_SIZE, batchSize.get()).apply()
+                Log.i(TAG, "uploaded ${budget.usedBytes / 1024}KB" +
+                        if (budget.exhausted) ", stopped at the limit of ${budget.maxBytes / 1024}KB" else "")
+            }
+        }
+    }
+
+    // needed to run as expedited work before Android 12
+    override suspend fun getForegroundInfo(): ForegroundInfo =
+        backgroundWorkForegroundInfo(notificationId, applicationContext, notificationManager)
+
+    /**
+     * Uploads and removes unsynced readings of [lane], oldest first, see [uploadReadingRanges]. The
+     * rows of a batch are removed in the same transaction as the batch itself.
+     */
+    private suspend fun syncActivities(
+        db: RoomDatabase,
+        dao: LogDataDao,
+        batches: UploadBatchDao,
+        lane: Int,
+        context: Context,
+        token: String,
+        batchSize: AdaptiveBatchSize
+    ): Result {
+        try {
+            uploadReadingRanges(dao, batches, lane, context, token, batchSize, Long.MIN_VALUE, 0) { batch ->
+                var removed = 0
+                db.runInTransaction {
+                    removed = dao.deleteUnsyncedRange(
+                        batch.lane,
+                        batch.afterTimestamp,
+                        batch.afterId,
+                        batch.upToTimestamp,
+                        batch.upToId,
+                        batch.maxId)
+                    batches.delete(batch)
+                }
+                Log.i(TAG, "batch ${batch.sequence} synced successful, removed $removed entries")
+            }
+        } catch (e: Exception) {
+            if (e is IOException) {
+                return Result.retry()
             }
+
+            Log.e(TAG, "Error uploading sensor readings: $e, ${e.stackTraceToString()}")
+            return Result.failure()
         }
+
+        return Result.success()
     }
 
-    private suspend fun syncNextNActivities(
-        db: AppDatabase,
+    /**
+     * Uploads the unsynced readings of [lane] after the given key in key ranges of [batchSize] readings, with
+     * up to [MAX_BATCHES_IN_FLIGHT] requests at a time on the shared client. The next range is
+     * planned and read while the previous ones are still being sent. No new range is planned once
+     * the [budget] is used up.
+     *
+     * Every range is stored as an [UploadBatch] with a new batch ID before it is sent. Batches are
+     * passed to [onAcknowledged] in key order once their upload succeeded, which has to remove
+     * them, so progress never skips a range that has not been confirmed. The first failure cancels
+     * the other uploads and is thrown.
+     *
+     * Batches left over from an interrupted upload are sent again first, with their ID and rows
+     * unchanged, and planning continues after the last of them. The backend ignores those it
+     * already stored.
+     */
+    private suspend fun uploadReadingRanges(
+        dao: LogDataDao,
+        batches: UploadBatchDao,
+        lane: Int,
+        context: Context,
+        token: String,
+        batchSize: AdaptiveBatchSize,
+        startTimestamp: Long,
+        startId: Int,
+        onAcknowledged: (UploadBatch) -> Unit
+    ) = coroutineScope {
+        val inFlight = ArrayDeque<Deferred<ReadingRange>>()
+
+        suspend fun acknowledgeOldest() {
+            val range = try {
+                inFlight.removeFirst().await()
+            } catch (e: Exception) {
+                batchSize.onFailure()
+                throw e
+            }
+            batchSize.onAcknowledged(range.count, range.latencyMs)
+            budget.spend(range.bytes)
+            onAcknowledged(range.batch)
+        }
+
+        suspend fun send(batch: UploadBatch) {
+            inFlight.addLast(async(Dispatchers.IO) { postReadingRange(dao, context, token, ReadingRange(batch)) })
+            if (inFlight.size >= MAX_BATCHES_IN_FLIGHT) {
+                acknowledgeOldest()
+            }
+        }
+
+        var afterTimestamp = startTimestamp
+        var afterId = startId
+        for (batch in batches.getPending(lane)) {
+            Log.i(TAG, "resuming batch ${batch.sequence}")
+            afterTimestamp = batch.upToTimestamp
+            afterId = batch.upToId
+            send(batch)
+        }
+
+        while (!budget.exhausted) {
+            val end = dao.getBatchEndAfter(lane, afterTimestamp, afterId, batchSize.get()) ?: break
+            val batch = UploadBatch(
+                nextBatchSequence(context),
+                UUID.randomUUID().toString(),
+                lane,
+                afterTimestamp,
+                afterId,
+                end.timestamp,
+                end.id,
+                end.maxId)
+            batches.insert(batch)
+
+            afterTimestamp = end.timestamp
+            afterId = end.id
+            send(batch)
+        }
+
+        while (inFlight.isNotEmpty()) {
+            acknowledgeOldest()
+        }
+    }
+
+    /**
+     * Uploads the unsynced readings that have a file, oldest first. Each reading is created on its
+     * own to learn its ID, then its file is sent with [ChunkedFileUpload]. The ID is kept in
+     * [CONST.KEY_FILE_UPLOAD_READING_ID] until the file is stored, so a retry resumes the same
+     * upload instead of creating the reading again. Uploaded files are deleted from the device.
+     *
+     * A file the backend rejects is left on the device and its reading is marked as synced, so it
+     * is not tried again and does not hold up the readings after it. Any other failure stops the
+     * upload, the remaining readings are tried again in the next run.
+     */
+    private fun syncFiles(dao: LogDataDao, context: Context, token: String, n: Int): Result {
+        try {
+            uploadFiles(dao, context, token, n)
+        } catch (e: Exception) {
+            if (e is IOException) {
+                return Result.retry()
+            }
+
+            Log.e(TAG, "Error uploading files: $e, ${e.stackTraceToString()}")
+            return Result.failure()
+        }
+
+        return Result.success()
+    }
+
+    private fun uploadFiles(dao: LogDataDao, context: Context, token: String, n: Int) {
+        val sp = context.getSharedPreferences(CONST.SP_LOG_EVERYTHING, Activity.MODE_PRIVATE)
+        val upload = ChunkedFileUpload(ApiClient.getInstance(context).httpClient)
+
+        while (true) {
+            val readings = dao.getNextNUnsyncedWithFile(n)
+            for (reading in readings) {
+                if (budget.exhausted) {
+                    return
+                }
+
+                val path = reading.filePath
+                if (path == null) {
+                    // nothing to upload or resume, so no ID is kept for it
+                    val readingId = postReading(context, token, reading)
+                    Log.w(TAG, "reading $readingId has no file path, uploaded without a file")
+                    dao.deleteLogData(reading)
+                    continue
+                }
+
+                val file = File(path)
+                val key = CONST.KEY_FILE_UPLOAD_READING_ID + path
+
+                var readingId = sp.getInt(key, -1)
+                if (readingId < 0) {
+                    readingId = postReading(context, token, reading)
+                    sp.edit().putInt(key, readingId).commit()
+                }
+
+                if (file.exists()) {
+                    try {
+                        upload.upload("$READING_URL/$readingId/file", token, file)
+                    } catch (e: FileUploadException) {
+                        Log.e(TAG, "file of reading $readingId rejected, keeping it at $path: ${e.message}")
+                        reading.synced = true
+                        dao.updateLogData(reading)
+                        sp.edit().remove(key).apply()
+                        continue
+                    }
+                    budget.spend(file.length())
+                    Log.i(TAG, "file of reading $readingId uploaded, ${file.length() / 1024}KB")
+                    file.delete()
+                } else {
+                    Log.w(TAG, "file of reading $readingId is missing, uploaded without it")
+                }
+
+                dao.deleteLogData(reading)
+                sp.edit().remove(key).apply()
+            }
+
+            if (readings.size < n) {
+                return
+            }
+        }
+    }
+
+    /**
+     * Creates a single reading.
+     *
+     * @return the ID of the reading on the backend
+     */
+    private fun postReading(context: Context, token: String, reading: LogData): Int {
+        val json = JSONObject()
+            .put("sensorType", reading.sensorName)
+            .put("timestamp", reading.timestamp)
+            .put("data", reading.data)
+
+        val request = Request.Builder()
+            .url(READING_URL)
+            .header("Authorization", "Bearer $token")
+            .post(json.toString().toRequestBody(JSON_MEDIA_TYPE))
+            .build()
+
+        ApiClient.getInstance(context).httpClient.newCall(request).execute().use { response ->
+            if (!response.isSuccessful) {
+                throw ReadingUploadException(response.code)
+            }
+            return JSONObject(response.body!!.string()).getInt("id")
+        }
+    }
+
+    private suspend fun syncNextNMotionChunks(
+        dao: MotionChunkDao,
         context: Context,
         token: String,
         n: Int
     ): Result {
-        val data = db.logDataDao().getNextNUnsynced(n)
-        if (data.isEmpty()) {
+        while (!budget.exhausted) {
+            val chunks = dao.getNextN(n)
+            if (chunks.isEmpty()) {
+                break
+            }
+
+            try {
+                budget.spend(postReadingBatch(context, token, motionChunksToJson(chunks)))
+
+                dao.deleteChunks(*chunks.toTypedArray<MotionChunk>())
+                Log.i(TAG, "motion chunks synced successful, removed ${chunks.size} chunks")
+            } catch (e: Exception) {
+                if (e is IOException) {
+                    return Result.retry()
+                }
+
+                Log.e(TAG, "Error uploading motion chunks: $e, ${e.stackTraceToString()}")
+                return Result.failure()
+            }
+        }
+
+        return Result.success()
+    }
+
+    /**
+     * Uploads the day partitions oldest first. Sealed partitions are read without deleting rows
+     * and dropped as a whole afterwards, the partition still being written to is drained like the
+     * app database.
+     *
+     * Only the given [lanes] of the open partition are uploaded. Sealed partitions are uploaded with
+     * all lanes by the bulk upload, an upload of only the priority lane leaves them alone.
+     */
+    private suspend fun syncPartitions(
+        context: Context,
+        token: String,
+        lanes: IntArray,
+        batchSize: AdaptiveBatchSize,
+        chunksPerBatch: Int
+    ): Result {
+        val registry = LogDataPartitionRegistry.getInstance(context)
+        val sizeBefore = registry.sizeOnDisk
+        val bulk = UploadLane.BULK in lanes
+        val now = System.currentTimeMillis()
+
+        // the upload only needs its connections while it runs, the logging process has its own
+        val acquired = mutableListOf<String>()
+        try {
+            for (name in registry.partitions) {
+                if (budget.exhausted) {
+                    break
+                }
+
+                if (!registry.isSealed(name, now)) {
+                    if (!bulk && registry.isSealed(name, now + PRIORITY_SEAL_MARGIN_MS)) {
+                        continue
+                    }
+
+                    val partition = registry.acquire(name).also { acquired += name }
+                    for (lane in lanes) {
+                        val result = syncActivities(partition, partition.logDataDao(), partition.uploadBatchDao(), lane, context, token, batchSize)
+                        if (result != Result.success()) {
+                            return result
+                        }
+                    }
+                    if (bulk) {
+                        val fileResult = syncFiles(partition.logDataDao(), context, token, 10)
+                        if (fileResult != Result.success()) {
+                            return fileResult
+                        }
+                        val chunkResult = syncNextNMotionChunks(partition.motionChunkDao(), context, token, chunksPerBatch)
+                        if (chunkResult != Result.success()) {
+                            return chunkResult
+                        }
+                    }
+                    continue
+                }
+
+                if (!bulk) {
+                    continue
+                }
+
+                try {
+                    val partition = registry.acquire(name).also { acquired += name }
+                    // the partition is only dropped once the files of its readings are uploaded
+                    val fileResult = syncFiles(partition.logDataDao(), context, token, 10)
+                    if (fileResult != Result.success()) {
+                        return fileResult
+                    }
+
+                    val batches = partition.uploadBatchDao()
+                    for (lane in UploadLane.ALL) {
+                        uploadReadingRanges(
+                            partition.logDataDao(),
+                            batches,
+                            lane,
+                            context,
+                            token,
+                            batchSize,
+                            registry.getUploadedTimestamp(name, lane),
+                            registry.getUploadedId(name, lane)
+                        ) { batch ->
+                            registry.setUploadedReadings(name, batch.lane, batch.upToTimestamp, batch.upToId)
+                            batches.delete(batch)
+                        }
+                    }
+
+                    var afterChunkId = registry.getUploadedChunkId(name)
+                    while (!budget.exhausted) {
+                        val chunks = partition.motionChunkDao().getNextNAfter(afterChunkId, chunksPerBatch)
+                        if (chunks.isEmpty()) {
+                            break
+                        }
+
+                        budget.spend(postReadingBatch(context, token, motionChunksToJson(chunks)))
+                        afterChunkId = chunks.last().id
+                        registry.setUploadedChunkId(name, afterChunkId)
+                    }
+
+                    if (budget.exhausted) {
+                        // the upload continues from the saved progress in the next run
+                        break
+                    }
+                    registry.drop(name)
+                    Log.i(TAG, "partition $name synced successful and dropped")
+                } catch (e: Exception) {
+                    if (e is IOException) {
+                        return Result.retry()
+                    }
+
+                    Log.e(TAG, "Error uploading partition $name: $e, ${e.stackTraceToString()}")
+                    return Result.failure()
+                }
+            }
+
+            Log.i(TAG, "partitions on disk: ${sizeBefore / 1024}KB before upload, ${registry.sizeOnDisk / 1024}KB after")
             return Result.success()
+        } finally {
+            acquired.forEach { registry.release(it) }
         }
+    }
+
+    /**
+     * A batch and what was learned while uploading it.
+     */
+    private class ReadingRange(val batch: UploadBatch) {
+        var count = 0
+        var latencyMs = 0L
+        var bytes = 0L
+    }
+
+    /**
+     * Next per-device batch sequence number, committed right away so a number is never handed out
+     * twice, also not to the priority and bulk uploads running at the same time.
+     */
+    private fun nextBatchSequence(context: Context): Long = synchronized(BATCH_SEQUENCE_LOCK) {
+        val sp = context.getSharedPreferences(CONST.SP_LOG_EVERYTHING, Activity.MODE_PRIVATE)
+        val sequence = sp.getLong(CONST.KEY_UPLOAD_BATCH_SEQUENCE, 0) + 1
+        sp.edit().putLong(CONST.KEY_UPLOAD_BATCH_SEQUENCE, sequence).commit()
+        sequence
+    }
+
+    /**
+     * Posts the readings of [range], read from the cursor while the request is written. The binary
+     * batch format is used once the backend advertised it.
+     */
+    private fun postReadingRange(
+        dao: LogDataDao,
+        context: Context,
+        token: String,
+        range: ReadingRange
+    ): ReadingRange {
+        val batch = range.batch
+        val writeRows = { write: (String?, Long, String?) -> Unit ->
+            range.count = 0
+            dao.getUnsyncedRangeCursor(batch.lane, batch.afterTimestamp, batch.afterId, batch.upToTimestamp, batch.upToId, batch.maxId).use { cursor ->
+                val timestampColumn = cursor.getColumnIndexOrThrow("timestamp")
+                val sensorNameColumn = cursor.getColumnIndexOrThrow("sensorName")
+                val dataColumn = cursor.getColumnIndexOrThrow("data")
+
+                while (cursor.moveToNext()) {
+                    write(cursor.getString(sensorNameColumn), cursor.getLong(timestampColumn), cursor.getString(dataColumn))
+                    range.count++
+                }
+            }
+        }
+
+        val body = if (ApiClient.getInstance(context).serverAcceptsReadingBatches()) {
+            ReadingBatchBody { encoder ->
+                writeRows { sensorType, timestamp, data -> encoder.add(sensorType, timestamp, data) }
+            }
+        } else {
+            StreamingJsonArrayBody { writer ->
+                writeRows { sensorType, timestamp, data ->
+                    writer.beginObject()
+                    writer.name("sensorType").value(sensorType)
+                    writer.name("timestamp").value(timestamp)
+                    writer.name("data").value(data)
+                    writer.endObject()
+                }
+            }
+        }
+
+        val start = SystemClock.elapsedRealtime()
+        range.bytes = postReadingStream(context, token, body, batch)
+        range.latencyMs = SystemClock.elapsedRealtime() - start
+        return range
+    }
+
+    /**
+     * Posts a batch, compressed with gzip at [CONST.KEY_UPLOAD_COMPRESSION_LEVEL] once the backend
+     * advertised support for it. A level of 0 turns compression off. Without [batch], the readings
+     * are posted without a batch ID and may be stored again if the request is repeated.
+     *
+     * @return the number of bytes sent
+     */
+    private fun postReadingStream(context: Context, token: String, body: RequestBody, batch: UploadBatch?): Long {
+        val client = ApiClient.getInstance(context)
+        val sp = context.getSharedPreferences(CONST.SP_LOG_EVERYTHING, Activity.MODE_PRIVATE)
+        val level = sp.getInt(CONST.KEY_UPLOAD_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL)
+
+        val requestBuilder = Request.Builder()
+            .url(READING_BATCH_URL)
+            .header("Authorization", "Bearer $token")
+        if (batch != null) {
+            requestBuilder
+                .header("Batch-Id", batch.batchId)
+                .header("Batch-Sequence", batch.sequence.toString())
+        }
+
+        var gzipBody: GzipRequestBody? = null
+        val countingBody = if (level > 0 && client.serverAcceptsGzip()) {
+            gzipBody = GzipRequestBody(body, level)
+            requestBuilder.header("Content-Encoding", "gzip")
+            CountingRequestBody(gzipBody)
+        } else {
+            CountingRequestBody(body)
+        }
+        requestBuilder.post(countingBody)
 
+        client.httpClient.newCall(requestBuilder.build()).execute().use { response ->
+            if (!response.isSuccessful) {
+                throw ReadingUploadException(response.code)
+            }
+            // batches with an ID are answered with {count, duplicate}, a backend without support
+            // for them returns the stored readings instead
+            val result = response.body?.string()?.let { JSONTokener(it).nextValue() as? JSONObject }
+            if (result?.optBoolean("duplicate") == true) {
+                Log.i(TAG, "batch ${batch?.sequence} had already been stored with ${result.optInt("count")} readings")
+            }
+        }
+
+        if (gzipBody != null) {
+            Log.i(TAG, "batch compressed from ${gzipBody.uncompressedBytes} to ${gzipBody.compressedBytes} bytes")
+        }
+        return countingBody.writtenBytes
+    }
+
+    private fun motionChunksToJson(chunks: List<MotionChunk>): JSONArray {
+        // chunks are sent as they are stored, the backend expands them into single readings
         val jsonReadings = JSONArray()
-        data.forEach {
+        chunks.forEach {
             val o = JSONObject()
             o.put("sensorType", it.sensorName)
-            o.put("timestamp", it.timestamp)
-            o.put("data", it.data)
+            o.put("timestamp", it.startTimestamp)
+            o.put("encoding", MotionChunk.encodingName(it.encoding))
+            o.put("channels", it.channels)
+            o.put("data", Base64.encodeToString(it.samples, Base64.NO_WRAP))
             jsonReadings.put(o)
         }
+        return jsonReadings
+    }
 
-        val client = ApiClient.getInstance(context)
-        val headers = mapOf("Authorization" to "Bearer $token")
+    private suspend fun syncSegments(context: Context, token: String, n: Int): Result {
+        val store = SensorReadingStores.getSegmentLog(context)
 
-        try {
-            val response = suspendCoroutine { continuation ->
-                client.postArray(
-                    "https://sisensing.medien.ifi.lmu.de/v1/reading/batch",
-                    jsonReadings,
-                    headers,
-                    { response ->
-                        continuation.resume(response)
-                    },
-                    { error ->
-                        continuation.resumeWithException(error)
-                    })
-            }
-
-            db.logDataDao().deleteLogData(*data.toTypedArray<LogData>())
-            Log.i(TAG, "batch synced successful, removed ${data.size} entries")
-
-            return syncNextNActivities(db, context, token, n)
-        } catch (e: Exception) {
-            if (e is NetworkError || e is TimeoutError) {
-                return Result.retry()
+        for (sequence in store.getSealedSegments()) {
+            try {
+                var complete = false
+                // records are read straight from the mapped segment, only one batch is held in memory
+                SegmentCursor(store.getSegmentFile(sequence), store.getUploadedOffset(sequence)).use { cursor ->
+                    while (!budget.exhausted) {
+                        val jsonReadings = JSONArray()
+                        while (jsonReadings.length() < n && cursor.next()) {
+                            jsonReadings.put(segmentRecordToJson(cursor))
+                        }
+                        if (jsonReadings.length() == 0) {
+                            complete = true
+                            break
+                        }
+
+                        budget.spend(postReadingBatch(context, token, jsonReadings))
+                        store.setUploadedOffset(sequence, cursor.position())
+                    }
+                    if (cursor.skippedRecords > 0) {
+                        Log.w(TAG, "skipped ${cursor.skippedRecords} corrupt records of segment $sequence")
+                    }
+                }
+
+                if (!complete) {
+                    break
+                }
+                store.deleteSegment(sequence)
+                Log.i(TAG, "segment $sequence synced successful")
+            } catch (e: Exception) {
+                if (e is IOException) {
+                    return Result.retry()
+                }
+
+                Log.e(TAG, "Error uploading segment $sequence: $e, ${e.stackTraceToString()}")
+                return Result.failure()
             }
+        }
 
-            Log.e(TAG, "Error uploading sensor readings: $e, ${e.stackTraceToString()}")
-            return Result.failure()
+        return Result.success()
+    }
+
+    private fun segmentRecordToJson(cursor: SegmentCursor): JSONObject {
+        val o = JSONObject()
+        o.put("sensorType", cursor.sensorName)
+        o.put("timestamp", cursor.timestamp)
+
+        if (cursor.isMotionChunk) {
+            o.put("encoding", MotionChunk.encodingName(cursor.motionChunk.encoding))
+            o.put("channels", cursor.motionChunk.channels)
+            o.put("data", Base64.encodeToString(cursor.motionChunk.samples, Base64.NO_WRAP))
+        } else {
+            o.put("data", cursor.data)
         }
+        return o
     }
+
+    /**
+     * Posts readings read outside of the keyset ranges, see [postReadingStream].
+     *
+     * @return the number of bytes sent
+     */
+    private fun postReadingBatch(context: Context, token: String, jsonReadings: JSONArray): Long =
+        postReadingStream(context, token, jsonReadings.toString().toRequestBody(JSON_MEDIA_TYPE), null)
 }
 
+private const val DEFAULT_COMPRESSION_LEVEL = 6
+
+private const val MAX_BATCHES_IN_FLIGHT = 3
+
+// the shortest interval WorkManager allows, priority readings wait at most this long
+private const val UPLOAD_CHECK_INTERVAL_MINUTES = 15L
+
+// a partition this close to being sealed is left to the bulk upload, which uploads sealed partitions
+// with all lanes at once
+private const val PRIORITY_SEAL_MARGIN_MS = 10 * 60 * 1000L
+
+private val BATCH_SEQUENCE_LOCK = Any()
+
+private const val DRAIN_WORK_NAME = "readingsDrain"
+
+// tags a drain with its UploadDecision.Kind, so a more urgent one can replace it
+private const val DRAIN_KIND_TAG_PREFIX = "readingsDrain:"
+
+// re-sending a batch is cheap since the backend ignores batches it already stored, so the upload is
+// retried sooner than with the default backoff
+private const val RETRY_BACKOFF_MS = WorkRequest.MIN_BACKOFF_MILLIS
+
+private const val READING_URL = "https://sisensing.medien.ifi.lmu.de/v1/reading"
+
+private const val READING_BATCH_URL = "$READING_URL/batch"
+
+private val JSON_MEDIA_TYPE = "application/json; charset=utf-8".toMediaType()
+
+/**
+ * Bytes a run may upload. It is checked before a batch is started, so a run can exceed it by the
+ * batches that are in flight when it is reached.
+ */
+private class UploadBudget(val maxBytes: Long) {
+    var usedBytes = 0L
+        private set
+
+    val exhausted: Boolean
+        get() = usedBytes >= maxBytes
+
+    fun spend(bytes: Long) {
+        usedBytes += bytes
+    }
+}
+
+private class ReadingUploadException(statusCode: Int) : Exception("reading upload failed with HTTP $statusCode")
+
+/**
+ * Starts the periodic [UploadSchedulingWorker], which schedules uploads of the priority lane with
+ * [enqueuePriorityReadingsUpload] and drains of the bulk lane with [enqueueSensorReadingsDrain].
+ */
 fun enqueueSensorReadingsUploadWorker(context: Context, token: String) {
     val data = workDataOf("token" to token)
 
+    val schedulingWorkRequest = PeriodicWorkRequestBuilder<UploadSchedulingWorker>(UPLOAD_CHECK_INTERVAL_MINUTES, TimeUnit.MINUTES)
+        .addTag("readingsUpload")
+        .setInputData(data)
+        .build()
+
+    // reset
+    WorkManager.getInstance(context).cancelAllWorkByTag("readingsUpload")
+
+    WorkManager.getInstance(context).enqueue(schedulingWorkRequest)
+}
+
+/**
+ * Schedules a run of [SensorReadingsUploadWorker] that uploads the priority lane on any network,
+ * unless one is already waiting. It is unique work of its own, so a long bulk drain never holds it
+ * back.
+ */
+fun enqueuePriorityReadingsUpload(context: Context, token: String) {
+    val data = workDataOf("token" to token, "lanes" to intArrayOf(UploadLane.PRIORITY))
+
     val constraints = Constraints.Builder()
         .setRequiredNetworkType(NetworkType.CONNECTED)
-        .setRequiresCharging(true)
         .build()
 
-    val uploadWorkRequest = PeriodicWorkRequestBuilder<SensorReadingsUploadWorker>(1, TimeUnit.DAYS)
+    val uploadWorkRequest = OneTimeWorkRequestBuilder<SensorReadingsUploadWorker>()
         .addTag("readingsUpload")
         .setInputData(data)
         .setConstraints(constraints)
+        .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, RETRY_BACKOFF_MS, TimeUnit.MILLISECONDS)
         .build()
 
-    // reset
-    WorkManager.getInstance(context).cancelAllWorkByTag("readingsUpload")
+    WorkManager.getInstance(context).enqueueUniqueWork("readingsPriorityUpload", ExistingWorkPolicy.KEEP, uploadWorkRequest)
+}
 
-    WorkManager.getInstance(context).enqueue(uploadWorkRequest)
+/**
+ * Schedules a run of [SensorReadingsUploadWorker] that uploads at most [UploadDecision.maxBytes] of
+ * the bulk lane. A full drain waits for charging on an unmetered network, a regular one for an
+ * unmetered network, only an expedited one runs on any network.
+ *
+ * A drain that is already waiting is kept, unless the new one is more urgent, see
+ * [replacesWaitingDrain]. A running drain is never replaced.
+ *
+ * Must not be called on the main thread, it looks up the waiting drain synchronously.
+ */
+fun enqueueSensorReadingsDrain(context: Context, token: String, decision: UploadDecision) {
+    val data = workDataOf(
+        "token" to token,
+        "maxBytes" to decision.maxBytes,
+        "lanes" to intArrayOf(UploadLane.BULK)
+    )
+
+    val constraints = Constraints.Builder()
+        .setRequiredNetworkType(
+            if (decision.kind == UploadDecision.Kind.EXPEDITED_DRAIN) NetworkType.CONNECTED else NetworkType.UNMETERED
+        )
+        .setRequiresCharging(decision.kind == UploadDecision.Kind.FULL_DRAIN)
+        .build()
+
+    val builder = OneTimeWorkRequestBuilder<SensorReadingsUploadWorker>()
+        .addTag("readingsUpload")
+        .addTag(DRAIN_KIND_TAG_PREFIX + decision.kind.name)
+        .setInputData(data)
+        .setConstraints(constraints)
+        .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, RETRY_BACKOFF_MS, TimeUnit.MILLISECONDS)
+    if (decision.kind == UploadDecision.Kind.EXPEDITED_DRAIN) {
+        builder.setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST)
+    }
+
+    val workManager = WorkManager.getInstance(context)
+    val waiting = workManager.getWorkInfosForUniqueWork(DRAIN_WORK_NAME).get()
+        .firstOrNull { it.state == WorkInfo.State.ENQUEUED || it.state == WorkInfo.State.BLOCKED }
+    val waitingKind = waiting?.tags
+        ?.firstOrNull { it.startsWith(DRAIN_KIND_TAG_PREFIX) }
+        ?.let { UploadDecision.Kind.valueOf(it.removePrefix(DRAIN_KIND_TAG_PREFIX)) }
+    val policy = if (waitingKind != null && replacesWaitingDrain(decision.kind, waitingKind)) {
+        ExistingWorkPolicy.REPLACE
+    } else {
+        ExistingWorkPolicy.KEEP
+    }
+
+    workManager.enqueueUniqueWork(DRAIN_WORK_NAME, policy, builder.build())
 }
 
 fun enqueueFinalSensorReadingsUploadWorker(context: Context, token: String) {
@@ -151,6 +855,7 @@ fun enqueueFinalSensorReadingsUploadWorker(context: Context, token: String) {
         .addTag("finalReadingsUpload")
         .setInputData(data)
         .setConstraints(constraints)
+        .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, RETRY_BACKOFF_MS, TimeUnit.MILLISECONDS)
         .build()
 
     WorkManager.getInstance(context).enqueue(uploadWorkRequest)
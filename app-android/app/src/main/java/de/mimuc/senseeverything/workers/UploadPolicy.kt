@@ -0,0 +1,178 @@
+package de.mimuc.senseeverything.workers
+
+import android.content.Context
+import android.net.ConnectivityManager
+import android.net.NetworkCapabilities
+import android.os.BatteryManager
+import android.os.PowerManager
+import de.mimuc.senseeverything.data.SensorReadingStores
+import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.db.LogDataPartitionRegistry
+import de.mimuc.senseeverything.db.UploadLane
+
+/**
+ * Readings waiting for upload across all stores. [bytes] is an estimate, rows of the app database
+ * are counted with [ESTIMATED_READING_BYTES] each, partitions, segments and motion chunks with
+ * their size. [oldestTimestamp] is [Long.MAX_VALUE] if nothing is waiting.
+ *
+ * Only the bulk lane of the app database is measured. Priority readings are uploaded as soon as
+ * they are found, and some of them are not timestamped in milliseconds.
+ */
+class UploadBacklog(val bytes: Long, val oldestTimestamp: Long) {
+    fun ageMs(now: Long): Long = if (bytes == 0L) 0 else now - oldestTimestamp
+
+    companion object {
+        fun measure(context: Context, database: AppDatabase): UploadBacklog {
+            var bytes = 0L
+            var oldest = Long.MAX_VALUE
+
+            val logData = database.logDataDao()
+            bytes += logData.getUnsyncedCount(UploadLane.BULK) * ESTIMATED_READING_BYTES
+            logData.getOldestUnsyncedTimestamp(UploadLane.BULK)?.let { oldest = minOf(oldest, it) }
+
+            val motionChunks = database.motionChunkDao()
+            bytes += motionChunks.getSamplesSize()
+            motionChunks.getOldestTimestamp()?.let { oldest = minOf(oldest, it) }
+
+            val registry = LogDataPartitionRegistry.getInstance(context)
+            val partitions = registry.partitions
+            if (partitions.isNotEmpty()) {
+                bytes += registry.sizeOnDisk
+                oldest = minOf(oldest, registry.getDayStart(partitions.first()))
+            }
+
+            val segmentLog = SensorReadingStores.getSegmentLog(context)
+            for (sequence in segmentLog.sealedSegments) {
+                val file = segmentLog.getSegmentFile(sequence)
+                bytes += file.length() - segmentLog.getUploadedOffset(sequence)
+                oldest = minOf(oldest, file.lastModified())
+            }
+
+            return UploadBacklog(bytes, oldest)
+        }
+    }
+}
+
+/**
+ * Network and battery state the upload decision is based on.
+ */
+class UploadConditions(
+    val unmetered: Boolean,
+    val charging: Boolean,
+    val batteryPercent: Int,
+    val powerSave: Boolean
+) {
+    val batteryLow: Boolean
+        get() = !charging && (powerSave || batteryPercent < LOW_BATTERY_PERCENT)
+
+    override fun toString(): String =
+        "${if (unmetered) "unmetered" else "metered"}, ${if (charging) "charging" else "on battery"} at $batteryPercent%" +
+                if (powerSave) ", power save" else ""
+
+    companion object {
+        fun read(context: Context): UploadConditions {
+            val connectivity = context.getSystemService(ConnectivityManager::class.java)
+            val capabilities = connectivity.getNetworkCapabilities(connectivity.activeNetwork)
+            val battery = context.getSystemService(BatteryManager::class.java)
+            val power = context.getSystemService(PowerManager::class.java)
+
+            return UploadConditions(
+                capabilities?.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED) == true,
+                battery.isCharging,
+                battery.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY),
+                power.isPowerSaveMode
+            )
+        }
+    }
+}
+
+class UploadDecision(val kind: Kind, val maxBytes: Long, val reason: String) {
+    /**
+     * @param urgency higher for drains that wait for fewer conditions before they run
+     */
+    enum class Kind(val urgency: Int) {
+        /** nothing is scheduled */
+        WAIT(0),
+
+        /** a drain of at most [maxBytes] on an unmetered network */
+        DRAIN(2),
+
+        /** a drain of at most [maxBytes] on any network, run as expedited work */
+        EXPEDITED_DRAIN(3),
+
+        /** everything is uploaded while charging on an unmetered network */
+        FULL_DRAIN(1)
+    }
+
+    override fun toString(): String = when (kind) {
+        Kind.WAIT -> "wait ($reason)"
+        Kind.FULL_DRAIN -> "full drain ($reason)"
+        else -> "${kind.name.lowercase().replace('_', ' ')} of at most ${maxBytes / 1024}KB ($reason)"
+    }
+}
+
+/**
+ * Decides whether and how much of the bulk lane to upload now. While charging on an unmetered
+ * network the backlog is drained completely. Otherwise a drain capped at [UNMETERED_RUN_BYTES] is
+ * scheduled on an unmetered network once the backlog is larger than [DRAIN_BACKLOG_BYTES] or older
+ * than [DRAIN_AGE_MS]. From [URGENT_BACKLOG_BYTES] or [URGENT_AGE_MS] on, a drain is expedited and
+ * also runs on a metered network, capped at [METERED_RUN_BYTES]. On low battery only a backlog large
+ * enough to be urgent is uploaded.
+ */
+fun decideUpload(backlog: UploadBacklog, conditions: UploadConditions, now: Long): UploadDecision {
+    val age = backlog.ageMs(now)
+    val runBytes = if (conditions.unmetered) UNMETERED_RUN_BYTES else METERED_RUN_BYTES
+
+    return when {
+        backlog.bytes == 0L ->
+            UploadDecision(UploadDecision.Kind.WAIT, 0, "nothing to upload")
+
+        conditions.charging && conditions.unmetered ->
+            UploadDecision(UploadDecision.Kind.FULL_DRAIN, Long.MAX_VALUE, "charging on unmetered network")
+
+        backlog.bytes >= URGENT_BACKLOG_BYTES ->
+            UploadDecision(UploadDecision.Kind.EXPEDITED_DRAIN, runBytes, "backlog above ${URGENT_BACKLOG_BYTES / MIB}MB")
+
+        conditions.batteryLow ->
+            UploadDecision(UploadDecision.Kind.WAIT, 0, "battery low")
+
+        age >= URGENT_AGE_MS ->
+            UploadDecision(UploadDecision.Kind.EXPEDITED_DRAIN, runBytes, "backlog older than ${URGENT_AGE_MS / HOUR_MS}h")
+
+        !conditions.unmetered ->
+            UploadDecision(UploadDecision.Kind.WAIT, 0, "waiting for unmetered network")
+
+        backlog.bytes >= DRAIN_BACKLOG_BYTES ->
+            UploadDecision(UploadDecision.Kind.DRAIN, runBytes, "backlog above ${DRAIN_BACKLOG_BYTES / MIB}MB")
+
+        age >= DRAIN_AGE_MS ->
+            UploadDecision(UploadDecision.Kind.DRAIN, runBytes, "backlog older than ${DRAIN_AGE_MS / HOUR_MS}h")
+
+        else ->
+            UploadDecision(UploadDecision.Kind.WAIT, 0, "below thresholds")
+    }
+}
+
+/**
+ * Whether a drain of the [requested] kind should replace one of the [waiting] kind that has not
+ * started yet. Only a more urgent drain does, so a full drain waiting for the charger never holds
+ * back a drain that is due now, and a drain is not pushed back by a less urgent one.
+ */
+fun replacesWaitingDrain(requested: UploadDecision.Kind, waiting: UploadDecision.Kind): Boolean =
+    requested.urgency > waiting.urgency
+
+// a row of logdata including its share of the (synced, lane, timestamp, id) index
+private const val ESTIMATED_READING_BYTES = 100L
+
+private const val MIB = 1024L * 1024
+private const val HOUR_MS = 60L * 60 * 1000
+
+private const val DRAIN_BACKLOG_BYTES = 8 * MIB
+private const val URGENT_BACKLOG_BYTES = 32 * MIB
+private const val DRAIN_AGE_MS = 6 * HOUR_MS
+private const val URGENT_AGE_MS = 24 * HOUR_MS
+
+private const val METERED_RUN_BYTES = 2 * MIB
+private const val UNMETERED_RUN_BYTES = 16 * MIB
+
+private const val LOW_BATTERY_PERCENT = 20
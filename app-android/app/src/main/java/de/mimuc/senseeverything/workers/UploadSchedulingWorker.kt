@@ -0,0 +1,73 @@
+package de.mimuc.senseeverything.workers
+
+import android.content.Context
+import android.util.Log
+import androidx.hilt.work.HiltWorker
+import androidx.work.CoroutineWorker
+import androidx.work.WorkerParameters
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import de.mimuc.senseeverything.db.AppDatabase
+import de.mimuc.senseeverything.db.LogDataPartitionRegistry
+import de.mimuc.senseeverything.db.UploadLane
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+
+/**
+ * Runs periodically and schedules uploads by [SensorReadingsUploadWorker]: the priority lane
+ * whenever it has readings, the bulk lane as [decideUpload] sees fit for the measured backlog. Does
+ * not upload anything itself.
+ */
+@HiltWorker
+class UploadSchedulingWorker @AssistedInject constructor(
+    @Assisted appContext: Context,
+    @Assisted workerParams: WorkerParameters,
+    private val database: AppDatabase
+) :
+    CoroutineWorker(appContext, workerParams) {
+    val TAG = "UploadSchedulingWorker"
+
+    override suspend fun doWork(): Result {
+        val token = inputData.getString("token") ?: ""
+
+        if (token.isEmpty()) {
+            return Result.failure()
+        }
+
+        if (withContext(Dispatchers.IO) { hasPriorityReadings() }) {
+            Log.i(TAG, "priority readings waiting, scheduling upload")
+            enqueuePriorityReadingsUpload(applicationContext, token)
+        }
+
+        val backlog = withContext(Dispatchers.IO) { UploadBacklog.measure(applicationContext, database) }
+        val conditions = UploadConditions.read(applicationContext)
+        val now = System.currentTimeMillis()
+        val decision = decideUpload(backlog, conditions, now)
+
+        Log.i(TAG, "backlog ${backlog.bytes / 1024}KB, oldest ${backlog.ageMs(now) / 60_000} min, $conditions: $decision")
+
+        if (decision.kind != UploadDecision.Kind.WAIT) {
+            enqueueSensorReadingsDrain(applicationContext, token, decision)
+        }
+        return Result.success()
+    }
+
+    // in the app database or the partition being written to, sealed partitions belong to the bulk upload
+    private fun hasPriorityReadings(): Boolean {
+        if (database.logDataDao().hasUnsynced(UploadLane.PRIORITY)) {
+            return true
+        }
+
+        val registry = LogDataPartitionRegistry.getInstance(applicationContext)
+        val now = System.currentTimeMillis()
+        return registry.partitions
+            .filter { !registry.isSealed(it, now) }
+            .any {
+                try {
+                    registry.acquire(it).logDataDao().hasUnsynced(UploadLane.PRIORITY)
+                } finally {
+                    registry.release(it)
+                }
+            }
+    }
+}
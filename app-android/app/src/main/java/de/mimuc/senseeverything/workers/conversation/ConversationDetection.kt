@@ -0,0 +1,76 @@
+package de.mimuc.senseeverything.workers.conversation
+
+import android.content.Context
+import de.mimuc.senseeverything.workers.conversation.VadReader.AudioSegment
+import de.mimuc.senseeverything.workers.conversation.VadReader.Companion.calculateLength
+import de.mimuc.senseeverything.workers.conversation.VadReader.Companion.calculateSpeechPercentage
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import java.io.Closeable
+import java.util.Locale
+
+/**
+ * Runs [readers] over PCM as it arrives, while it is recorded or read from a file by the
+ * [ConversationDetectionEngine]. Every reader gets the audio split into its own frame size.
+ */
+class StreamingConversationDetector @JvmOverloads constructor(
+    context: Context,
+    readers: List<VadReader> = defaultReaders()
+) : Closeable {
+    private val streams = ArrayList<Pair<VadReader, VadStream>>(readers.size)
+
+    init {
+        try {
+            for (reader in readers) {
+                streams.add(reader to reader.open(context))
+            }
+        } catch (e: Exception) {
+            close()
+            throw e
+        }
+    }
+
+    fun write(data: ByteArray, offset: Int, length: Int) {
+        for ((_, stream) in streams) {
+            stream.write(data, offset, length)
+        }
+    }
+
+    /**
+     * Like [write], with the detectors processing [data] at the same time on [dispatcher]. A detector
+     * is only ever used by one coroutine at a time.
+     */
+    suspend fun write(data: ByteArray, offset: Int, length: Int, dispatcher: CoroutineDispatcher) = coroutineScope {
+        for ((_, stream) in streams) {
+            launch(dispatcher) { stream.write(data, offset, length) }
+        }
+    }
+
+    fun finish(): List<ConversationDetectionResult> =
+        streams.map { (reader, stream) -> ConversationDetectionResult(reader.TAG, stream.finish()) }
+
+    override fun close() {
+        for ((_, stream) in streams) {
+            stream.close()
+        }
+    }
+}
+
+class ConversationDetectionResult(val detector: String, val segments: List<AudioSegment>) {
+    val sensorName: String
+        get() = "Conversation $detector"
+
+    /**
+     * Length in seconds, share of speech and the labels of the segments, as logged for [sensorName].
+     */
+    fun summary(): String = String.format(
+        Locale.GERMAN,
+        "%.2f;%2f;labels:[%s]",
+        calculateLength(segments, 44100, 16),
+        calculateSpeechPercentage(segments),
+        segments.map { it.label }.toSet().joinToString(",")
+    )
+}
+
+fun defaultReaders(): List<VadReader> = listOf(WebRTCReader(), YAMNetReader())
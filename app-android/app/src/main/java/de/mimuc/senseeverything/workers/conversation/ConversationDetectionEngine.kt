@@ -0,0 +1,54 @@
+package de.mimuc.senseeverything.workers.conversation
+
+import android.content.Context
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.nio.ByteBuffer
+
+/**
+ * Runs any number of [VadReader]s over a recording in a single pass. The file is read once by a
+ * [PcmSource] into two alternating blocks of [BLOCK_SIZE] bytes and every block is passed to
+ * all detectors, each splitting it into its own frame size. The detectors process a block at the
+ * same time, on at most [parallelism] threads, while the next block is read.
+ */
+class ConversationDetectionEngine(
+    private val context: Context,
+    private val readers: List<VadReader> = defaultReaders(),
+    parallelism: Int = minOf(readers.size, Runtime.getRuntime().availableProcessors())
+) {
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private val dispatcher = Dispatchers.Default.limitedParallelism(maxOf(1, parallelism))
+
+    suspend fun detect(path: String): List<ConversationDetectionResult> = withContext(Dispatchers.IO) {
+        StreamingConversationDetector(context, readers).use { detector ->
+            openPcmSource(File(path)).use { source ->
+                var current = ByteBuffer.allocate(BLOCK_SIZE)
+                var next = ByteBuffer.allocate(BLOCK_SIZE)
+                var read = source.read(current)
+
+                while (read > 0) {
+                    val length = read
+                    coroutineScope {
+                        val nextRead = async {
+                            next.clear()
+                            source.read(next)
+                        }
+                        detector.write(current.array(), 0, length, dispatcher)
+                        read = nextRead.await()
+                    }
+                    current = next.also { next = current }
+                }
+            }
+
+            detector.finish()
+        }
+    }
+
+    companion object {
+        private const val BLOCK_SIZE = 64 * 1024
+    }
+}
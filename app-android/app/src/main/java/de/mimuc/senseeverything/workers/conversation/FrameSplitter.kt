@@ -0,0 +1,29 @@
+package de.mimuc.senseeverything.workers.conversation
+
+/**
+ * Splits PCM written in chunks of any length into frames of [frameBytes] bytes and passes each
+ * complete frame to [onFrame]. Bytes of an incomplete frame are kept until the next write.
+ *
+ * The frame array is reused, [onFrame] must not keep it.
+ */
+class FrameSplitter(val frameBytes: Int, private val onFrame: (ByteArray) -> Unit) {
+    private val frame = ByteArray(frameBytes)
+    private var filled = 0
+
+    fun write(data: ByteArray, offset: Int, length: Int) {
+        var position = offset
+        val end = offset + length
+
+        while (position < end) {
+            val count = minOf(frameBytes - filled, end - position)
+            System.arraycopy(data, position, frame, filled, count)
+            filled += count
+            position += count
+
+            if (filled == frameBytes) {
+                onFrame(frame)
+                filled = 0
+            }
+        }
+    }
+}
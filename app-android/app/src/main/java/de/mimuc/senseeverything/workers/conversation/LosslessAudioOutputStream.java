@@ -0,0 +1,230 @@
+package de.mimuc.senseeverything.workers.conversation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses 16-bit little-endian mono PCM losslessly while it is written, in the manner of FLAC's
+ * fixed predictors. Read it back with {@link LosslessAudioSource}.
+ * <p>
+ * Layout:
+ * <ul>
+ * <li>header: {@code "SELA"}, {@code uint8} version, {@code int32} sample rate</li>
+ * <li>blocks of up to {@link #BLOCK_SIZE} samples until the end of the file: {@code uint16} sample
+ * count, {@code uint8} method, then
+ * <ul>
+ * <li>for {@link #METHOD_VERBATIM} the samples as {@code int16}</li>
+ * <li>for a predictor order of 0 to {@link #MAX_ORDER}, a {@code uint8} Rice parameter and a bit
+ * stream of the first {@code order} samples as 16 bits followed by the Rice-coded zigzag residuals
+ * of the predictor, padded to a full byte</li>
+ * </ul>
+ * </li>
+ * </ul>
+ * Numbers are little-endian, bits are written most significant first. Each block uses the predictor
+ * with the smallest residuals and the cheapest Rice parameter for them, and is stored verbatim if
+ * that is not smaller.
+ * <p>
+ * Incomplete blocks are kept until {@link #close()}.
+ */
+public class LosslessAudioOutputStream extends OutputStream {
+    public static final String EXTENSION = ".sela";
+
+    static final byte[] MAGIC = {'S', 'E', 'L', 'A'};
+    static final int VERSION = 1;
+    static final int BLOCK_SIZE = 4096;
+    static final int MAX_ORDER = 3;
+    static final int METHOD_VERBATIM = 0xFF;
+
+    // zigzag residuals of an order 3 predictor have at most 20 bits
+    private static final int MAX_RICE_PARAMETER = 20;
+
+    private final OutputStream out;
+
+    private final int[] samples = new int[BLOCK_SIZE];
+    private final int[] residuals = new int[BLOCK_SIZE];
+    private int count;
+    private int oddByte = -1;
+
+    private final byte[] block = new byte[2 * BLOCK_SIZE + 16];
+    private int position;
+    private long bitBuffer;
+    private int bitCount;
+
+    private boolean closed;
+
+    public LosslessAudioOutputStream(OutputStream out, int sampleRate) throws IOException {
+        this.out = out;
+
+        System.arraycopy(MAGIC, 0, block, 0, MAGIC.length);
+        position = MAGIC.length;
+        block[position++] = (byte) VERSION;
+        writeInt(sampleRate);
+        out.write(block, 0, position);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        int end = offset + length;
+        int i = offset;
+
+        if (oddByte >= 0 && i < end) {
+            add(oddByte | (data[i++] << 8));
+            oddByte = -1;
+        }
+        for (; i + 1 < end; i += 2) {
+            add((data[i] & 0xFF) | (data[i + 1] << 8));
+        }
+        if (i < end) {
+            oddByte = data[i] & 0xFF;
+        }
+    }
+
+    /**
+     * Writes the incomplete block, a trailing odd byte is dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            if (count > 0) {
+                encodeBlock();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void add(int sample) throws IOException {
+        samples[count++] = sample;
+        if (count == BLOCK_SIZE) {
+            encodeBlock();
+        }
+    }
+
+    private void encodeBlock() throws IOException {
+        int order = bestOrder();
+        long sum = 0;
+        for (int i = order; i < count; i++) {
+            int residual = residual(order, i);
+            residuals[i] = (residual << 1) ^ (residual >> 31);
+            sum += residuals[i];
+        }
+
+        int riceParameter = 0;
+        long bits = Long.MAX_VALUE;
+        for (int k = 0; k <= MAX_RICE_PARAMETER; k++) {
+            long cost = (long) (count - order) * (k + 1);
+            for (int i = order; i < count; i++) {
+                cost += residuals[i] >>> k;
+            }
+            if (cost < bits) {
+                bits = cost;
+                riceParameter = k;
+            }
+            if (sum >>> k == 0) {
+                // larger parameters only add bits
+                break;
+            }
+        }
+
+        position = 0;
+        block[position++] = (byte) count;
+        block[position++] = (byte) (count >>> 8);
+
+        if (16L * order + bits + 8 >= 16L * count) {
+            block[position++] = (byte) METHOD_VERBATIM;
+            for (int i = 0; i < count; i++) {
+                block[position++] = (byte) samples[i];
+                block[position++] = (byte) (samples[i] >>> 8);
+            }
+        } else {
+            block[position++] = (byte) order;
+            block[position++] = (byte) riceParameter;
+            for (int i = 0; i < order; i++) {
+                writeBits(samples[i], 16);
+            }
+            for (int i = order; i < count; i++) {
+                writeRice(residuals[i], riceParameter);
+            }
+            if (bitCount > 0) {
+                writeBits(0, 8 - bitCount);
+            }
+        }
+
+        out.write(block, 0, position);
+        count = 0;
+    }
+
+    /**
+     * @return the predictor order with the smallest sum of absolute residuals
+     */
+    private int bestOrder() {
+        int best = 0;
+        long bestSum = Long.MAX_VALUE;
+        for (int order = 0; order <= MAX_ORDER && order < count; order++) {
+            long sum = 0;
+            for (int i = order; i < count; i++) {
+                sum += Math.abs(residual(order, i));
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = order;
+            }
+        }
+        return best;
+    }
+
+    private int residual(int order, int i) {
+        int[] x = samples;
+        switch (order) {
+            case 0:
+                return x[i];
+            case 1:
+                return x[i] - x[i - 1];
+            case 2:
+                return x[i] - 2 * x[i - 1] + x[i - 2];
+            default:
+                return x[i] - 3 * x[i - 1] + 3 * x[i - 2] - x[i - 3];
+        }
+    }
+
+    private void writeRice(int value, int parameter) {
+        // quotient in unary as zeros ended by a one
+        for (int quotient = value >>> parameter; quotient > 0; quotient -= 32) {
+            writeBits(0, Math.min(quotient, 32));
+        }
+        writeBits(1, 1);
+        writeBits(value, parameter);
+    }
+
+    private void writeBits(int value, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        long mask = count == 32 ? 0xffffffffL : (1L << count) - 1;
+        bitBuffer = (bitBuffer << count) | (value & mask);
+        bitCount += count;
+
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            block[position++] = (byte) (bitBuffer >>> bitCount);
+        }
+    }
+
+    private void writeInt(int value) {
+        block[position++] = (byte) value;
+        block[position++] = (byte) (value >>> 8);
+        block[position++] = (byte) (value >>> 16);
+        block[position++] = (byte) (value >>> 24);
+    }
+}
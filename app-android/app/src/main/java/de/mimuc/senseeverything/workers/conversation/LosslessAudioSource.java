@@ -0,0 +1,171 @@
+package de.mimuc.senseeverything.workers.conversation;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes a recording written by {@link LosslessAudioOutputStream} block by block, so detectors can
+ * be fed frames without decoding the whole file first.
+ */
+public class LosslessAudioSource implements PcmSource {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream input;
+    private final int sampleRate;
+
+    private final int[] samples = new int[LosslessAudioOutputStream.BLOCK_SIZE];
+    private int count;
+    private int next;
+
+    private long bitBuffer;
+    private int bitCount;
+
+    public LosslessAudioSource(File file) throws IOException {
+        input = new BufferedInputStream(new FileInputStream(file), READ_BUFFER_SIZE);
+        try {
+            for (byte magic : LosslessAudioOutputStream.MAGIC) {
+                if (readByte() != magic) {
+                    throw new IOException("not a lossless audio file");
+                }
+            }
+            int version = readByte();
+            if (version != LosslessAudioOutputStream.VERSION) {
+                throw new IOException("unsupported lossless audio version " + version);
+            }
+            sampleRate = readByte() | readByte() << 8 | readByte() << 16 | readByte() << 24;
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.remaining() >= 2) {
+            if (next == count && !decodeBlock()) {
+                break;
+            }
+
+            int sample = samples[next++];
+            buffer.put((byte) sample);
+            buffer.put((byte) (sample >>> 8));
+            total += 2;
+        }
+        if (total == 0 && buffer.remaining() >= 2) {
+            return -1;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * A file that ends within a block, e.g. because the recording was interrupted before the stream
+     * was closed, ends with the last complete block.
+     *
+     * @return false at the end of the file
+     */
+    private boolean decodeBlock() throws IOException {
+        try {
+            return decodeNextBlock();
+        } catch (EOFException e) {
+            count = 0;
+            next = 0;
+            return false;
+        }
+    }
+
+    private boolean decodeNextBlock() throws IOException {
+        int low = input.read();
+        if (low < 0) {
+            return false;
+        }
+        count = low | readByte() << 8;
+        next = 0;
+        if (count == 0 || count > samples.length) {
+            throw new IOException("invalid block of " + count + " samples");
+        }
+
+        int method = readByte();
+        if (method == LosslessAudioOutputStream.METHOD_VERBATIM) {
+            for (int i = 0; i < count; i++) {
+                samples[i] = (short) (readByte() | readByte() << 8);
+            }
+            return true;
+        }
+        if (method > LosslessAudioOutputStream.MAX_ORDER || method > count) {
+            throw new IOException("invalid predictor order " + method);
+        }
+
+        int order = method;
+        int riceParameter = readByte();
+        bitBuffer = 0;
+        bitCount = 0;
+
+        int[] x = samples;
+        for (int i = 0; i < order; i++) {
+            x[i] = (short) readBits(16);
+        }
+        for (int i = order; i < count; i++) {
+            int value = readRice(riceParameter);
+            int residual = (value >>> 1) ^ -(value & 1);
+            switch (order) {
+                case 0:
+                    x[i] = residual;
+                    break;
+                case 1:
+                    x[i] = residual + x[i - 1];
+                    break;
+                case 2:
+                    x[i] = residual + 2 * x[i - 1] - x[i - 2];
+                    break;
+                default:
+                    x[i] = residual + 3 * x[i - 1] - 3 * x[i - 2] + x[i - 3];
+                    break;
+            }
+        }
+        return true;
+    }
+
+    private int readRice(int parameter) throws IOException {
+        int quotient = 0;
+        while (readBits(1) == 0) {
+            quotient++;
+        }
+        return quotient << parameter | readBits(parameter);
+    }
+
+    private int readBits(int count) throws IOException {
+        if (count == 0) {
+            return 0;
+        }
+
+        while (bitCount < count) {
+            bitBuffer = bitBuffer << 8 | readByte();
+            bitCount += 8;
+        }
+        bitCount -= count;
+        return (int) (bitBuffer >>> bitCount & (1L << count) - 1);
+    }
+
+    private int readByte() throws IOException {
+        int value = input.read();
+        if (value < 0) {
+            throw new EOFException("lossless audio file ends within a block");
+        }
+        return value;
+    }
+}
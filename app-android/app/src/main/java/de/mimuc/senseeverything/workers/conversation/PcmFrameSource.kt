@@ -0,0 +1,115 @@
+package de.mimuc.senseeverything.workers.conversation
+
+import java.io.EOFException
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Reads the PCM data of a WAV file through its channel into buffers of the caller, so reading a
+ * recording allocates nothing per block. The data chunk is found from the header instead of assuming
+ * a 44 byte header. A data size of 0, left by a recording that was not finished, is read up to the
+ * end of the file.
+ */
+class PcmFrameSource(file: File) : PcmSource {
+    private val input = RandomAccessFile(file, "r")
+    private val channel = input.channel
+
+    /**
+     * Bytes of PCM data left to read.
+     */
+    var remaining: Long = 0
+        private set
+
+    init {
+        try {
+            remaining = findData(file.length())
+        } catch (e: IOException) {
+            close()
+            throw e
+        }
+    }
+
+    /**
+     * Reads the next bytes into [buffer] up to its limit, repeating short reads of the channel.
+     */
+    override fun read(buffer: ByteBuffer): Int {
+        if (remaining == 0L) {
+            return -1
+        }
+
+        val limit = buffer.limit()
+        if (buffer.remaining() > remaining) {
+            buffer.limit(buffer.position() + remaining.toInt())
+        }
+
+        var total = 0
+        try {
+            while (buffer.hasRemaining()) {
+                val read = channel.read(buffer)
+                if (read < 0) {
+                    // the file is shorter than its header says
+                    remaining = 0
+                    break
+                }
+                total += read
+                remaining -= read
+            }
+        } finally {
+            buffer.limit(limit)
+        }
+        return if (total == 0) -1 else total
+    }
+
+    override fun close() {
+        input.close()
+    }
+
+    /**
+     * Positions the channel at the start of the data chunk.
+     *
+     * @return the size of the data chunk
+     */
+    private fun findData(fileLength: Long): Long {
+        val header = ByteBuffer.allocate(RIFF_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+
+        readHeader(header, RIFF_HEADER_SIZE)
+        if (header.getInt(0) != RIFF || header.getInt(8) != WAVE) {
+            throw IOException("not a WAV file")
+        }
+
+        while (true) {
+            readHeader(header, CHUNK_HEADER_SIZE)
+            val id = header.getInt(0)
+            val size = header.getInt(4).toLong() and 0xFFFFFFFFL
+            val start = channel.position()
+
+            if (id == DATA) {
+                return if (size == 0L || start + size > fileLength) fileLength - start else size
+            }
+            // chunks are padded to an even size
+            channel.position(start + size + (size and 1))
+        }
+    }
+
+    private fun readHeader(header: ByteBuffer, size: Int) {
+        header.clear().limit(size)
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                throw EOFException("WAV header incomplete")
+            }
+        }
+    }
+
+    companion object {
+        private const val RIFF_HEADER_SIZE = 12
+        private const val CHUNK_HEADER_SIZE = 8
+
+        // chunk ids as little-endian ints
+        private const val RIFF = 0x46464952
+        private const val WAVE = 0x45564157
+        private const val DATA = 0x61746164
+    }
+}
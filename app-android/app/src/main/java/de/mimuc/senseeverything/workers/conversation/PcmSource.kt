@@ -0,0 +1,26 @@
+package de.mimuc.senseeverything.workers.conversation
+
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+
+/**
+ * 16 kHz mono 16-bit little-endian PCM of a recording, read block by block.
+ */
+interface PcmSource : Closeable {
+    /**
+     * Reads the next bytes into [buffer] up to its limit.
+     *
+     * @return the number of bytes read, less than the space in [buffer] only at the end of the data
+     * or if it has no room for a whole sample, -1 if no data is left
+     */
+    @Throws(IOException::class)
+    fun read(buffer: ByteBuffer): Int
+}
+
+/**
+ * Opens a recording as WAV file or, by its extension, in the [LosslessAudioOutputStream] format.
+ */
+fun openPcmSource(file: File): PcmSource =
+    if (file.name.endsWith(LosslessAudioOutputStream.EXTENSION)) LosslessAudioSource(file) else PcmFrameSource(file)
@@ -0,0 +1,74 @@
+package de.mimuc.senseeverything.workers.conversation
+
+import com.konovalov.vad.webrtc.VadWebRTC
+import com.konovalov.vad.webrtc.config.FrameSize
+import com.konovalov.vad.webrtc.config.Mode
+import com.konovalov.vad.webrtc.config.SampleRate
+import java.io.Closeable
+import kotlin.math.log10
+import kotlin.math.sqrt
+
+/**
+ * Decides per frame of [GATE_FRAME_SIZE] samples whether audio may contain speech and should be
+ * kept. Gates are meant to be cheap and permissive, the detectors decide afterwards.
+ */
+interface SpeechGate : Closeable {
+    /**
+     * @param frame 16-bit little-endian PCM, reused for the next frame
+     */
+    fun isOpen(frame: ByteArray): Boolean
+
+    override fun close() {}
+}
+
+/**
+ * Opens when the level of a frame is above [thresholdDbfs].
+ */
+class EnergyGate(private val thresholdDbfs: Double = DEFAULT_THRESHOLD_DBFS) : SpeechGate {
+    override fun isOpen(frame: ByteArray): Boolean {
+        var sum = 0.0
+        for (i in 0 until frame.size - 1 step 2) {
+            val sample = (frame[i].toInt() and 0xFF) or (frame[i + 1].toInt() shl 8)
+            sum += sample.toDouble() * sample
+        }
+
+        val rms = sqrt(sum / (frame.size / 2))
+        return 20 * log10(rms / Short.MAX_VALUE) > thresholdDbfs
+    }
+
+    companion object {
+        const val DEFAULT_THRESHOLD_DBFS = -40.0
+    }
+}
+
+/**
+ * Opens on frames the WebRTC VAD classifies as speech, in its least aggressive mode.
+ */
+class WebRTCGate : SpeechGate {
+    private val vad = VadWebRTC(
+        sampleRate = SampleRate.SAMPLE_RATE_16K,
+        frameSize = FrameSize.FRAME_SIZE_320,
+        mode = Mode.NORMAL,
+        silenceDurationMs = 0,
+        speechDurationMs = 0
+    )
+
+    override fun isOpen(frame: ByteArray): Boolean = vad.isSpeech(frame)
+
+    override fun close() = vad.close()
+}
+
+const val GATE_FRAME_SIZE = 320
+
+const val SPEECH_GATE_ENERGY = "energy"
+const val SPEECH_GATE_WEBRTC = "webrtc"
+
+/**
+ * @param mode [SPEECH_GATE_ENERGY], [SPEECH_GATE_WEBRTC] or `null`
+ * @return the gate, `null` if recordings are not gated
+ */
+fun createSpeechGate(mode: String?): SpeechGate? = when (mode) {
+    SPEECH_GATE_ENERGY -> EnergyGate()
+    SPEECH_GATE_WEBRTC -> WebRTCGate()
+    else -> null
+}
@@ -0,0 +1,93 @@
+package de.mimuc.senseeverything.workers.conversation
+
+import java.io.OutputStream
+
+/**
+ * Passes only the audio around speech on to [out]. Captured PCM is kept in a pre-roll ring buffer
+ * of [preRollMs]. When [gate] opens, the buffered audio is written, followed by everything captured
+ * until the gate stayed closed for [hangoverMs]. Then capturing goes back to the ring buffer.
+ *
+ * [capturedBytes] and [writtenBytes] show how much of a session was kept.
+ */
+class SpeechGatedWriter @JvmOverloads constructor(
+    private val out: OutputStream,
+    private val gate: SpeechGate,
+    preRollMs: Int = DEFAULT_PRE_ROLL_MS,
+    hangoverMs: Int = DEFAULT_HANGOVER_MS
+) {
+    private val splitter = FrameSplitter(FRAME_BYTES, ::onFrame)
+
+    private val preRoll = ByteArray(preRollMs / FRAME_MS * FRAME_BYTES)
+    private var preRollStart = 0
+    private var preRollLength = 0
+
+    private val hangoverFrames = hangoverMs / FRAME_MS
+    private var framesLeft = 0
+
+    var capturedBytes = 0L
+        private set
+
+    var writtenBytes = 0L
+        private set
+
+    /**
+     * Most bytes a single [write] of [length] bytes can pass on to [out].
+     */
+    fun maxWrite(length: Int): Int = preRoll.size + length + FRAME_BYTES
+
+    fun write(data: ByteArray, offset: Int, length: Int) {
+        capturedBytes += length
+        splitter.write(data, offset, length)
+    }
+
+    private fun onFrame(frame: ByteArray) {
+        if (gate.isOpen(frame)) {
+            if (framesLeft == 0) {
+                flushPreRoll()
+            }
+            framesLeft = hangoverFrames + 1
+        }
+
+        if (framesLeft > 0) {
+            out.write(frame)
+            writtenBytes += frame.size
+            framesLeft--
+        } else {
+            keep(frame)
+        }
+    }
+
+    private fun keep(frame: ByteArray) {
+        if (preRoll.isEmpty()) {
+            return
+        }
+
+        // frames fill the ring exactly, so a frame never wraps around
+        val end = (preRollStart + preRollLength) % preRoll.size
+        System.arraycopy(frame, 0, preRoll, end, frame.size)
+        if (preRollLength == preRoll.size) {
+            preRollStart = (preRollStart + frame.size) % preRoll.size
+        } else {
+            preRollLength += frame.size
+        }
+    }
+
+    private fun flushPreRoll() {
+        val first = minOf(preRollLength, preRoll.size - preRollStart)
+        out.write(preRoll, preRollStart, first)
+        out.write(preRoll, 0, preRollLength - first)
+        writtenBytes += preRollLength
+
+        preRollStart = 0
+        preRollLength = 0
+    }
+
+    companion object {
+        const val DEFAULT_PRE_ROLL_MS = 3000
+        const val DEFAULT_HANGOVER_MS = 1000
+
+        // 16 kHz
+        private const val FRAME_MS = GATE_FRAME_SIZE / 16
+        private const val FRAME_BYTES = GATE_FRAME_SIZE * 2
+    }
+}
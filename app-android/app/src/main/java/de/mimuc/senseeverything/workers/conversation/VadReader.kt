@@ -6,7 +6,11 @@ import android.util.Log
 abstract class VadReader {
     open val TAG = "VadReader"
 
-    abstract fun detect(path: String, context: Context): List<AudioSegment>
+    /**
+     * Opens a detector that is fed 16 kHz mono 16-bit PCM, either from a recording while it is
+     * captured or from a file by the [ConversationDetectionEngine].
+     */
+    abstract fun open(context: Context): VadStream
 
     companion object {
         fun calculateSpeechPercentage(segments: List<AudioSegment>): Double {
@@ -41,4 +45,4 @@ abstract class VadReader {
         val hasSpeech: Boolean,
         val label: String = ""
     )
-}
\ No newline at end of file
+}
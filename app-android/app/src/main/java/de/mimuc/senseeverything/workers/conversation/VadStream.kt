@@ -0,0 +1,53 @@
+package de.mimuc.senseeverything.workers.conversation
+
+import de.mimuc.senseeverything.workers.conversation.VadReader.AudioSegment
+import java.io.Closeable
+
+/**
+ * A detector of a [VadReader] that is fed a recording while it is captured. PCM is written in any
+ * chunk size and split into frames of [frameSize] samples, every frame is classified and added to
+ * alternating speech and non-speech segments.
+ */
+abstract class VadStream(frameSize: Int) : Closeable {
+    private val splitter = FrameSplitter(frameSize * 2, ::onFrame)
+    private val segments = arrayListOf<AudioSegment>()
+
+    private var position = 0
+    private var currentSectionLength = 0
+    private var isSpeech = false
+
+    /**
+     * Label of the last classified frame, only detectors that classify audio have one.
+     */
+    protected open val label: String = ""
+
+    /**
+     * @param frame 16-bit little-endian PCM of one frame, reused for the next frame
+     */
+    protected abstract fun isSpeech(frame: ByteArray): Boolean
+
+    fun write(data: ByteArray, offset: Int, length: Int) {
+        splitter.write(data, offset, length)
+    }
+
+    /**
+     * @return the segments of everything written so far, an incomplete last frame is left out
+     */
+    fun finish(): List<AudioSegment> {
+        segments.add(AudioSegment(position, currentSectionLength, isSpeech))
+        return segments
+    }
+
+    private fun onFrame(frame: ByteArray) {
+        val speech = isSpeech(frame)
+        if (speech != isSpeech) {
+            // the section before this frame ends
+            segments.add(AudioSegment(position, currentSectionLength, isSpeech, label))
+            currentSectionLength = 0
+        }
+
+        currentSectionLength += frame.size
+        isSpeech = speech
+        position += frame.size
+    }
+}
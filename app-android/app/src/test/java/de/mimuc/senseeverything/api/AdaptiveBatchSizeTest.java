@@ -0,0 +1,88 @@
+package de.mimuc.senseeverything.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptiveBatchSizeTest {
+    @Test
+    public void clampsInitialSize() {
+        assertEquals(AdaptiveBatchSize.MIN_SIZE, new AdaptiveBatchSize(1).get());
+        assertEquals(AdaptiveBatchSize.MAX_SIZE, new AdaptiveBatchSize(Integer.MAX_VALUE).get());
+    }
+
+    @Test
+    public void growsWhileAcknowledgedInTime() {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(AdaptiveBatchSize.DEFAULT_SIZE);
+
+        size.onAcknowledged(200, 500);
+        assertEquals(200 + AdaptiveBatchSize.INCREASE, size.get());
+        size.onAcknowledged(400, 900);
+        assertEquals(200 + 2 * AdaptiveBatchSize.INCREASE, size.get());
+    }
+
+    @Test
+    public void halvesOnSlowAcknowledgementOrFailure() {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(1000);
+
+        size.onAcknowledged(1000, AdaptiveBatchSize.TARGET_LATENCY_MS + 1);
+        assertEquals(500, size.get());
+        size.onFailure();
+        assertEquals(250, size.get());
+        for (int i = 0; i < 10; i++) {
+            size.onFailure();
+        }
+        assertEquals(AdaptiveBatchSize.MIN_SIZE, size.get());
+    }
+
+    @Test
+    public void keepsSizeAfterSmallBatch() {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(1000);
+
+        // the end of the backlog
+        size.onAcknowledged(100, 50);
+        assertEquals(1000, size.get());
+    }
+
+    @Test
+    public void stopsGrowingWhenThroughputDrops() {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(1000);
+
+        size.onAcknowledged(1000, 1000);
+        assertEquals(1200, size.get());
+        // half the readings per second of the previous batch
+        size.onAcknowledged(1200, 2400);
+        assertEquals(1200, size.get());
+    }
+
+    /**
+     * Simulates a link with a fixed round trip and bandwidth, the size has to settle where batches
+     * are acknowledged around the latency target.
+     */
+    @Test
+    public void settlesBelowLatencyTargetOnSlowLink() {
+        long roundTripMs = 200;
+        long readingsPerSecond = 1000;
+        AdaptiveBatchSize size = new AdaptiveBatchSize(AdaptiveBatchSize.DEFAULT_SIZE);
+
+        long slow = 0;
+        long total = 0;
+        for (int batch = 0; batch < 200; batch++) {
+            int readings = size.get();
+            long latencyMs = roundTripMs + readings * 1000 / readingsPerSecond;
+            if (batch >= 50) {
+                total += readings;
+                if (latencyMs > AdaptiveBatchSize.TARGET_LATENCY_MS) {
+                    slow++;
+                }
+            }
+            size.onAcknowledged(readings, latencyMs);
+        }
+
+        // the size probes the target now and then, but mostly stays below it
+        assertTrue("slow batches: " + slow, slow <= 150 / 5);
+        // and does not fall back to small batches with mostly round trip
+        assertTrue("mean size: " + total / 150, total / 150 >= 1500);
+    }
+}
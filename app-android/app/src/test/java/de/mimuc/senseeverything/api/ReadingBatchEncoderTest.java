@@ -0,0 +1,221 @@
+package de.mimuc.senseeverything.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class ReadingBatchEncoderTest {
+    // the batch the backend tests decode
+    private static final String BACKEND_VECTOR = "U1JCMQMAC0F1ZGlvIExldmVsAwHQD9AP0A8AAzEyMAACLTcAAzAwNwANU2NyZWVuIE9uL09mZgMB2g+uF8gBAAJPTgADT0ZGBwAPUmluZ3RvbmUgVm9sdW1lAgCYKmMGCQ==";
+
+    @Test
+    public void encodesBackendVector() throws IOException {
+        List<Reading> readings = new ArrayList<>();
+        readings.add(new Reading("Audio Level", 1000, "120"));
+        readings.add(new Reading("Screen On/Off", 1005, "ON"));
+        readings.add(new Reading("Audio Level", 2000, "-7"));
+        readings.add(new Reading("Screen On/Off", 2500, "OFF"));
+        readings.add(new Reading("Screen On/Off", 2600, "ON"));
+        readings.add(new Reading("Ringtone Volume", 2700, "3"));
+        readings.add(new Reading("Ringtone Volume", 2650, "-5"));
+        readings.add(new Reading("Audio Level", 3000, "007"));
+
+        assertEquals(BACKEND_VECTOR, Base64.getEncoder().encodeToString(encode(readings)));
+    }
+
+    @Test
+    public void recognizesIntegersThatSurviveParsing() {
+        assertTrue(ReadingBatchEncoder.isInteger("0"));
+        assertTrue(ReadingBatchEncoder.isInteger("-12"));
+        assertTrue(ReadingBatchEncoder.isInteger("999999999999999"));
+
+        assertFalse(ReadingBatchEncoder.isInteger(""));
+        assertFalse(ReadingBatchEncoder.isInteger("-"));
+        assertFalse(ReadingBatchEncoder.isInteger("-0"));
+        assertFalse(ReadingBatchEncoder.isInteger("007"));
+        assertFalse(ReadingBatchEncoder.isInteger("1.5"));
+        assertFalse(ReadingBatchEncoder.isInteger("+1"));
+        assertFalse(ReadingBatchEncoder.isInteger("1000000000000000"));
+    }
+
+    @Test
+    public void roundTripsRandomReadings() throws IOException {
+        Random random = new Random(1);
+        // several blocks and more distinct strings than fit into the dictionary
+        List<Reading> readings = randomReadings(random, 3 * ReadingBatchEncoder.BLOCK_SIZE + 17, 2 * ReadingBatchEncoder.MAX_DICTIONARY_SIZE);
+
+        List<Reading> decoded = decode(encode(readings));
+
+        assertEquals(readings.size(), decoded.size());
+        assertTrue(decoded.containsAll(readings));
+        // grouping reorders readings only within a block
+        for (int block = 0; block < readings.size(); block += ReadingBatchEncoder.BLOCK_SIZE) {
+            int end = Math.min(readings.size(), block + ReadingBatchEncoder.BLOCK_SIZE);
+            assertTrue(decoded.subList(block, end).containsAll(readings.subList(block, end)));
+        }
+    }
+
+    @Test
+    public void encodesNullsAsEmptyStrings() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReadingBatchEncoder encoder = new ReadingBatchEncoder(out);
+        encoder.add(null, 5, null);
+        encoder.finish();
+
+        assertEquals(Collections.singletonList(new Reading("", 5, "")), decode(out.toByteArray()));
+    }
+
+    @Test
+    public void encodesEmptyBatchAsMagicOnly() throws IOException {
+        assertEquals("SRB1", new String(encode(new ArrayList<>()), StandardCharsets.US_ASCII));
+    }
+
+    private static final class Reading {
+        final String sensorType;
+        final long timestamp;
+        final String data;
+
+        Reading(String sensorType, long timestamp, String data) {
+            this.sensorType = sensorType;
+            this.timestamp = timestamp;
+            this.data = data;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Reading)) {
+                return false;
+            }
+            Reading other = (Reading) o;
+            return sensorType.equals(other.sensorType) && timestamp == other.timestamp && data.equals(other.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return sensorType.hashCode() * 31 + Long.hashCode(timestamp) * 17 + data.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return sensorType + "|" + timestamp + "|" + data;
+        }
+    }
+
+    // a few sensors with integer values, with repeated states, and with mostly unique strings
+    private static List<Reading> randomReadings(Random random, int count, int distinctStrings) {
+        String[] states = {"ON", "OFF", "UNLOCKED", "LOCKED"};
+        List<Reading> readings = new ArrayList<>();
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            timestamp += random.nextInt(500);
+            switch (random.nextInt(4)) {
+                case 0:
+                    readings.add(new Reading("Audio Level", timestamp, Integer.toString(random.nextInt(200) - 100)));
+                    break;
+                case 1:
+                    readings.add(new Reading("Screen On/Off", timestamp, states[random.nextInt(states.length)]));
+                    break;
+                case 2:
+                    readings.add(new Reading("Notifications", timestamp, "notification " + random.nextInt(distinctStrings) + ",com.example.app,\u00fc"));
+                    break;
+                default:
+                    // later in the block than readings of other sensors
+                    readings.add(new Reading("Light", timestamp - random.nextInt(1000), random.nextInt(1000) + "." + random.nextInt(10)));
+                    break;
+            }
+        }
+        return readings;
+    }
+
+    private static byte[] encode(List<Reading> readings) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReadingBatchEncoder encoder = new ReadingBatchEncoder(out);
+        for (Reading reading : readings) {
+            encoder.add(reading.sensorType, reading.timestamp, reading.data);
+        }
+        encoder.finish();
+        return out.toByteArray();
+    }
+
+    // mirrors ReadingBatchDecoder in the backend
+    private static List<Reading> decode(byte[] bytes) {
+        assertEquals("SRB1", new String(bytes, 0, 4, StandardCharsets.US_ASCII));
+        Reader reader = new Reader(bytes, 4);
+        List<String> dictionary = new ArrayList<>();
+        List<Reading> readings = new ArrayList<>();
+
+        while (reader.position < bytes.length) {
+            long groups = reader.readVarint();
+            for (int group = 0; group < groups; group++) {
+                String sensorType = reader.readString(dictionary);
+                int count = (int) reader.readVarint();
+                int column = bytes[reader.position++];
+
+                long[] timestamps = new long[count];
+                long timestamp = 0;
+                for (int i = 0; i < count; i++) {
+                    timestamp += reader.readZigzag();
+                    timestamps[i] = timestamp;
+                }
+                for (int i = 0; i < count; i++) {
+                    String data = column == ReadingBatchEncoder.COLUMN_INTEGER
+                            ? Long.toString(reader.readZigzag())
+                            : reader.readString(dictionary);
+                    readings.add(new Reading(sensorType, timestamps[i], data));
+                }
+            }
+        }
+        return readings;
+    }
+
+    private static class Reader {
+        final byte[] bytes;
+        int position;
+
+        Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = bytes[position++] & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        long readZigzag() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString(List<String> dictionary) {
+            int reference = (int) readVarint();
+            if (reference == ReadingBatchEncoder.STRING_NEW || reference == ReadingBatchEncoder.STRING_LITERAL) {
+                int length = (int) readVarint();
+                String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+                position += length;
+                if (reference == ReadingBatchEncoder.STRING_NEW) {
+                    dictionary.add(value);
+                }
+                return value;
+            }
+            return dictionary.get(reference - 2);
+        }
+    }
+}
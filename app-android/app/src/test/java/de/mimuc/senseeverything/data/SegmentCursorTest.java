@@ -0,0 +1,142 @@
+package de.mimuc.senseeverything.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class SegmentCursorTest {
+    @Test
+    public void readsReadingsAndMotionChunks() throws IOException {
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        writeReading(segment, 1000, "Screen", "ON", null);
+        writeMotionChunk(segment, 2000, "Accelerometer", new byte[]{1, 2, 3}, 3);
+
+        try (SegmentCursor cursor = new SegmentCursor(write(segment), 0)) {
+            assertTrue(cursor.next());
+            assertFalse(cursor.isMotionChunk());
+            assertEquals(1000, cursor.getTimestamp());
+            assertEquals("Screen", cursor.getSensorName());
+            assertEquals("ON", cursor.getData());
+            assertNull(cursor.getFilePath());
+
+            assertTrue(cursor.next());
+            assertTrue(cursor.isMotionChunk());
+            assertEquals(2000, cursor.getTimestamp());
+            assertArrayEquals(new byte[]{1, 2, 3}, cursor.getMotionChunk().samples);
+
+            assertFalse(cursor.next());
+            assertEquals(segment.size(), cursor.position());
+        }
+    }
+
+    @Test
+    public void skipsRecordsWithFieldsOutsideOfThem() throws IOException {
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        // a string longer than the record
+        ByteBuffer record = record(1 + 8 + 4);
+        record.put(SegmentLogSensorReadingStore.RECORD_READING).putLong(1000).putInt(100);
+        segment.write(record.array());
+        writeReading(segment, 2000, "Screen", "OFF", null);
+        // a negative string length other than the one for null
+        record = record(1 + 8 + 4);
+        record.put(SegmentLogSensorReadingStore.RECORD_READING).putLong(3000).putInt(-7);
+        segment.write(record.array());
+        // a negative number of samples
+        writeMotionChunk(segment, 4000, "Gyroscope", new byte[4], -4);
+        writeReading(segment, 5000, "Screen", "ON", null);
+
+        try (SegmentCursor cursor = new SegmentCursor(write(segment), 0)) {
+            assertTrue(cursor.next());
+            assertEquals(2000, cursor.getTimestamp());
+            assertTrue(cursor.next());
+            assertEquals(5000, cursor.getTimestamp());
+            assertFalse(cursor.next());
+
+            assertEquals(3, cursor.getSkippedRecords());
+            assertEquals(segment.size(), cursor.position());
+        }
+    }
+
+    @Test
+    public void stopsBeforeRecordCutOffAtEnd() throws IOException {
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        writeReading(segment, 1000, "Screen", "ON", null);
+        int complete = segment.size();
+        writeReading(segment, 2000, "Screen", "OFF", null);
+        File file = write(segment);
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(segment.size() - 3);
+        }
+
+        try (SegmentCursor cursor = new SegmentCursor(file, 0)) {
+            assertTrue(cursor.next());
+            assertFalse(cursor.next());
+            assertEquals(complete, cursor.position());
+            assertEquals(0, cursor.getSkippedRecords());
+        }
+    }
+
+    private static void writeReading(ByteArrayOutputStream out, long timestamp, String sensorName, String data, String filePath) throws IOException {
+        byte[] name = encode(sensorName);
+        byte[] value = encode(data);
+        byte[] path = encode(filePath);
+
+        ByteBuffer record = record(1 + 8 + stringSize(name) + stringSize(value) + 1 + stringSize(path));
+        record.put(SegmentLogSensorReadingStore.RECORD_READING).putLong(timestamp);
+        putString(record, name);
+        putString(record, value);
+        record.put((byte) 0);
+        putString(record, path);
+        out.write(record.array());
+    }
+
+    private static void writeMotionChunk(ByteArrayOutputStream out, long timestamp, String sensorName, byte[] samples, int samplesLength) throws IOException {
+        byte[] name = encode(sensorName);
+
+        ByteBuffer record = record(1 + stringSize(name) + 8 + 8 + 4 + 4 + 4 + 4 + samples.length);
+        record.put(SegmentLogSensorReadingStore.RECORD_MOTION_CHUNK);
+        putString(record, name);
+        record.putLong(timestamp).putLong(timestamp + 100).putInt(1).putInt(3).putInt(1).putInt(samplesLength).put(samples);
+        out.write(record.array());
+    }
+
+    private static ByteBuffer record(int length) {
+        return ByteBuffer.allocate(4 + length).order(ByteOrder.LITTLE_ENDIAN).putInt(length);
+    }
+
+    private static byte[] encode(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int stringSize(byte[] value) {
+        return 4 + (value != null ? value.length : 0);
+    }
+
+    private static void putString(ByteBuffer out, byte[] value) {
+        if (value == null) {
+            out.putInt(-1);
+            return;
+        }
+        out.putInt(value.length).put(value);
+    }
+
+    private static File write(ByteArrayOutputStream segment) throws IOException {
+        File file = Files.createTempFile("segment", ".bin").toFile();
+        file.deleteOnExit();
+        Files.write(file.toPath(), segment.toByteArray());
+        return file;
+    }
+}
@@ -0,0 +1,70 @@
+package de.mimuc.senseeverything.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class SegmentManifestTest {
+    @Test
+    public void continuesAfterAllSegments() throws IOException {
+        SegmentManifest manifest = new SegmentManifest(newDirectory());
+        assertEquals(1, manifest.nextSequence());
+
+        assertTrue(manifest.sealedFile(2).createNewFile());
+        assertTrue(manifest.openFile(4).createNewFile());
+        assertEquals(5, manifest.nextSequence());
+    }
+
+    @Test
+    public void doesNotReuseSequenceOfLeftoverOffset() throws IOException {
+        SegmentManifest manifest = new SegmentManifest(newDirectory());
+        assertTrue(manifest.sealedFile(3).createNewFile());
+        manifest.setUploadedOffset(3, 100);
+
+        // the segment is gone, but deleting its offset failed
+        assertTrue(manifest.sealedFile(3).delete());
+
+        assertEquals(4, manifest.nextSequence());
+        assertEquals(0, manifest.uploadedOffset(manifest.nextSequence()));
+    }
+
+    @Test
+    public void deletesSealedSegmentWithItsOffset() throws IOException {
+        SegmentManifest manifest = new SegmentManifest(newDirectory());
+        assertTrue(manifest.sealedFile(1).createNewFile());
+        manifest.setUploadedOffset(1, 100);
+        assertTrue(manifest.openFile(2).createNewFile());
+
+        assertTrue(manifest.delete(1));
+        assertTrue(manifest.delete(2));
+
+        assertEquals(0, manifest.uploadedOffset(1));
+        assertTrue(manifest.sealedSegments().isEmpty());
+        // the open segment belongs to the process writing it
+        assertEquals(Arrays.asList(2L), manifest.openSegments());
+    }
+
+    @Test
+    public void sealsOpenSegment() throws IOException {
+        SegmentManifest manifest = new SegmentManifest(newDirectory());
+        assertTrue(manifest.openFile(1).createNewFile());
+
+        assertTrue(manifest.seal(1));
+
+        assertFalse(manifest.openFile(1).exists());
+        assertEquals(Arrays.asList(1L), manifest.sealedSegments());
+    }
+
+    private static File newDirectory() throws IOException {
+        File directory = Files.createTempDirectory("segments").toFile();
+        directory.deleteOnExit();
+        return directory;
+    }
+}
@@ -0,0 +1,101 @@
+package de.mimuc.senseeverything.helpers;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ReadingFormatterTest {
+    // the formats ReadingFormatter replaced
+    private static SimpleDateFormat timestampFormat() {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+    }
+
+    private static DecimalFormat numberFormat() {
+        return new DecimalFormat("0.######", DecimalFormatSymbols.getInstance(Locale.US));
+    }
+
+    @Test
+    public void formatsTimestampsLikeSimpleDateFormat() {
+        SimpleDateFormat expected = timestampFormat();
+        Random random = new Random(1);
+        long millis = 1_700_000_000_000L;
+        for (int i = 0; i < 10_000; i++) {
+            // mostly close together like readings, sometimes hours or days apart
+            millis += random.nextInt(10) == 0 ? random.nextInt(100_000_000) : random.nextInt(5000);
+            assertEquals(expected.format(new Date(millis)), ReadingFormatter.get().appendTimestamp(millis).toString());
+        }
+    }
+
+    @Test
+    public void formatsNumbersLikeDecimalFormat() {
+        DecimalFormat expected = numberFormat();
+        double[] values = {0, 1, -1, 0.5, -0.5, 9.81, -9.806650, 0.000001, 0.0000004, 123456.789012, 1e11 + 0.25};
+        for (double value : values) {
+            assertEquals(expected.format(value), ReadingFormatter.get().append(value).toString());
+        }
+        // unlike DecimalFormat, without a sign when rounded to zero
+        assertEquals("0", ReadingFormatter.get().append(-0.0000004).toString());
+        assertEquals("1.0E12", ReadingFormatter.get().append(1e12).toString());
+        assertEquals("NaN", ReadingFormatter.get().append(Double.NaN).toString());
+    }
+
+    @Test
+    public void keepsOuterReadingOnNestedUse() {
+        Object nested = new Object() {
+            @Override
+            public String toString() {
+                return ReadingFormatter.get().append("inner").append(1).toString();
+            }
+        };
+
+        String reading = ReadingFormatter.get().append("outer,").append(nested).append(',').append(2).toString();
+
+        assertEquals("outer,inner1,2", reading);
+        // the thread's formatter is usable again afterwards
+        assertEquals("3", ReadingFormatter.get().append(3).toString());
+    }
+
+    @Test
+    public void formatsConcurrentlyWithoutInterference() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                results.add(executor.submit((Callable<Integer>) () -> {
+                    SimpleDateFormat dates = timestampFormat();
+                    DecimalFormat numbers = numberFormat();
+                    Random random = new Random(seed);
+                    int checked = 0;
+                    for (int i = 0; i < 20_000; i++) {
+                        long millis = 1_700_000_000_000L + random.nextInt(Integer.MAX_VALUE);
+                        double value = random.nextGaussian() * 10;
+                        String expected = dates.format(new Date(millis)) + "," + numbers.format(value);
+                        assertEquals(expected, ReadingFormatter.get().appendTimestamp(millis).append(',').append(value).toString());
+                        checked++;
+                    }
+                    return checked;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(20_000, (int) result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package de.mimuc.senseeverything.sensor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class FFTTest {
+	@Test
+	public void matchesDiscreteFourierTransform() {
+		Random random = new Random(1);
+		for (int size = 2; size <= 256; size *= 2) {
+			FFT fft = new FFT(size);
+			double[] re = new double[size];
+			double[] im = new double[size];
+			for (int i = 0; i < size; i++) {
+				re[i] = fft.re[i] = random.nextGaussian();
+				im[i] = fft.im[i] = random.nextGaussian();
+			}
+
+			fft.transform();
+
+			for (int k = 0; k < size; k++) {
+				double expectedRe = 0;
+				double expectedIm = 0;
+				for (int n = 0; n < size; n++) {
+					double angle = -2 * Math.PI * k * n / size;
+					expectedRe += re[n] * Math.cos(angle) - im[n] * Math.sin(angle);
+					expectedIm += re[n] * Math.sin(angle) + im[n] * Math.cos(angle);
+				}
+				assertEquals(expectedRe, fft.re[k], 1e-9);
+				assertEquals(expectedIm, fft.im[k], 1e-9);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsSizeThatIsNoPowerOfTwo() {
+		new FFT(96);
+	}
+}
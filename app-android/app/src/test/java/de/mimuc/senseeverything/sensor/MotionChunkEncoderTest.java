@@ -0,0 +1,173 @@
+package de.mimuc.senseeverything.sensor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Base64;
+import java.util.Random;
+
+public class MotionChunkEncoderTest {
+	// the vector the backend tests decode, four samples with three channels, the last two unreliable
+	private static final String BACKEND_VECTOR = "BCgAAgMCAAI/wAAAwAAAAEEcAAA2g6A+APgZ/TA=";
+
+	@Test
+	public void encodesBackendVector() {
+		long[] timestamps = {1000, 1020, 1040, 1061};
+		float[] values = {1.5f, -2f, 9.75f, 1.5f, -2f, 9.5f, 0.5f, 0f, -1f, 0.5f, 0f, -1f};
+		byte[] accuracies = {3, 3, 0, 0};
+
+		byte[] encoded = new MotionChunkEncoder(3).encode(timestamps, values, accuracies, 4);
+
+		assertEquals(BACKEND_VECTOR, Base64.getEncoder().encodeToString(encoded));
+	}
+
+	@Test
+	public void roundTripsRandomChunks() {
+		Random random = new Random(42);
+		MotionChunkEncoder encoder = new MotionChunkEncoder(3);
+
+		// the encoder is reused between chunks like in MotionSampleBuffer
+		for (int chunk = 0; chunk < 20; chunk++) {
+			int count = 1 + random.nextInt(MotionSampleBuffer.CHUNK_SIZE);
+			Trace trace = Trace.random(random, count, 3);
+
+			byte[] encoded = encoder.encode(trace.timestamps, trace.values, trace.accuracies, count);
+			Trace decoded = decode(encoded, trace.timestamps[0], 3);
+
+			assertArrayEquals(trace.timestamps, decoded.timestamps);
+			assertArrayEquals(trace.accuracies, decoded.accuracies);
+			for (int i = 0; i < trace.values.length; i++) {
+				assertEquals(Float.floatToRawIntBits(trace.values[i]), Float.floatToRawIntBits(decoded.values[i]));
+			}
+		}
+	}
+
+	@Test
+	public void compressesRegularConstantSignal() {
+		int count = MotionSampleBuffer.CHUNK_SIZE;
+		long[] timestamps = new long[count];
+		float[] values = new float[count];
+		byte[] accuracies = new byte[count];
+		for (int i = 0; i < count; i++) {
+			timestamps[i] = 1000 + i * 200L;
+			values[i] = 42f;
+			accuracies[i] = 3;
+		}
+
+		byte[] encoded = new MotionChunkEncoder(1).encode(timestamps, values, accuracies, count);
+
+		// one byte per timestamp and one bit per repeated value
+		assertTrue(encoded.length < count + count / 8 + 16);
+	}
+
+	private static class Trace {
+		final long[] timestamps;
+		final float[] values;
+		final byte[] accuracies;
+
+		Trace(int count, int channels) {
+			timestamps = new long[count];
+			values = new float[count * channels];
+			accuracies = new byte[count];
+		}
+
+		// about 200ms sampling with jitter, a slowly moving signal with noise, rare accuracy changes
+		static Trace random(Random random, int count, int channels) {
+			Trace trace = new Trace(count, channels);
+			long timestamp = 1_700_000_000_000L + random.nextInt(1000);
+			byte accuracy = 3;
+			for (int i = 0; i < count; i++) {
+				timestamp += 195 + random.nextInt(11);
+				trace.timestamps[i] = timestamp;
+				for (int channel = 0; channel < channels; channel++) {
+					trace.values[i * channels + channel] = (float) (channel * 4.9 + Math.sin(i / 50.0) + random.nextGaussian() * 0.05);
+				}
+				if (random.nextInt(100) == 0) {
+					accuracy = (byte) random.nextInt(4);
+				}
+				trace.accuracies[i] = accuracy;
+			}
+			return trace;
+		}
+	}
+
+	// mirrors decodeGorillaChunk in the backend
+	private static Trace decode(byte[] bytes, long start, int channels) {
+		Reader reader = new Reader(bytes);
+		int count = (int) reader.readVarint();
+		Trace trace = new Trace(count, channels);
+
+		trace.timestamps[0] = start;
+		long delta = 0;
+		for (int i = 1; i < count; i++) {
+			long value = reader.readVarint();
+			delta += (value >>> 1) ^ -(value & 1);
+			trace.timestamps[i] = trace.timestamps[i - 1] + delta;
+		}
+
+		int filled = 0;
+		while (filled < count) {
+			byte accuracy = bytes[reader.position++];
+			long run = reader.readVarint();
+			for (int i = 0; i < run; i++) {
+				trace.accuracies[filled++] = accuracy;
+			}
+		}
+
+		reader.bitPosition = reader.position * 8;
+		int[] previous = new int[channels];
+		int[] leading = new int[channels];
+		int[] trailing = new int[channels];
+		for (int i = 0; i < count; i++) {
+			for (int channel = 0; channel < channels; channel++) {
+				if (i == 0) {
+					previous[channel] = (int) reader.readBits(32);
+				} else if (reader.readBits(1) == 1) {
+					if (reader.readBits(1) == 1) {
+						leading[channel] = (int) reader.readBits(5);
+						int meaningful = (int) reader.readBits(5) + 1;
+						trailing[channel] = 32 - leading[channel] - meaningful;
+					}
+					int meaningful = 32 - leading[channel] - trailing[channel];
+					previous[channel] ^= (int) (reader.readBits(meaningful) << trailing[channel]);
+				}
+				trace.values[i * channels + channel] = Float.intBitsToFloat(previous[channel]);
+			}
+		}
+		return trace;
+	}
+
+	private static class Reader {
+		final byte[] bytes;
+		int position;
+		int bitPosition;
+
+		Reader(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		long readVarint() {
+			long value = 0;
+			for (int shift = 0; ; shift += 7) {
+				int b = bytes[position++] & 0xFF;
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+		}
+
+		long readBits(int count) {
+			long value = 0;
+			for (int i = 0; i < count; i++) {
+				int bit = (bytes[bitPosition >> 3] >> (7 - (bitPosition & 7))) & 1;
+				value = value << 1 | bit;
+				bitPosition++;
+			}
+			return value;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package de.mimuc.senseeverything.sensor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.mimuc.senseeverything.data.SensorReadingStore;
+import de.mimuc.senseeverything.db.MotionChunk;
+
+public class MotionFeatureExtractorTest {
+	private static final double GRAVITY = 9.81;
+
+	@Test
+	public void storesWindowEveryHop() {
+		RecordingStore store = new RecordingStore();
+		MotionFeatureExtractor extractor = new MotionFeatureExtractor("Accelerometer", store);
+
+		long[] timestamps = feed(extractor, 0, MotionFeatureExtractor.WINDOW_SIZE - 1, 20, 0);
+		assertEquals(0, store.timestamps.size());
+
+		feed(extractor, timestamps[timestamps.length - 1] + 20, 1 + 2 * MotionFeatureExtractor.HOP_SIZE, 20, 0);
+		assertEquals(3, store.timestamps.size());
+		assertEquals("Accelerometer Features", store.sensorNames.get(0));
+		// each window starts with its first sample
+		assertEquals(0, (long) store.timestamps.get(0));
+		assertEquals(MotionFeatureExtractor.HOP_SIZE * 20L, (long) store.timestamps.get(1));
+		assertEquals(2 * MotionFeatureExtractor.HOP_SIZE * 20L, (long) store.timestamps.get(2));
+	}
+
+	@Test
+	public void describesConstantSignal() {
+		RecordingStore store = new RecordingStore();
+		MotionFeatureExtractor extractor = new MotionFeatureExtractor("Accelerometer", store);
+
+		feed(extractor, 1000, MotionFeatureExtractor.WINDOW_SIZE, 20, 0);
+
+		double[] features = store.features(0);
+		assertEquals(MotionFeatureExtractor.WINDOW_SIZE, features[0], 0);
+		assertEquals(50, features[1], 1e-6);
+		assertEquals(GRAVITY, features[2], 1e-5);
+		assertEquals(0, features[3], 1e-3);
+		assertEquals(GRAVITY * GRAVITY, features[4], 1e-3);
+		assertEquals(0, features[5], 0);
+		assertEquals(0, features[7], 0);
+	}
+
+	@Test
+	public void findsDominantFrequencyOfPeriodicSignal() {
+		RecordingStore store = new RecordingStore();
+		MotionFeatureExtractor extractor = new MotionFeatureExtractor("Accelerometer", store);
+
+		// 3 Hz sampled at 50 Hz
+		feed(extractor, 0, MotionFeatureExtractor.WINDOW_SIZE, 20, 3);
+
+		double[] features = store.features(0);
+		// the window does not end on a full period
+		assertEquals(GRAVITY, features[2], 0.05);
+		// the nearest bin, 50 Hz / 128 apart
+		assertEquals(3.125, features[6], 1e-6);
+		// 128 samples at 50 Hz are 2.54 s, about 15 crossings of the mean
+		assertEquals(15, features[5], 1);
+	}
+
+	@Test
+	public void startsOverAfterReset() {
+		RecordingStore store = new RecordingStore();
+		MotionFeatureExtractor extractor = new MotionFeatureExtractor("Accelerometer", store);
+
+		feed(extractor, 0, MotionFeatureExtractor.WINDOW_SIZE - 1, 20, 0);
+		extractor.reset();
+		feed(extractor, 100_000, MotionFeatureExtractor.WINDOW_SIZE - 1, 20, 0);
+		assertEquals(0, store.timestamps.size());
+
+		feed(extractor, 200_000, 1, 20, 0);
+		assertEquals(100_000, (long) store.timestamps.get(0));
+	}
+
+	// gravity with a unit sine of the given frequency on z
+	private static long[] feed(MotionFeatureExtractor extractor, long start, int count, long intervalMs, double frequencyHz) {
+		long[] timestamps = new long[count];
+		for (int i = 0; i < count; i++) {
+			timestamps[i] = start + i * intervalMs;
+			double z = GRAVITY + Math.sin(2 * Math.PI * frequencyHz * timestamps[i] / 1000.0);
+			extractor.add(timestamps[i], new float[]{0, 0, (float) z});
+		}
+		return timestamps;
+	}
+
+	private static class RecordingStore implements SensorReadingStore {
+		final List<Long> timestamps = new ArrayList<>();
+		final List<String> sensorNames = new ArrayList<>();
+		final List<String> data = new ArrayList<>();
+
+		@Override
+		public void append(long timestamp, String sensorName, String data, boolean hasFile, String filePath) {
+			timestamps.add(timestamp);
+			sensorNames.add(sensorName);
+			this.data.add(data);
+		}
+
+		@Override
+		public void appendMotionChunk(MotionChunk chunk) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		double[] features(int reading) {
+			String[] fields = data.get(reading).split(",");
+			double[] features = new double[fields.length];
+			for (int i = 0; i < fields.length; i++) {
+				features[i] = Double.parseDouble(fields[i]);
+			}
+			return features;
+		}
+	}
+}
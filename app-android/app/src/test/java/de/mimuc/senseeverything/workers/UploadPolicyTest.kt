@@ -0,0 +1,87 @@
+package de.mimuc.senseeverything.workers
+
+import de.mimuc.senseeverything.workers.UploadDecision.Kind
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class UploadPolicyTest {
+    private val now = 100 * HOUR_MS
+
+    private val unmetered = UploadConditions(unmetered = true, charging = false, batteryPercent = 80, powerSave = false)
+    private val metered = UploadConditions(unmetered = false, charging = false, batteryPercent = 80, powerSave = false)
+
+    private fun backlog(bytes: Long, ageMs: Long = 0) = UploadBacklog(bytes, now - ageMs)
+
+    @Test
+    fun waitsWithoutBacklog() {
+        val decision = decideUpload(UploadBacklog(0, Long.MAX_VALUE), unmetered, now)
+        assertEquals(Kind.WAIT, decision.kind)
+    }
+
+    @Test
+    fun drainsEverythingWhileChargingOnUnmeteredNetwork() {
+        val charging = UploadConditions(unmetered = true, charging = true, batteryPercent = 5, powerSave = true)
+        val decision = decideUpload(backlog(1), charging, now)
+
+        assertEquals(Kind.FULL_DRAIN, decision.kind)
+        assertEquals(Long.MAX_VALUE, decision.maxBytes)
+    }
+
+    @Test
+    fun waitsBelowThresholds() {
+        assertEquals(Kind.WAIT, decideUpload(backlog(8 * MIB - 1, 6 * HOUR_MS - 1), unmetered, now).kind)
+    }
+
+    @Test
+    fun drainsLargeOrOldBacklogOnUnmeteredNetwork() {
+        val large = decideUpload(backlog(8 * MIB), unmetered, now)
+        assertEquals(Kind.DRAIN, large.kind)
+        assertEquals(16 * MIB, large.maxBytes)
+
+        assertEquals(Kind.DRAIN, decideUpload(backlog(1, 6 * HOUR_MS), unmetered, now).kind)
+    }
+
+    @Test
+    fun waitsForUnmeteredNetworkBelowUrgentThresholds() {
+        assertEquals(Kind.WAIT, decideUpload(backlog(31 * MIB, 23 * HOUR_MS), metered, now).kind)
+    }
+
+    @Test
+    fun expeditesUrgentBacklogOnMeteredNetwork() {
+        val large = decideUpload(backlog(32 * MIB), metered, now)
+        assertEquals(Kind.EXPEDITED_DRAIN, large.kind)
+        assertEquals(2 * MIB, large.maxBytes)
+
+        val old = decideUpload(backlog(1, 24 * HOUR_MS), metered, now)
+        assertEquals(Kind.EXPEDITED_DRAIN, old.kind)
+        assertEquals(2 * MIB, old.maxBytes)
+    }
+
+    @Test
+    fun uploadsOnlyLargeBacklogOnLowBattery() {
+        val lowBattery = UploadConditions(unmetered = true, charging = false, batteryPercent = 19, powerSave = false)
+        val powerSave = UploadConditions(unmetered = true, charging = false, batteryPercent = 80, powerSave = true)
+
+        assertEquals(Kind.WAIT, decideUpload(backlog(16 * MIB, 48 * HOUR_MS), lowBattery, now).kind)
+        assertEquals(Kind.WAIT, decideUpload(backlog(16 * MIB), powerSave, now).kind)
+        assertEquals(Kind.EXPEDITED_DRAIN, decideUpload(backlog(32 * MIB), lowBattery, now).kind)
+    }
+
+    @Test
+    fun moreUrgentDrainReplacesWaitingOne() {
+        assertTrue(replacesWaitingDrain(Kind.DRAIN, Kind.FULL_DRAIN))
+        assertTrue(replacesWaitingDrain(Kind.EXPEDITED_DRAIN, Kind.FULL_DRAIN))
+        assertTrue(replacesWaitingDrain(Kind.EXPEDITED_DRAIN, Kind.DRAIN))
+
+        assertFalse(replacesWaitingDrain(Kind.FULL_DRAIN, Kind.DRAIN))
+        assertFalse(replacesWaitingDrain(Kind.DRAIN, Kind.EXPEDITED_DRAIN))
+        assertFalse(replacesWaitingDrain(Kind.DRAIN, Kind.DRAIN))
+    }
+
+    companion object {
+        private const val MIB = 1024L * 1024
+        private const val HOUR_MS = 60L * 60 * 1000
+    }
+}
@@ -0,0 +1,118 @@
+package de.mimuc.senseeverything.workers.conversation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class LosslessAudioTest {
+    private static final int SAMPLE_RATE = 16000;
+
+    @Test
+    public void roundTripsSpeechLikeAudio() throws IOException {
+        byte[] pcm = speechLike(new Random(1), 5 * SAMPLE_RATE);
+        File file = write(pcm, 1001);
+
+        assertArrayEquals(pcm, readAll(file, 4096));
+        assertTrue("compressed to " + file.length() + " bytes", file.length() < pcm.length * 3 / 4);
+    }
+
+    @Test
+    public void roundTripsNoiseAndExtremes() throws IOException {
+        Random random = new Random(2);
+        byte[] pcm = new byte[2 * (3 * LosslessAudioOutputStream.BLOCK_SIZE + 123)];
+        random.nextBytes(pcm);
+        // full-scale steps make the predictors' residuals as large as they get
+        for (int i = 0; i < 2000; i += 2) {
+            short sample = (i / 2) % 2 == 0 ? Short.MAX_VALUE : Short.MIN_VALUE;
+            pcm[i] = (byte) sample;
+            pcm[i + 1] = (byte) (sample >> 8);
+        }
+        // silence
+        Arrays.fill(pcm, 4000, 12000, (byte) 0);
+
+        // read into a buffer of odd size, so samples never line up with it
+        assertArrayEquals(pcm, readAll(write(pcm, 777), 333));
+    }
+
+    @Test
+    public void endsWithLastCompleteBlockOfTruncatedFile() throws IOException {
+        byte[] pcm = speechLike(new Random(3), 3 * LosslessAudioOutputStream.BLOCK_SIZE);
+        File file = write(pcm, 4096);
+
+        // a recording that was interrupted while the last block was written
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+            access.setLength(file.length() - 10);
+        }
+
+        byte[] read = readAll(file, 4096);
+        assertEquals(2 * 2 * LosslessAudioOutputStream.BLOCK_SIZE, read.length);
+        assertArrayEquals(Arrays.copyOf(pcm, read.length), read);
+    }
+
+    @Test
+    public void readsNothingIntoBufferWithoutRoomForSample() throws IOException {
+        File file = write(speechLike(new Random(4), 100), 200);
+
+        try (LosslessAudioSource source = new LosslessAudioSource(file)) {
+            assertEquals(SAMPLE_RATE, source.getSampleRate());
+            assertEquals(0, source.read(ByteBuffer.allocate(1)));
+            assertEquals(200, source.read(ByteBuffer.allocate(1000)));
+            assertEquals(-1, source.read(ByteBuffer.allocate(1000)));
+        }
+    }
+
+    // voiced segments of a few harmonics with noise between pauses, roughly like a conversation
+    private static byte[] speechLike(Random random, int samples) {
+        byte[] pcm = new byte[2 * samples];
+        double pitch = 140;
+        for (int i = 0; i < samples; i++) {
+            boolean voiced = (i / (SAMPLE_RATE / 4)) % 3 != 2;
+            double t = (double) i / SAMPLE_RATE;
+            double value = random.nextGaussian() * 30;
+            if (voiced) {
+                for (int harmonic = 1; harmonic <= 4; harmonic++) {
+                    value += 3000.0 / harmonic * Math.sin(2 * Math.PI * pitch * harmonic * t);
+                }
+            }
+            short sample = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        return pcm;
+    }
+
+    private static File write(byte[] pcm, int writeSize) throws IOException {
+        File file = File.createTempFile("lossless", LosslessAudioOutputStream.EXTENSION);
+        file.deleteOnExit();
+        try (LosslessAudioOutputStream out = new LosslessAudioOutputStream(new FileOutputStream(file), SAMPLE_RATE)) {
+            for (int offset = 0; offset < pcm.length; offset += writeSize) {
+                out.write(pcm, offset, Math.min(writeSize, pcm.length - offset));
+            }
+        }
+        return file;
+    }
+
+    private static byte[] readAll(File file, int bufferSize) throws IOException {
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        try (PcmSource source = PcmSourceKt.openPcmSource(file)) {
+            while (source.read(buffer) >= 0) {
+                buffer.flip();
+                pcm.write(buffer.array(), 0, buffer.limit());
+                buffer.clear();
+            }
+        }
+        return pcm.toByteArray();
+    }
+}
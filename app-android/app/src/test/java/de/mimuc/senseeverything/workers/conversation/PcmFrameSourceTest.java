@@ -0,0 +1,140 @@
+package de.mimuc.senseeverything.workers.conversation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class PcmFrameSourceTest {
+    @Test
+    public void readsDataChunkAfterOtherChunks() throws IOException {
+        byte[] pcm = randomPcm(new Random(1), 10_000);
+        ByteArrayOutputStream wav = new ByteArrayOutputStream();
+        writeRiffHeader(wav);
+        writeFmtChunk(wav);
+        // odd-sized chunks are padded to an even size
+        writeChunk(wav, "LIST", new byte[7]);
+        writeChunk(wav, "data", pcm);
+        // trailing chunk that is not PCM
+        writeChunk(wav, "id3 ", new byte[32]);
+
+        File file = write(wav.toByteArray());
+        try (PcmFrameSource source = new PcmFrameSource(file)) {
+            assertEquals(pcm.length, source.getRemaining());
+            assertArrayEquals(pcm, readAll(source, 333));
+        }
+    }
+
+    @Test
+    public void readsUnfinishedRecordingToEndOfFile() throws IOException {
+        byte[] pcm = randomPcm(new Random(2), 5000);
+
+        // the data size is only written when the recording is stopped
+        ByteArrayOutputStream unfinished = new ByteArrayOutputStream();
+        writeRiffHeader(unfinished);
+        writeFmtChunk(unfinished);
+        writeChunkHeader(unfinished, "data", 0);
+        unfinished.write(pcm);
+        try (PcmFrameSource source = new PcmFrameSource(write(unfinished.toByteArray()))) {
+            assertArrayEquals(pcm, readAll(source, 4096));
+        }
+
+        // and a size beyond the end of a file that was cut off
+        ByteArrayOutputStream truncated = new ByteArrayOutputStream();
+        writeRiffHeader(truncated);
+        writeFmtChunk(truncated);
+        writeChunkHeader(truncated, "data", 2 * pcm.length);
+        truncated.write(pcm);
+        try (PcmFrameSource source = new PcmFrameSource(write(truncated.toByteArray()))) {
+            assertArrayEquals(pcm, readAll(source, 4096));
+        }
+    }
+
+    @Test
+    public void returnsEndOnceDataIsRead() throws IOException {
+        ByteArrayOutputStream wav = new ByteArrayOutputStream();
+        writeRiffHeader(wav);
+        writeFmtChunk(wav);
+        writeChunk(wav, "data", new byte[100]);
+
+        try (PcmFrameSource source = new PcmFrameSource(write(wav.toByteArray()))) {
+            assertEquals(100, source.read(ByteBuffer.allocate(1000)));
+            assertEquals(-1, source.read(ByteBuffer.allocate(1000)));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        new PcmFrameSource(write("not a recording at all".getBytes(StandardCharsets.US_ASCII))).close();
+    }
+
+    @Test(expected = EOFException.class)
+    public void rejectsFileWithoutDataChunk() throws IOException {
+        ByteArrayOutputStream wav = new ByteArrayOutputStream();
+        writeRiffHeader(wav);
+        writeFmtChunk(wav);
+
+        new PcmFrameSource(write(wav.toByteArray())).close();
+    }
+
+    private static byte[] randomPcm(Random random, int samples) {
+        byte[] pcm = new byte[2 * samples];
+        random.nextBytes(pcm);
+        return pcm;
+    }
+
+    private static void writeRiffHeader(ByteArrayOutputStream out) throws IOException {
+        // the RIFF size is not checked
+        writeChunkHeader(out, "RIFF", 0);
+        out.write("WAVE".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeFmtChunk(ByteArrayOutputStream out) throws IOException {
+        ByteBuffer fmt = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        fmt.putShort((short) 1).putShort((short) 1).putInt(16000).putInt(32000).putShort((short) 2).putShort((short) 16);
+        writeChunk(out, "fmt ", fmt.array());
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String id, byte[] data) throws IOException {
+        writeChunkHeader(out, id, data.length);
+        out.write(data);
+        if (data.length % 2 == 1) {
+            out.write(0);
+        }
+    }
+
+    private static void writeChunkHeader(ByteArrayOutputStream out, String id, int size) throws IOException {
+        out.write(id.getBytes(StandardCharsets.US_ASCII));
+        out.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(size).array());
+    }
+
+    private static File write(byte[] bytes) throws IOException {
+        File file = File.createTempFile("recording", ".wav");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+        return file;
+    }
+
+    private static byte[] readAll(PcmSource source, int bufferSize) throws IOException {
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        while (source.read(buffer) >= 0) {
+            buffer.flip();
+            pcm.write(buffer.array(), 0, buffer.limit());
+            buffer.clear();
+        }
+        return pcm.toByteArray();
+    }
+}
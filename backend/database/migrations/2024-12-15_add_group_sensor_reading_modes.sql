@@ -0,0 +1,2 @@
+alter table study_experimental_groups
+    add column sensor_reading_modes jsonb not null default '{}';
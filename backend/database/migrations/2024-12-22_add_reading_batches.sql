@@ -0,0 +1,10 @@
+create table reading_batches
+(
+    id            serial primary key,
+    enrolment_id  integer references enrolments (id),
+    batch_id      text    not null,
+    sequence      bigint  not null,
+    reading_count integer not null,
+    created_at    timestamptz not null default now(),
+    unique (enrolment_id, batch_id)
+);
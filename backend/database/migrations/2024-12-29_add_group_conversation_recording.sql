@@ -0,0 +1,2 @@
+alter table study_experimental_groups
+    add column conversation_recording jsonb not null default '{}';
@@ -21,3 +21,15 @@ export class InvalidStudyConfigurationError extends Error {
     super(`Invalid Study Configuration: ${error}`);
   }
 }
+
+export class InvalidReadingEncodingError extends Error {
+  constructor(error: string) {
+    super(`Invalid reading encoding: ${error}`);
+  }
+}
+
+export class PayloadTooLargeError extends Error {
+  constructor(error: string) {
+    super(`Payload too large: ${error}`);
+  }
+}
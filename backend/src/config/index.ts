@@ -5,11 +5,35 @@ if (process.env.NODE_ENV === 'test') {
   dotenv.config({ path: '.test.env' });
 }
 
+const BYTE_UNITS: Record<string, number> = {
+  b: 1,
+  kb: 1024,
+  mb: 1024 ** 2,
+  gb: 1024 ** 3,
+};
+
+/**
+ * Parses a size like `10mb` the way express does for its body limits.
+ */
+export function parseByteSize(size: string): number {
+  const match = /^(\d+(?:\.\d+)?)\s*(b|kb|mb|gb)?$/i.exec(size.trim());
+  if (!match) {
+    throw new Error(`Invalid byte size ${size}`);
+  }
+  return Math.floor(
+    Number(match[1]) * BYTE_UNITS[(match[2] ?? 'b').toLowerCase()],
+  );
+}
+
 export const Config = {
   app: {
     hostname: process.env.APP_HOSTNAME || 'localhost',
     port: process.env.APP_PORT || 8080,
     uploadLocation: process.env.APP_UPLOAD_LOCATION || './uploads',
+    // applies to the decompressed size of JSON and reading batch bodies
+    maxBodySize: process.env.APP_MAX_BODY_SIZE || '10mb',
+    // binary reading batches are streamed and also limited by reading count
+    maxBatchReadings: Number(process.env.APP_MAX_BATCH_READINGS) || 1_000_000,
   },
   database: {
     connectionString: process.env.DB_CONNECTION || 'localhost:5432',
@@ -126,6 +126,8 @@ export function createEnrolmentController(
     group: StudyExperimentalGroup,
   ) => ({
     interactionWidgetStrategy: group.interactionWidgetStrategy,
+    sensorReadingModes: group.sensorReadingModes,
+    conversationRecording: group.conversationRecording,
   });
 
   const pickExperimentalGroup = async (
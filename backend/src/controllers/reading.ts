@@ -1,11 +1,26 @@
-import { Express } from 'express';
+import express, { Express } from 'express';
 import { authenticate, RequestUser } from '../middleware/authenticate';
 import { upload } from '../middleware/upload';
 import {
   ISensorReadingRepository,
+  ReadingColumns,
   SensorReading,
+  toReadingColumns,
 } from '../data/sensorReadingRepository';
 import { IEnrolmentRepository } from '../data/enrolmentRepository';
+import { expandEncodedReadings } from '../readings/motionChunk';
+import { READING_BATCH_CONTENT_TYPE } from '../readings/readingBatch';
+import { parseReadingBatch } from '../middleware/readingBatch';
+import {
+  appendChunk,
+  completeUpload,
+  FILE_CHUNK_CONTENT_TYPE,
+  getUploadOffset,
+  UploadOffsetMismatchError,
+  verifyChunkChecksum,
+} from '../readings/chunkedUpload';
+import { Config, parseByteSize } from '../config';
+import path from 'node:path';
 
 export function createReadingController(
   sensorReadingRepository: ISensorReadingRepository,
@@ -38,32 +53,113 @@ export function createReadingController(
     res.json(reading);
   });
 
-  app.post('/v1/reading/batch', authenticate, async (req, res) => {
-    if (
-      req.body.filter((r: SensorReading) => !r.sensorType || !r.data).length > 0
-    ) {
-      return res
-        .status(400)
-        .send({ error: 'Missing required fields (sensorType or data)' });
-    }
+  // JSON arrays of readings, or the binary reading batch format which is
+  // advertised with Accept-Post, decoded while it is received and answered
+  // with the count only. Either is stored with a single INSERT.
+  // Batches sent with a Batch-Id header are stored at most once, re-sending
+  // one is acknowledged without inserting its readings again.
+  app.post(
+    '/v1/reading/batch',
+    authenticate,
+    parseReadingBatch(
+      Config.app.maxBatchReadings,
+      parseByteSize(Config.app.maxBodySize),
+    ),
+    async (req, res) => {
+      res.set(
+        'Accept-Post',
+        `application/json, ${READING_BATCH_CONTENT_TYPE}`,
+      );
+      const binary = !!req.is(READING_BATCH_CONTENT_TYPE);
 
-    const enrolment = await enrolmentRepository.getEnrolmentById(
-      (req.user as RequestUser).enrolmentId,
-    );
-    if (!enrolment) {
-      return res.status(403).send({ error: 'Enrolment not found' });
-    }
+      const batchId = req.get('Batch-Id');
+      const batchSequence = Number(req.get('Batch-Sequence') ?? 0);
+      if (
+        batchId !== undefined &&
+        (batchId.length === 0 ||
+          batchId.length > 64 ||
+          !Number.isSafeInteger(batchSequence) ||
+          batchSequence < 0)
+      ) {
+        return res
+          .status(400)
+          .send({ error: 'Invalid batch (Batch-Id or Batch-Sequence)' });
+      }
 
-    try {
-      const readings = await sensorReadingRepository.createSensorReadingBatched(
-        enrolment.id,
-        req.body,
+      if (
+        !binary &&
+        req.body.filter((r: SensorReading) => !r.sensorType || !r.data).length >
+          0
+      ) {
+        return res
+          .status(400)
+          .send({ error: 'Missing required fields (sensorType or data)' });
+      }
+
+      const enrolment = await enrolmentRepository.getEnrolmentById(
+        (req.user as RequestUser).enrolmentId,
       );
-      res.json(readings);
-    } catch (e) {
-      res.status(500).send({ error: 'Error creating readings' });
-    }
-  });
+      if (!enrolment) {
+        return res.status(403).send({ error: 'Enrolment not found' });
+      }
+
+      if (binary) {
+        const columns = req.body as ReadingColumns;
+        if (
+          columns.sensorTypes.some((t) => !t) ||
+          columns.data.some((d) => !d)
+        ) {
+          return res
+            .status(400)
+            .send({ error: 'Missing required fields (sensorType or data)' });
+        }
+      }
+
+      let decoded;
+      try {
+        decoded = binary ? undefined : expandEncodedReadings(req.body);
+      } catch (e) {
+        return res.status(400).send({ error: (e as Error).message });
+      }
+
+      if (batchId !== undefined) {
+        try {
+          const stored =
+            await sensorReadingRepository.createSensorReadingBatchOnce(
+              enrolment.id,
+              { batchId, sequence: batchSequence },
+              decoded ? toReadingColumns(decoded) : req.body,
+            );
+          return res.json({
+            count: stored.batch.readingCount,
+            duplicate: stored.duplicate,
+          });
+        } catch (e) {
+          return res.status(500).send({ error: 'Error creating readings' });
+        }
+      }
+
+      try {
+        if (decoded) {
+          res.json(
+            await sensorReadingRepository.createSensorReadingBatched(
+              enrolment.id,
+              decoded,
+            ),
+          );
+        } else {
+          const count =
+            await sensorReadingRepository.createSensorReadingColumns(
+              enrolment.id,
+              req.body,
+            );
+          res.json({ count });
+        }
+      } catch (e) {
+        res.status(500).send({ error: 'Error creating readings' });
+      }
+    },
+  );
 
   app.post(
     '/v1/reading/:readingId/file',
@@ -85,5 +181,108 @@ export function createReadingController(
     },
   );
 
+  // participants only upload files of their own readings, others are
+  // reported as not found
+  const isOwnReading = async (user: RequestUser, readingId: number) => {
+    const reading =
+      await sensorReadingRepository.getSensorReadingById(readingId);
+    return reading !== null && reading.enrolmentId === user.enrolmentId;
+  };
+
+  // resumable upload of a file in chunks, so the app never has to hold the
+  // whole recording in memory: HEAD reports how much has been received,
+  // every PATCH appends a chunk at Upload-Offset until Upload-Length is reached
+  app.head('/v1/reading/:readingId/file', authenticate, async (req, res) => {
+    const readingId = parseInt(req.params.readingId);
+    if (isNaN(readingId)) {
+      return res.status(400).end();
+    }
+
+    try {
+      if (!(await isOwnReading(req.user as RequestUser, readingId))) {
+        return res.status(404).end();
+      }
+
+      const files =
+        await sensorReadingRepository.getFilesByReadingId(readingId);
+      if (files.length > 0) {
+        res.set('Upload-Complete', '?1');
+      } else {
+        res.set('Upload-Offset', (await getUploadOffset(readingId)).toString());
+      }
+      res.status(200).end();
+    } catch (e) {
+      res.status(500).end();
+    }
+  });
+
+  app.patch(
+    '/v1/reading/:readingId/file',
+    authenticate,
+    express.raw({
+      type: FILE_CHUNK_CONTENT_TYPE,
+      limit: Config.app.maxBodySize,
+    }),
+    async (req, res) => {
+      const readingId = parseInt(req.params.readingId);
+      const offset = Number(req.get('Upload-Offset'));
+      const length = Number(req.get('Upload-Length'));
+      const filename = path.basename(req.get('Upload-Filename') ?? '');
+
+      if (
+        isNaN(readingId) ||
+        !Buffer.isBuffer(req.body) ||
+        !Number.isSafeInteger(offset) ||
+        !Number.isSafeInteger(length) ||
+        offset < 0 ||
+        offset + req.body.length > length ||
+        filename.length === 0
+      ) {
+        return res.status(400).send({
+          error:
+            'Invalid chunk (Upload-Offset, Upload-Length or Upload-Filename)',
+        });
+      }
+
+      if (!verifyChunkChecksum(req.body, req.get('Upload-Checksum'))) {
+        return res.status(400).send({ error: 'Checksum mismatch' });
+      }
+
+      try {
+        if (!(await isOwnReading(req.user as RequestUser, readingId))) {
+          return res.status(404).send({ error: 'Reading not found' });
+        }
+      } catch (e) {
+        return res.status(500).send({ error: 'Error storing chunk' });
+      }
+
+      let received;
+      try {
+        received = await appendChunk(readingId, offset, req.body);
+      } catch (e) {
+        if (e instanceof UploadOffsetMismatchError) {
+          res.set('Upload-Offset', e.offset.toString());
+          return res.status(409).send({ error: e.message });
+        }
+        return res.status(500).send({ error: 'Error storing chunk' });
+      }
+
+      res.set('Upload-Offset', received.toString());
+      if (received < length) {
+        return res.status(204).end();
+      }
+
+      try {
+        const uploaded = await sensorReadingRepository.createFile(readingId, {
+          filename,
+          path: await completeUpload(readingId, filename),
+        });
+        res.json(uploaded);
+      } catch (e) {
+        res.status(500).send({ error: 'Error storing file' });
+      }
+    },
+  );
+
   console.log('loaded reading controller');
 }
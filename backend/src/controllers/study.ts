@@ -1,6 +1,11 @@
 import { Express } from 'express';
 import { authenticate, requireAdmin } from '../middleware/authenticate';
 import { IStudyRepository } from '../data/studyRepository';
+import {
+  validateConversationRecording,
+  validateSensorReadingModes,
+} from '../experiment/groups';
+import { InvalidStudyConfigurationError } from '../config/errors';
 
 export function createStudyController(
   studyRepository: IStudyRepository,
@@ -74,11 +79,29 @@ export function createStudyController(
         return res.status(404).send({ error: 'Study not found' });
       }
 
+      let sensorReadingModes;
+      let conversationRecording;
+      try {
+        sensorReadingModes = validateSensorReadingModes(
+          req.body.sensorReadingModes,
+        );
+        conversationRecording = validateConversationRecording(
+          req.body.conversationRecording,
+        );
+      } catch (e) {
+        if (e instanceof InvalidStudyConfigurationError) {
+          return res.status(400).send({ error: e.message });
+        }
+        throw e;
+      }
+
       const configuration = await studyRepository.createExperimentalGroup({
         studyId: id,
         allocation: req.body.allocation,
         internalName: req.body.internalName,
         interactionWidgetStrategy: req.body.interactionWidgetStrategy,
+        sensorReadingModes,
+        conversationRecording,
       });
       res.json(configuration);
     },
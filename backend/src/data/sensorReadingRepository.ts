@@ -12,6 +12,31 @@ export interface SensorReading {
   timestamp: string;
 }
 
+// readings as one array per column, the shape they are inserted in bulk
+export interface ReadingColumns {
+  sensorTypes: SensorType[];
+  timestamps: string[];
+  data: SensorData[];
+}
+
+export function toReadingColumns(
+  readings: Pick<SensorReading, 'sensorType' | 'timestamp' | 'data'>[],
+): ReadingColumns {
+  return {
+    sensorTypes: readings.map((r) => r.sensorType),
+    timestamps: readings.map((r) => r.timestamp),
+    data: readings.map((r) => r.data),
+  };
+}
+
+export interface ReadingBatch {
+  id: number;
+  enrolmentId: number;
+  batchId: string;
+  sequence: number;
+  readingCount: number;
+}
+
 export interface UploadFile {
   id: number;
   readingId: number;
@@ -27,13 +52,29 @@ export interface ISensorReadingRepository {
 
   createSensorReadingBatched(
     enrolmentId: number,
-    readings: Pick<SensorReading, 'sensorType' | 'data'>[],
+    readings: Pick<SensorReading, 'sensorType' | 'data' | 'timestamp'>[],
   ): Promise<SensorReading[]>;
 
+  // like createSensorReadingBatched, but only returns the number of readings
+  createSensorReadingColumns(
+    enrolmentId: number,
+    readings: ReadingColumns,
+  ): Promise<number>;
+
+  createSensorReadingBatchOnce(
+    enrolmentId: number,
+    batch: Pick<ReadingBatch, 'batchId' | 'sequence'>,
+    readings: ReadingColumns,
+  ): Promise<{ batch: ReadingBatch; duplicate: boolean }>;
+
   createFile(
     readingId: number,
     file: Pick<UploadFile, 'filename' | 'path'>,
   ): Promise<UploadFile>;
+
+  getFilesByReadingId(readingId: number): Promise<UploadFile[]>;
+
+  getSensorReadingById(id: number): Promise<SensorReading | null>;
 }
 
 export class SensorReadingRepository
@@ -60,6 +101,44 @@ export class SensorReadingRepository
     }
   }
 
+  async getSensorReadingById(id: number): Promise<SensorReading | null> {
+    try {
+      const res = await this.pool.query(
+        'SELECT * FROM sensor_readings WHERE id = $1',
+        [id],
+      );
+      if (res.rows.length === 0) {
+        return null;
+      }
+      return {
+        id: res.rows[0].id,
+        enrolmentId: res.rows[0].enrolment_id,
+        sensorType: res.rows[0].sensor_type,
+        timestamp: res.rows[0].timestamp,
+        data: res.rows[0].data,
+      };
+    } catch (e) {
+      throw new DatabaseError((e as Error).message.toString());
+    }
+  }
+
+  async getFilesByReadingId(readingId: number): Promise<UploadFile[]> {
+    try {
+      const res = await this.pool.query(
+        'SELECT * FROM upload_files WHERE reading_id = $1',
+        [readingId],
+      );
+      return res.rows.map((row) => ({
+        id: row.id,
+        readingId: row.reading_id,
+        filename: row.filename,
+        path: row.path,
+      }));
+    } catch (e) {
+      throw new DatabaseError((e as Error).message.toString());
+    }
+  }
+
   async createSensorReading(
     enrolmentId: number,
     reading: Pick<SensorReading, 'sensorType' | 'timestamp' | 'data'>,
@@ -81,27 +160,102 @@ export class SensorReadingRepository
     }
   }
 
+  // a single INSERT of all readings, passed as one array parameter per column
   async createSensorReadingBatched(
     enrolmentId: number,
     readings: Pick<SensorReading, 'sensorType' | 'timestamp' | 'data'>[],
   ): Promise<SensorReading[]> {
+    const columns = toReadingColumns(readings);
     try {
-      const batched = await Promise.all(
-        readings.map((reading) =>
-          this.pool.query(
-            'INSERT INTO sensor_readings (enrolment_id, sensor_type, timestamp, data) VALUES ($1, $2, $3, $4) RETURNING *',
-            [enrolmentId, reading.sensorType, reading.timestamp, reading.data],
-          ),
-        ),
+      const res = await this.pool.query(
+        `INSERT INTO sensor_readings (enrolment_id, sensor_type, timestamp, data)
+         SELECT $1, r.sensor_type, r.timestamp, r.data
+         FROM unnest($2::text[], $3::text[], $4::text[]) AS r (sensor_type, timestamp, data)
+         RETURNING *`,
+        [enrolmentId, columns.sensorTypes, columns.timestamps, columns.data],
       );
 
-      return batched.map((res) => ({
-        id: res.rows[0].id,
-        enrolmentId: res.rows[0].enrolment_id,
-        sensorType: res.rows[0].sensor_type,
-        timestamp: res.rows[0].timestamp,
-        data: res.rows[0].data,
-      }));
+      // RETURNING does not guarantee the order of the input
+      return res.rows
+        .sort((a, b) => a.id - b.id)
+        .map((row) => ({
+          id: row.id,
+          enrolmentId: row.enrolment_id,
+          sensorType: row.sensor_type,
+          timestamp: row.timestamp,
+          data: row.data,
+        }));
+    } catch (e) {
+      throw new DatabaseError((e as Error).message.toString());
+    }
+  }
+
+  async createSensorReadingColumns(
+    enrolmentId: number,
+    readings: ReadingColumns,
+  ): Promise<number> {
+    try {
+      const res = await this.pool.query(
+        `INSERT INTO sensor_readings (enrolment_id, sensor_type, timestamp, data)
+         SELECT $1, r.sensor_type, r.timestamp, r.data
+         FROM unnest($2::text[], $3::text[], $4::text[]) AS r (sensor_type, timestamp, data)`,
+        [enrolmentId, readings.sensorTypes, readings.timestamps, readings.data],
+      );
+      return res.rowCount ?? 0;
+    } catch (e) {
+      throw new DatabaseError((e as Error).message.toString());
+    }
+  }
+
+  // claims the batch ID and inserts the readings in one statement, so a
+  // batch is either stored completely once or, when re-sent, not at all
+  async createSensorReadingBatchOnce(
+    enrolmentId: number,
+    batch: Pick<ReadingBatch, 'batchId' | 'sequence'>,
+    readings: ReadingColumns,
+  ): Promise<{ batch: ReadingBatch; duplicate: boolean }> {
+    try {
+      const created = await this.pool.query(
+        `WITH batch AS (
+           INSERT INTO reading_batches (enrolment_id, batch_id, sequence, reading_count)
+           VALUES ($1, $2, $3, $4)
+           ON CONFLICT (enrolment_id, batch_id) DO NOTHING
+           RETURNING *
+         ), readings AS (
+           INSERT INTO sensor_readings (enrolment_id, sensor_type, timestamp, data)
+           SELECT $1, r.sensor_type, r.timestamp, r.data
+           FROM batch, unnest($5::text[], $6::text[], $7::text[]) AS r (sensor_type, timestamp, data)
+         )
+         SELECT * FROM batch`,
+        [
+          enrolmentId,
+          batch.batchId,
+          batch.sequence,
+          readings.sensorTypes.length,
+          readings.sensorTypes,
+          readings.timestamps,
+          readings.data,
+        ],
+      );
+
+      const duplicate = created.rowCount === 0;
+      const res = duplicate
+        ? await this.pool.query(
+            'SELECT * FROM reading_batches WHERE enrolment_id = $1 AND batch_id = $2',
+            [enrolmentId, batch.batchId],
+          )
+        : created;
+
+      return {
+        batch: {
+          id: res.rows[0].id,
+          enrolmentId: res.rows[0].enrolment_id,
+          batchId: res.rows[0].batch_id,
+          sequence: Number(res.rows[0].sequence),
+          readingCount: res.rows[0].reading_count,
+        },
+        duplicate,
+      };
     } catch (e) {
       throw new DatabaseError((e as Error).message.toString());
     }
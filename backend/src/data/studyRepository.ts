@@ -14,6 +14,42 @@ enum InteractionWidgetStrategy {
   Bucketed = 'Bucketed',
 }
 
+export enum SensorReadingMode {
+  Raw = 'Raw',
+  Aggregate = 'Aggregate',
+  Both = 'Both',
+}
+
+export interface SensorReadingConfiguration {
+  mode: SensorReadingMode;
+  // length of the aggregation window, the app uses 10 seconds if missing
+  // and clamps it to MIN_AGGREGATION_WINDOW_MS..MAX_AGGREGATION_WINDOW_MS
+  windowMs?: number;
+}
+
+export const MIN_AGGREGATION_WINDOW_MS = 1000;
+export const MAX_AGGREGATION_WINDOW_MS = 60 * 60 * 1000;
+
+export enum SpeechGate {
+  Energy = 'energy',
+  WebRTC = 'webrtc',
+}
+
+export enum AudioEncoding {
+  Wav = 'wav',
+  Lossless = 'lossless',
+}
+
+// how the conversation sensor records, missing fields keep the app's defaults
+export interface ConversationRecordingConfiguration {
+  // detect while recording instead of analyzing a file afterwards, the other
+  // fields only apply to recorded files
+  streamingDetection?: boolean;
+  // only keep the audio around speech, recordings are not gated if missing
+  speechGate?: SpeechGate;
+  audioEncoding?: AudioEncoding;
+}
+
 enum StudyExperimentalGroupAllocationType {
   Percentage = 'Percentage',
   Manual = 'Manual',
@@ -37,6 +73,9 @@ export interface StudyExperimentalGroup {
 
   // configuration parameters
   interactionWidgetStrategy: InteractionWidgetStrategy;
+  // by sensor name, sensors not listed upload raw readings
+  sensorReadingModes: Record<string, SensorReadingConfiguration>;
+  conversationRecording: ConversationRecordingConfiguration;
 }
 
 export interface IStudyRepository {
@@ -53,7 +92,12 @@ export interface IStudyRepository {
   createExperimentalGroup(
     group: Pick<
       StudyExperimentalGroup,
-      'studyId' | 'allocation' | 'internalName' | 'interactionWidgetStrategy'
+      | 'studyId'
+      | 'allocation'
+      | 'internalName'
+      | 'interactionWidgetStrategy'
+      | 'sensorReadingModes'
+      | 'conversationRecording'
     >,
   ): Promise<StudyExperimentalGroup>;
 
@@ -180,17 +224,24 @@ export class StudyRepository extends Repository implements IStudyRepository {
   async createExperimentalGroup(
     group: Pick<
       StudyExperimentalGroup,
-      'studyId' | 'allocation' | 'internalName' | 'interactionWidgetStrategy'
+      | 'studyId'
+      | 'allocation'
+      | 'internalName'
+      | 'interactionWidgetStrategy'
+      | 'sensorReadingModes'
+      | 'conversationRecording'
     >,
   ): Promise<StudyExperimentalGroup> {
     try {
       const res = await this.pool.query(
-        'INSERT INTO study_experimental_groups (internal_name, study_id, allocation, interaction_widget_strategy) VALUES ($1, $2, $3, $4) RETURNING *',
+        'INSERT INTO study_experimental_groups (internal_name, study_id, allocation, interaction_widget_strategy, sensor_reading_modes, conversation_recording) VALUES ($1, $2, $3, $4, $5, $6) RETURNING *',
         [
           group.internalName,
           group.studyId,
           group.allocation,
           group.interactionWidgetStrategy,
+          group.sensorReadingModes,
+          group.conversationRecording,
         ],
       );
 
@@ -200,6 +251,8 @@ export class StudyRepository extends Repository implements IStudyRepository {
         studyId: res.rows[0].study_id,
         allocation: res.rows[0].allocation,
         interactionWidgetStrategy: res.rows[0].interaction_widget_strategy,
+        sensorReadingModes: res.rows[0].sensor_reading_modes,
+        conversationRecording: res.rows[0].conversation_recording,
       };
     } catch (e) {
       throw new DatabaseError((e as Error).message.toString());
@@ -220,6 +273,8 @@ export class StudyRepository extends Repository implements IStudyRepository {
         studyId: row.study_id,
         allocation: row.allocation,
         interactionWidgetStrategy: row.interaction_widget_strategy,
+        sensorReadingModes: row.sensor_reading_modes,
+        conversationRecording: row.conversation_recording,
       }));
     } catch (e) {
       throw new DatabaseError((e as Error).message.toString());
@@ -243,6 +298,8 @@ export class StudyRepository extends Repository implements IStudyRepository {
         studyId: res.rows[0].study_id,
         allocation: res.rows[0].allocation,
         interactionWidgetStrategy: res.rows[0].interaction_widget_strategy,
+        sensorReadingModes: res.rows[0].sensor_reading_modes,
+        conversationRecording: res.rows[0].conversation_recording,
       };
     } catch (e) {
       throw new DatabaseError((e as Error).message.toString());
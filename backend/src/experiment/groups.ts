@@ -1,5 +1,14 @@
 import { InvalidStudyConfigurationError } from '../config/errors';
-import { StudyExperimentalGroup } from '../data/studyRepository';
+import {
+  AudioEncoding,
+  ConversationRecordingConfiguration,
+  MAX_AGGREGATION_WINDOW_MS,
+  MIN_AGGREGATION_WINDOW_MS,
+  SensorReadingConfiguration,
+  SensorReadingMode,
+  SpeechGate,
+  StudyExperimentalGroup,
+} from '../data/studyRepository';
 
 /**
  * Rolls a dice and returns the index of the probability group.
@@ -40,6 +49,97 @@ export function validateProbabilities(probabilities: number[]) {
   }
 }
 
+/**
+ * Validates the reading modes of an experimental group, as they are handed to
+ * the app unchanged.
+ * @param modes The sensor reading modes by sensor name, `undefined` for none.
+ * @returns The validated modes.
+ */
+export function validateSensorReadingModes(
+  modes: unknown,
+): Record<string, SensorReadingConfiguration> {
+  if (modes === undefined || modes === null) {
+    return {};
+  }
+  if (typeof modes !== 'object' || Array.isArray(modes)) {
+    throw new InvalidStudyConfigurationError(
+      'sensorReadingModes must be an object by sensor name',
+    );
+  }
+
+  const validModes = Object.values(SensorReadingMode) as string[];
+  for (const [sensorName, configuration] of Object.entries(modes)) {
+    if (!validModes.includes(configuration?.mode)) {
+      throw new InvalidStudyConfigurationError(
+        `Reading mode of ${sensorName} must be one of ${validModes.join(', ')}`,
+      );
+    }
+
+    const windowMs = configuration.windowMs;
+    if (
+      windowMs !== undefined &&
+      (!Number.isInteger(windowMs) ||
+        windowMs < MIN_AGGREGATION_WINDOW_MS ||
+        windowMs > MAX_AGGREGATION_WINDOW_MS)
+    ) {
+      throw new InvalidStudyConfigurationError(
+        `Aggregation window of ${sensorName} must be an integer from ${MIN_AGGREGATION_WINDOW_MS} to ${MAX_AGGREGATION_WINDOW_MS} ms`,
+      );
+    }
+  }
+
+  return modes as Record<string, SensorReadingConfiguration>;
+}
+
+/**
+ * Validates how the conversation sensor of an experimental group records, as
+ * it is handed to the app unchanged.
+ * @param recording The configuration, `undefined` for the app's defaults.
+ * @returns The validated configuration.
+ */
+export function validateConversationRecording(
+  recording: unknown,
+): ConversationRecordingConfiguration {
+  if (recording === undefined || recording === null) {
+    return {};
+  }
+  if (typeof recording !== 'object' || Array.isArray(recording)) {
+    throw new InvalidStudyConfigurationError(
+      'conversationRecording must be an object',
+    );
+  }
+
+  const { streamingDetection, speechGate, audioEncoding } =
+    recording as Record<string, unknown>;
+  if (
+    streamingDetection !== undefined &&
+    typeof streamingDetection !== 'boolean'
+  ) {
+    throw new InvalidStudyConfigurationError(
+      'streamingDetection must be a boolean',
+    );
+  }
+
+  const validGates = Object.values(SpeechGate) as string[];
+  if (speechGate !== undefined && !validGates.includes(speechGate as string)) {
+    throw new InvalidStudyConfigurationError(
+      `speechGate must be one of ${validGates.join(', ')}`,
+    );
+  }
+
+  const validEncodings = Object.values(AudioEncoding) as string[];
+  if (
+    audioEncoding !== undefined &&
+    !validEncodings.includes(audioEncoding as string)
+  ) {
+    throw new InvalidStudyConfigurationError(
+      `audioEncoding must be one of ${validEncodings.join(', ')}`,
+    );
+  }
+
+  return recording as ConversationRecordingConfiguration;
+}
+
 export function listGroupNames(groups: StudyExperimentalGroup[]): string {
   return groups
     .map((g) => `${g.allocation.type}: ${g.internalName}`)
@@ -10,7 +10,13 @@ import { initializeRepositories, Repositories } from './data/repositoryHelper';
 
 export function makeExpressApp(pool: Pool, repositories: Repositories) {
   const app = express();
-  app.use(express.json());
+  // gzip and deflate request bodies are inflated by the body parsers,
+  // clients only compress once they have seen this header
+  app.use((req, res, next) => {
+    res.set('Accept-Encoding', 'gzip, deflate');
+    next();
+  });
+  app.use(express.json({ limit: Config.app.maxBodySize }));
 
   app.get('/', (req, res) => {
     res.send('Social Interaction Sensing!');
@@ -0,0 +1,82 @@
+import { NextFunction, Request, Response } from 'express';
+import { Readable } from 'node:stream';
+import { createGunzip, createInflate } from 'node:zlib';
+import {
+  READING_BATCH_CONTENT_TYPE,
+  ReadingBatchDecoder,
+} from '../readings/readingBatch';
+import { PayloadTooLargeError } from '../config/errors';
+
+/**
+ * Decodes binary reading batch bodies while they are received and stores the
+ * readings as columns in `req.body`. Other bodies are passed on untouched.
+ *
+ * Unlike `express.raw`, the body is never held in memory as a whole. A batch
+ * is limited by its number of readings and by its size after decompression.
+ */
+export const parseReadingBatch =
+  (maxReadings: number, maxBytes: number) =>
+  (req: Request, res: Response, next: NextFunction) => {
+    if (!req.is(READING_BATCH_CONTENT_TYPE)) {
+      return next();
+    }
+
+    const encoding = (req.get('Content-Encoding') ?? 'identity').toLowerCase();
+    let source: Readable = req;
+    if (encoding === 'gzip') {
+      source = req.pipe(createGunzip());
+    } else if (encoding === 'deflate') {
+      source = req.pipe(createInflate());
+    } else if (encoding !== 'identity') {
+      return res
+        .status(415)
+        .send({ error: `Unsupported content encoding ${encoding}` });
+    }
+
+    const decoder = new ReadingBatchDecoder(maxReadings);
+    let received = 0;
+    let failed = false;
+    const fail = (e: Error) => {
+      if (failed) {
+        return;
+      }
+      failed = true;
+      // drain the rest of the body so the connection can be reused
+      req.unpipe();
+      req.resume();
+      res
+        .status(e instanceof PayloadTooLargeError ? 413 : 400)
+        .send({ error: e.message });
+    };
+
+    source.on('data', (chunk: Buffer) => {
+      if (failed) {
+        return;
+      }
+      // counted after decompression, so a small compressed body cannot
+      // inflate without bound
+      received += chunk.length;
+      if (received > maxBytes) {
+        return fail(
+          new PayloadTooLargeError(`reading batch over ${maxBytes} bytes`),
+        );
+      }
+      try {
+        decoder.push(chunk);
+      } catch (e) {
+        fail(e as Error);
+      }
+    });
+    source.on('end', () => {
+      if (failed) {
+        return;
+      }
+      try {
+        req.body = decoder.end();
+      } catch (e) {
+        return fail(e as Error);
+      }
+      next();
+    });
+    source.on('error', fail);
+  };
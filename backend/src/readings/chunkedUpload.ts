@@ -0,0 +1,125 @@
+import { createHash } from 'node:crypto';
+import fs from 'node:fs/promises';
+import path from 'node:path';
+import { Config } from '../config';
+
+export const FILE_CHUNK_CONTENT_TYPE = 'application/offset+octet-stream';
+
+export class UploadOffsetMismatchError extends Error {
+  constructor(public readonly offset: number) {
+    super(`Upload is at offset ${offset}`);
+  }
+}
+
+// the pending operation per reading, see withUploadLock
+const uploadLocks = new Map<number, Promise<unknown>>();
+
+/**
+ * Runs the operations on the upload of a reading one after another, so
+ * concurrent requests for the same reading cannot interleave.
+ */
+async function withUploadLock<T>(
+  readingId: number,
+  operation: () => Promise<T>,
+): Promise<T> {
+  const previous = uploadLocks.get(readingId) ?? Promise.resolve();
+  const current = previous.catch(() => undefined).then(operation);
+  uploadLocks.set(readingId, current);
+  try {
+    return await current;
+  } finally {
+    if (uploadLocks.get(readingId) === current) {
+      uploadLocks.delete(readingId);
+    }
+  }
+}
+
+function uploadDirectory() {
+  return path.join(process.cwd(), Config.app.uploadLocation);
+}
+
+function partialUploadPath(readingId: number) {
+  return path.join(uploadDirectory(), `reading-${readingId}.part`);
+}
+
+/**
+ * Number of bytes received so far for the file of a reading, 0 if no upload
+ * has been started.
+ */
+export async function getUploadOffset(readingId: number): Promise<number> {
+  try {
+    return (await fs.stat(partialUploadPath(readingId))).size;
+  } catch (e) {
+    if ((e as NodeJS.ErrnoException).code === 'ENOENT') {
+      return 0;
+    }
+    throw e;
+  }
+}
+
+/**
+ * Checks a chunk against an `Upload-Checksum` header of the form
+ * `sha256 <base64 digest>`. Chunks without a checksum are accepted.
+ */
+export function verifyChunkChecksum(
+  chunk: Buffer,
+  checksum: string | undefined,
+): boolean {
+  if (checksum === undefined) {
+    return true;
+  }
+
+  const [algorithm, digest] = checksum.split(' ');
+  return (
+    algorithm === 'sha256' &&
+    createHash('sha256').update(chunk).digest('base64') === digest
+  );
+}
+
+/**
+ * Appends a chunk to the partial file of a reading. The chunk has to start
+ * where the previous one ended, otherwise an UploadOffsetMismatchError with
+ * the current offset is thrown and nothing is written. The offset is checked
+ * and the chunk written under a lock per reading, so two requests sending
+ * the same chunk cannot both append it.
+ *
+ * @returns the offset after the chunk
+ */
+export async function appendChunk(
+  readingId: number,
+  offset: number,
+  chunk: Buffer,
+): Promise<number> {
+  await fs.mkdir(uploadDirectory(), { recursive: true });
+
+  return withUploadLock(readingId, async () => {
+    const handle = await fs.open(partialUploadPath(readingId), 'a');
+    try {
+      const { size } = await handle.stat();
+      if (size !== offset) {
+        throw new UploadOffsetMismatchError(size);
+      }
+      await handle.write(chunk);
+      return size + chunk.length;
+    } finally {
+      await handle.close();
+    }
+  });
+}
+
+/**
+ * Moves a completely received file to its final name, named like the files
+ * stored by multer.
+ *
+ * @returns the path of the file
+ */
+export async function completeUpload(
+  readingId: number,
+  filename: string,
+): Promise<string> {
+  const target = path.join(uploadDirectory(), `${Date.now()}-${filename}`);
+  await withUploadLock(readingId, () =>
+    fs.rename(partialUploadPath(readingId), target),
+  );
+  return target;
+}
@@ -0,0 +1,293 @@
+import { SensorReading } from '../data/sensorReadingRepository';
+import { InvalidReadingEncodingError } from '../config/errors';
+
+export const MOTION_PACKED_V1 = 'motion-packed-v1';
+export const MOTION_GORILLA_V1 = 'motion-gorilla-v1';
+
+// mirrors SensorManager.SENSOR_STATUS_UNRELIABLE on Android
+const SENSOR_STATUS_UNRELIABLE = 0;
+
+// more than any Android sensor reports per sample
+const MAX_CHANNELS = 16;
+
+export interface EncodedReading {
+  sensorType: string;
+  timestamp: string | number;
+  data: string;
+  encoding?: string;
+  channels?: number;
+}
+
+export type DecodedReading = Pick<
+  SensorReading,
+  'sensorType' | 'timestamp' | 'data'
+>;
+
+/**
+ * Expands a chunk of motion samples sent by the app into single readings in the
+ * same text format the app used to store them in (`x,y,z,reliable`).
+ *
+ * Per sample, little endian: int32 milliseconds since the chunk timestamp,
+ * one float32 per channel and an int8 sensor accuracy.
+ */
+export function decodeMotionChunk(chunk: EncodedReading): DecodedReading[] {
+  const bytes = chunkBytes(chunk, MOTION_PACKED_V1);
+  const channels = chunkChannels(chunk, MOTION_PACKED_V1);
+  const sampleSize = 4 + channels * 4 + 1;
+  const start = Number(chunk.timestamp);
+
+  if (
+    bytes.length === 0 ||
+    bytes.length % sampleSize !== 0 ||
+    Number.isNaN(start)
+  ) {
+    throw new InvalidReadingEncodingError(
+      `malformed ${MOTION_PACKED_V1} chunk for ${chunk.sensorType}`,
+    );
+  }
+
+  const readings: DecodedReading[] = [];
+  for (let offset = 0; offset < bytes.length; offset += sampleSize) {
+    const timestamp = start + bytes.readInt32LE(offset);
+
+    const values: number[] = [];
+    for (let channel = 0; channel < channels; channel++) {
+      values.push(bytes.readFloatLE(offset + 4 + channel * 4));
+    }
+    const accuracy = bytes.readInt8(offset + 4 + channels * 4);
+
+    readings.push(toReading(chunk.sensorType, timestamp, values, accuracy));
+  }
+
+  return readings;
+}
+
+function chunkBytes(chunk: EncodedReading, encoding: string): Buffer {
+  if (typeof chunk.data !== 'string') {
+    throw new InvalidReadingEncodingError(
+      `${encoding} chunk for ${chunk.sensorType} without data`,
+    );
+  }
+  return Buffer.from(chunk.data, 'base64');
+}
+
+function chunkChannels(chunk: EncodedReading, encoding: string): number {
+  const channels = chunk.channels ?? 3;
+  if (
+    !Number.isInteger(channels) ||
+    channels < 1 ||
+    channels > MAX_CHANNELS
+  ) {
+    throw new InvalidReadingEncodingError(
+      `${encoding} chunk for ${chunk.sensorType} with ${channels} channels`,
+    );
+  }
+  return channels;
+}
+
+function toReading(
+  sensorType: string,
+  timestamp: number,
+  values: number[],
+  accuracy: number,
+): DecodedReading {
+  return {
+    sensorType,
+    timestamp: timestamp.toString(),
+    data: `${values.join(',')},${accuracy !== SENSOR_STATUS_UNRELIABLE}`,
+  };
+}
+
+// thrown when a chunk ends in the middle of a value, lets streaming decoders
+// tell data that has not arrived yet from malformed data
+export class UnexpectedEndError extends RangeError {
+  constructor() {
+    super('unexpected end of chunk');
+  }
+}
+
+export class ChunkReader {
+  private bitPosition = 0;
+
+  constructor(
+    private readonly bytes: Buffer,
+    private position = 0,
+  ) {}
+
+  atEnd(): boolean {
+    return this.position >= this.bytes.length;
+  }
+
+  offset(): number {
+    return this.position;
+  }
+
+  length(): number {
+    return this.bytes.length;
+  }
+
+  readByte(): number {
+    if (this.position >= this.bytes.length) {
+      throw new UnexpectedEndError();
+    }
+    return this.bytes.readInt8(this.position++);
+  }
+
+  // unsigned LEB128, kept in a double so values above 2^32 survive
+  readVarint(): number {
+    let value = 0;
+    let factor = 1;
+    for (;;) {
+      const byte = this.readByte() & 0xff;
+      value += (byte & 0x7f) * factor;
+      if ((byte & 0x80) === 0) {
+        return value;
+      }
+      factor *= 128;
+    }
+  }
+
+  readUtf8(length: number): string {
+    if (this.position + length > this.bytes.length) {
+      throw new UnexpectedEndError();
+    }
+    const value = this.bytes.toString(
+      'utf8',
+      this.position,
+      this.position + length,
+    );
+    this.position += length;
+    return value;
+  }
+
+  readZigzag(): number {
+    const value = this.readVarint();
+    return value % 2 === 0 ? value / 2 : -(value + 1) / 2;
+  }
+
+  startBits() {
+    this.bitPosition = this.position * 8;
+  }
+
+  // at most 32 bits, returned unsigned
+  readBits(count: number): number {
+    let value = 0;
+    while (count > 0) {
+      const index = this.bitPosition >> 3;
+      if (index >= this.bytes.length) {
+        throw new UnexpectedEndError();
+      }
+      const available = 8 - (this.bitPosition & 7);
+      const take = Math.min(available, count);
+      const bits = (this.bytes[index] >> (available - take)) & ((1 << take) - 1);
+      value = value * 2 ** take + bits;
+      this.bitPosition += take;
+      count -= take;
+    }
+    return value;
+  }
+}
+
+/**
+ * Expands a compressed chunk of samples, see `MotionChunkEncoder` in the app
+ * for the layout: delta-of-delta varint timestamps, run length encoded
+ * accuracies and Gorilla XOR compressed float32 values.
+ */
+export function decodeGorillaChunk(chunk: EncodedReading): DecodedReading[] {
+  const reader = new ChunkReader(chunkBytes(chunk, MOTION_GORILLA_V1));
+  const channels = chunkChannels(chunk, MOTION_GORILLA_V1);
+  const start = Number(chunk.timestamp);
+
+  try {
+    if (Number.isNaN(start)) {
+      throw new RangeError('invalid chunk timestamp');
+    }
+
+    // every sample after the first takes at least one byte for its
+    // timestamp, a larger count cannot be backed by the chunk
+    const count = reader.readVarint();
+    if (count > reader.length() + 1) {
+      throw new RangeError(`sample count ${count} exceeds chunk size`);
+    }
+
+    const timestamps = [start];
+    let delta = 0;
+    for (let i = 1; i < count; i++) {
+      delta += reader.readZigzag();
+      timestamps.push(timestamps[i - 1] + delta);
+    }
+
+    const accuracies: number[] = [];
+    while (accuracies.length < count) {
+      const accuracy = reader.readByte();
+      const run = reader.readVarint();
+      if (run === 0 || run > count - accuracies.length) {
+        throw new RangeError(`invalid accuracy run of ${run}`);
+      }
+      for (let i = 0; i < run; i++) {
+        accuracies.push(accuracy);
+      }
+    }
+
+    reader.startBits();
+    const floatBits = Buffer.alloc(4);
+    const previous = new Array<number>(channels).fill(0);
+    const leading = new Array<number>(channels).fill(0);
+    const trailing = new Array<number>(channels).fill(0);
+
+    const readings: DecodedReading[] = [];
+    for (let i = 0; i < count; i++) {
+      const values: number[] = [];
+      for (let channel = 0; channel < channels; channel++) {
+        if (i === 0) {
+          previous[channel] = reader.readBits(32);
+        } else if (reader.readBits(1) === 1) {
+          if (reader.readBits(1) === 1) {
+            leading[channel] = reader.readBits(5);
+            const meaningful = reader.readBits(5) + 1;
+            trailing[channel] = 32 - leading[channel] - meaningful;
+          }
+          const meaningful = 32 - leading[channel] - trailing[channel];
+          const xor = reader.readBits(meaningful) * 2 ** trailing[channel];
+          previous[channel] = (previous[channel] ^ xor) >>> 0;
+        }
+
+        floatBits.writeUInt32BE(previous[channel]);
+        values.push(floatBits.readFloatBE());
+      }
+
+      readings.push(
+        toReading(chunk.sensorType, timestamps[i], values, accuracies[i]),
+      );
+    }
+
+    return readings;
+  } catch (e) {
+    throw new InvalidReadingEncodingError(
+      `malformed ${MOTION_GORILLA_V1} chunk for ${chunk.sensorType}`,
+    );
+  }
+}
+
+/**
+ * Replaces encoded entries of a reading batch by the readings they contain,
+ * plain readings are passed through.
+ */
+export function expandEncodedReadings(
+  readings: EncodedReading[],
+): DecodedReading[] {
+  return readings.flatMap((reading) => {
+    switch (reading.encoding) {
+      case undefined:
+        return [reading as DecodedReading];
+      case MOTION_PACKED_V1:
+        return decodeMotionChunk(reading);
+      case MOTION_GORILLA_V1:
+        return decodeGorillaChunk(reading);
+      default:
+        throw new InvalidReadingEncodingError(
+          `unknown encoding ${reading.encoding}`,
+        );
+    }
+  });
+}
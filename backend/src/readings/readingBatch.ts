@@ -0,0 +1,182 @@
+import {
+  InvalidReadingEncodingError,
+  PayloadTooLargeError,
+} from '../config/errors';
+import { ReadingColumns } from '../data/sensorReadingRepository';
+import { ChunkReader, UnexpectedEndError } from './motionChunk';
+
+export const READING_BATCH_CONTENT_TYPE =
+  'application/vnd.sisensing.readings-v1';
+
+const MAGIC = 'SRB1';
+const COLUMN_INTEGER = 0;
+const COLUMN_STRING = 1;
+const STRING_NEW = 0;
+const STRING_LITERAL = 1;
+
+// a single block is at most this large, guards against bodies that never
+// complete a block
+const MAX_PENDING_BYTES = 16 * 1024 * 1024;
+// the app never adds more strings to the dictionary, see `ReadingBatchEncoder`
+const MAX_DICTIONARY_SIZE = 4096;
+const MAX_STRING_BYTES = 1024 * 1024;
+
+/**
+ * Decodes a binary reading batch while it is received, see
+ * `ReadingBatchEncoder` in the app for the layout: blocks of readings grouped
+ * by sensor type, with delta encoded timestamps, integer or string value
+ * columns and a string dictionary shared by the whole batch.
+ *
+ * Every complete block is decoded as soon as its last byte has been pushed,
+ * only the incomplete block at the end is kept. Readings are collected as
+ * columns, ready to be inserted in bulk.
+ */
+export class ReadingBatchDecoder {
+  private readonly columns: ReadingColumns = {
+    sensorTypes: [],
+    timestamps: [],
+    data: [],
+  };
+  private readonly dictionary: string[] = [];
+  private pending = Buffer.alloc(0);
+  private started = false;
+  // an incomplete block is only decoded again once this much has arrived,
+  // so a large block is not decoded over and over for every small chunk
+  private retryAt = 0;
+
+  constructor(private readonly maxReadings = Infinity) {}
+
+  push(chunk: Buffer) {
+    this.pending =
+      this.pending.length === 0 ? chunk : Buffer.concat([this.pending, chunk]);
+
+    if (!this.started) {
+      if (this.pending.length < MAGIC.length) {
+        return;
+      }
+      if (this.pending.toString('latin1', 0, MAGIC.length) !== MAGIC) {
+        throw new InvalidReadingEncodingError('not a reading batch');
+      }
+      this.pending = this.pending.subarray(MAGIC.length);
+      this.started = true;
+    }
+
+    if (this.pending.length >= this.retryAt) {
+      this.decodeBlocks();
+    }
+    if (this.pending.length > MAX_PENDING_BYTES) {
+      throw new PayloadTooLargeError('reading batch block too large');
+    }
+  }
+
+  /**
+   * @returns all readings of the batch, once the whole body has been pushed
+   */
+  end(): ReadingColumns {
+    if (this.started && this.pending.length > 0) {
+      this.decodeBlocks();
+    }
+    if (!this.started || this.pending.length > 0) {
+      throw new InvalidReadingEncodingError(
+        'malformed reading batch: unexpected end of batch',
+      );
+    }
+    return this.columns;
+  }
+
+  private decodeBlocks() {
+    const reader = new ChunkReader(this.pending);
+    let consumed = 0;
+    while (!reader.atEnd() && this.decodeBlock(reader)) {
+      consumed = reader.offset();
+    }
+    this.pending = this.pending.subarray(consumed);
+    this.retryAt = this.pending.length * 2;
+  }
+
+  // false if the block is not complete yet, nothing of it is kept then
+  private decodeBlock(reader: ChunkReader): boolean {
+    const readings = this.columns.sensorTypes.length;
+    const strings = this.dictionary.length;
+
+    try {
+      const groups = reader.readVarint();
+      for (let group = 0; group < groups; group++) {
+        this.decodeGroup(reader);
+      }
+      return true;
+    } catch (e) {
+      this.columns.sensorTypes.length = readings;
+      this.columns.timestamps.length = readings;
+      this.columns.data.length = readings;
+      this.dictionary.length = strings;
+
+      if (e instanceof UnexpectedEndError) {
+        return false;
+      }
+      if (e instanceof PayloadTooLargeError) {
+        throw e;
+      }
+      throw new InvalidReadingEncodingError(
+        `malformed reading batch: ${(e as Error).message}`,
+      );
+    }
+  }
+
+  private decodeGroup(reader: ChunkReader) {
+    const sensorType = this.readString(reader);
+    const count = reader.readVarint();
+    const column = reader.readByte();
+    if (column !== COLUMN_INTEGER && column !== COLUMN_STRING) {
+      throw new RangeError(`unknown column type ${column}`);
+    }
+    if (this.columns.sensorTypes.length + count > this.maxReadings) {
+      throw new PayloadTooLargeError(
+        `more than ${this.maxReadings} readings in one batch`,
+      );
+    }
+
+    const { sensorTypes, timestamps, data } = this.columns;
+    let timestamp = 0;
+    for (let i = 0; i < count; i++) {
+      timestamp += reader.readZigzag();
+      sensorTypes.push(sensorType);
+      timestamps.push(timestamp.toString());
+    }
+    for (let i = 0; i < count; i++) {
+      data.push(
+        column === COLUMN_INTEGER
+          ? reader.readZigzag().toString()
+          : this.readString(reader),
+      );
+    }
+  }
+
+  private readString(reader: ChunkReader): string {
+    const reference = reader.readVarint();
+    if (reference === STRING_NEW || reference === STRING_LITERAL) {
+      const length = reader.readVarint();
+      if (length > MAX_STRING_BYTES) {
+        throw new PayloadTooLargeError(
+          `string of more than ${MAX_STRING_BYTES} bytes in reading batch`,
+        );
+      }
+      const value = reader.readUtf8(length);
+      if (reference === STRING_NEW) {
+        if (this.dictionary.length >= MAX_DICTIONARY_SIZE) {
+          throw new RangeError(
+            `more than ${MAX_DICTIONARY_SIZE} strings in the dictionary`,
+          );
+        }
+        this.dictionary.push(value);
+      }
+      return value;
+    }
+
+    const value = this.dictionary[reference - 2];
+    if (value === undefined) {
+      throw new RangeError(`unknown string reference ${reference}`);
+    }
+    return value;
+  }
+}
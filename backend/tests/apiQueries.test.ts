@@ -4,6 +4,9 @@ import { makeExpressApp } from '../src';
 import { Config } from '../src/config';
 import jwt from 'jsonwebtoken';
 import { initializeRepositories } from '../src/data/repositoryHelper';
+import { gzipSync } from 'zlib';
+import { createHash } from 'crypto';
+import { readFile, rm } from 'fs/promises';
 
 const pool = usePool();
 const app = makeExpressApp(pool, initializeRepositories(pool));
@@ -161,6 +164,139 @@ test('should enrol in study with participant id', async () => {
   expect(res.body.configuration).toHaveProperty('interactionWidgetStrategy');
 });
 
+test('should pass the sensor reading modes of the group to the participant', async () => {
+  const token = generateAdminToken();
+
+  const study = await request(app)
+    .post('/v1/study')
+    .set({ Authorization: 'Bearer ' + token })
+    .send(dummyStudy);
+
+  await request(app)
+    .post(`/v1/study/${study.body.id}/group`)
+    .set({ Authorization: 'Bearer ' + token })
+    .send({
+      internalName: 'group1',
+      allocation: {
+        type: 'Manual',
+      },
+      interactionWidgetStrategy: 'Default',
+      sensorReadingModes: {
+        Accelerometer: { mode: 'Aggregate', windowMs: 1000 },
+        'Audio Level': { mode: 'Both' },
+      },
+    });
+
+  const res = await request(app)
+    .post('/v1/enrolment')
+    .send({ enrolmentKey: 'key' });
+
+  expect(res.statusCode).toBe(200);
+  expect(res.body.configuration.sensorReadingModes).toEqual({
+    Accelerometer: { mode: 'Aggregate', windowMs: 1000 },
+    'Audio Level': { mode: 'Both' },
+  });
+});
+
+test('should fail creating a group with invalid sensor reading modes', async () => {
+  const token = generateAdminToken();
+
+  const study = await request(app)
+    .post('/v1/study')
+    .set({ Authorization: 'Bearer ' + token })
+    .send(dummyStudy);
+
+  for (const sensorReadingModes of [
+    { Accelerometer: { mode: 'Aggregate', windowMs: 0 } },
+    { Accelerometer: { mode: 'Aggregate', windowMs: -1000 } },
+    { Accelerometer: { mode: 'Aggregate', windowMs: 'soon' } },
+    { Accelerometer: { mode: 'Sometimes' } },
+    { Accelerometer: 'Raw' },
+    ['Accelerometer'],
+  ]) {
+    const res = await request(app)
+      .post(`/v1/study/${study.body.id}/group`)
+      .set({ Authorization: 'Bearer ' + token })
+      .send({
+        internalName: 'group1',
+        allocation: {
+          type: 'Manual',
+        },
+        interactionWidgetStrategy: 'Default',
+        sensorReadingModes,
+      });
+
+    expect(res.statusCode).toBe(400);
+  }
+});
+
+test('should pass the conversation recording of the group to the participant', async () => {
+  const token = generateAdminToken();
+
+  const study = await request(app)
+    .post('/v1/study')
+    .set({ Authorization: 'Bearer ' + token })
+    .send(dummyStudy);
+
+  await request(app)
+    .post(`/v1/study/${study.body.id}/group`)
+    .set({ Authorization: 'Bearer ' + token })
+    .send({
+      internalName: 'group1',
+      allocation: {
+        type: 'Manual',
+      },
+      interactionWidgetStrategy: 'Default',
+      conversationRecording: {
+        streamingDetection: false,
+        speechGate: 'webrtc',
+        audioEncoding: 'lossless',
+      },
+    });
+
+  const res = await request(app)
+    .post('/v1/enrolment')
+    .send({ enrolmentKey: 'key' });
+
+  expect(res.statusCode).toBe(200);
+  expect(res.body.configuration.conversationRecording).toEqual({
+    streamingDetection: false,
+    speechGate: 'webrtc',
+    audioEncoding: 'lossless',
+  });
+});
+
+test('should fail creating a group with invalid conversation recording', async () => {
+  const token = generateAdminToken();
+
+  const study = await request(app)
+    .post('/v1/study')
+    .set({ Authorization: 'Bearer ' + token })
+    .send(dummyStudy);
+
+  for (const conversationRecording of [
+    { streamingDetection: 'no' },
+    { speechGate: 'loud' },
+    { audioEncoding: 'mp3' },
+    'lossless',
+    ['webrtc'],
+  ]) {
+    const res = await request(app)
+      .post(`/v1/study/${study.body.id}/group`)
+      .set({ Authorization: 'Bearer ' + token })
+      .send({
+        internalName: 'group1',
+        allocation: {
+          type: 'Manual',
+        },
+        interactionWidgetStrategy: 'Default',
+        conversationRecording,
+      });
+
+    expect(res.statusCode).toBe(400);
+  }
+});
+
 // enrolment failures
 
 test('should fail because of percentage misconfiguration (higher)', async () => {
@@ -330,6 +466,415 @@ test('should create a batch of sensor readings', async () => {
   expect(res.body[1]).toMatchObject({ sensorType: 'type', data: 'data' });
 });
 
+test('should create a gzip compressed batch of sensor readings', async () => {
+  await initializeBetweenGroupsStudy();
+
+  const enrol = await request(app)
+    .post('/v1/enrolment')
+    .send({ enrolmentKey: 'key' });
+
+  const readings = [];
+  for (let i = 0; i < 100; i++) {
+    readings.push({ sensorType: 'type', data: 'data', timestamp: 1000 + i });
+  }
+
+  const res = await request(app)
+    .post('/v1/reading/batch')
+    .set({
+      Authorization: 'Bearer ' + enrol.body.token,
+      'Content-Type': 'application/json',
+      'Content-Encoding': 'gzip',
+    })
+    .send(gzipSync(JSON.stringify(readings)));
+
+  expect(res.statusCode).toBe(200);
+  expect(res.headers['accept-encoding']).toContain('gzip');
+  expect(res.body).toHaveLength(100);
+  expect(res.body[99]).toMatchObject({ sensorType: 'type', timestamp: '1099' });
+});
+
+test('should create readings from a binary reading batch', async () => {
+  await initializeBetweenGroupsStudy();
+
+  const enrol = await request(app)
+    .post('/v1/enrolment')
+    .send({ enrolmentKey: 'key' });
+
+  // written by ReadingBatchEncoder in the app: three groups, the audio level
+  // as string column (because of "007"), the ringtone volume as integers
+  const batch = Buffer.from(
+    'U1JCMQMAC0F1ZGlvIExldmVsAwHQD9AP0A8AAzEyMAACLTcAAzAwNwANU2NyZWVuIE9uL09mZgMB2g+uF8gBAAJPTgADT0ZGBwAPUmluZ3RvbmUgVm9sdW1lAgCYKmMGCQ==',
+    'base64',
+  );
+
+  const res = await request(app)
+    .post('/v1/reading/batch')
+    .set({
+      Authorization: 'Bearer ' + enrol.body.token,
+      'Content-Type': 'application/vnd.sisensing.readings-v1',
+    })
+    .send(batch);
+
+  expect(res.statusCode).toBe(200);
+  expect(res.headers['accept-post']).toContain(
+    'application/vnd.sisensing.readings-v1',
+  );
+  expect(res.body).toEqual({ count: 8 });
+
+  const stored = await pool.query(
+    'SELECT sensor_type, timestamp, data FROM sensor_readings ORDER BY id DESC LIMIT 8',
+  );
+  expect(
+    stored.rows
+      .reverse()
+      .map((r) => `${r.sensor_type}|${r.timestamp}|${r.data}`),
+  ).toEqual([
+    'Audio Level|1000|120',
+    'Audio Level|2000|-7',
+    'Audio Level|3000|007',
+    'Screen On/Off|1005|ON',
+    'Screen On/Off|2500|OFF',
+    'Screen On/Off|2600|ON',
+    'Ringtone Volume|2700|3',
+    'Ringtone Volume|2650|-5',
+  ]);
+
+  const truncated = await request(app)
+    .post('/v1/reading/batch')
+    .set({
+      Authorization: 'Bearer ' + enrol.body.token,
+      'Content-Type': 'application/vnd.sisensing.readings-v1',
+    })
+    .send(batch.subarray(0, 40));
+
+  expect(truncated.statusCode).toBe(400);
+
+  const compressed = await request(app)
+    .post('/v1/reading/batch')
+    .set({
+      Authorization: 'Bearer ' + enrol.body.token,
+      'Content-Type': 'application/vnd.sisensing.readings-v1',
+      'Content-Encoding': 'gzip',
+    })
+    .send(gzipSync(batch));
+
+  expect(compressed.statusCode).toBe(200);
+  expect(compressed.body).toEqual({ count: 8 });
+});
+
+test('should reject binary reading batches that are too large', async () => {
+  await initializeBetweenGroupsStudy();
+
+  const enrol = await request(app)
+    .post('/v1/enrolment')
+    .send({ enrolmentKey: 'key' });
+
+  // empty blocks that inflate past the body size limit
+  const inflated = Buffer.alloc(11 * 1024 * 1024);
+  inflated.write('SRB1', 'latin1');
+
+  const bomb = await request(app)
+    .post('/v1/reading/batch')
+    .set({
+      Authorization: 'Bearer ' + enrol.body.token,
+      'Content-Type': 'application/vnd.sisensing.readings-v1',
+      'Content-Encoding': 'gzip',
+    })
+    .send(gzipSync(inflated));
+
+  expect(bomb.statusCode).toBe(413);
+
+  // one group whose sensor type claims to be 2 MiB long
+  const longString = await request(app)
+    .post('/v1/reading/batch')
+    .set({
+      Authorization: 'Bearer ' + enrol.body.token,
+      'Content-Type': 'application/vnd.sisensing.readings-v1',
+    })
+    .send(
+      Buffer.concat([
+        Buffer.from('SRB1', 'latin1'),
+        Buffer.from([0x01, 0x00, 0x80, 0x80, 0x80, 0x01]),
+      ]),
+    );
+
+  expect(longString.statusCode).toBe(413);
+});
+
+test('should store a re-sent batch of sensor readings only once', async () => {
+  await initializeBetweenGroupsStudy();
+
+  const enrol = await request(app)
+    .post('/v1/enrolment')
+    .send({ enrolmentKey: 'key' });
+
+  const readings = [
+    { sensorType: 'type', data: 'once', timestamp: '1000' },
+    { sensorType: 'type', data: 'once', timestamp: '1001' },
+  ];
+  const headers = {
+    Authorization: 'Bearer ' + enrol.body.token,
+    'Batch-Id': '3f0c2a6e-5d1b-4c8e-9a7f-2b6d1e4c8a90',
+    'Batch-Sequence': '1',
+  };
+
+  const first = await request(app)
+    .post('/v1/reading/batch')
+    .set(headers)
+    .send(readings);
+  expect(first.statusCode).toBe(200);
+  expect(first.body).toEqual({ count: 2, duplicate: false });
+
+  const resent = await request(app)
+    .post('/v1/reading/batch')
+    .set(headers)
+    .send(readings);
+  expect(resent.statusCode).toBe(200);
+  expect(resent.body).toEqual({ count: 2, duplicate: true });
+
+  const stored = await pool.query(
+    "SELECT count(*) FROM sensor_readings WHERE data = 'once'",
+  );
+  expect(Number(stored.rows[0].count)).toBe(2);
+
+  const invalid = await request(app)
+    .post('/v1/reading/batch')
+    .set({ ...headers, 'Batch-Sequence': 'next' })
+    .send(readings);
+  expect(invalid.statusCode).toBe(400);
+});
+
+test('should upload the file of a reading in chunks', async () => {
+  await initializeBetweenGroupsStudy();
+
+  const enrol = await request(app)
+    .post('/v1/enrolment')
+    .send({ enrolmentKey: 'key' });
+
+  const reading = await request(app)
+    .post('/v1/reading')
+    .set({ Authorization: 'Bearer ' + enrol.body.token })
+    .send({ sensorType: 'type', data: 'recording.webm', timestamp: '1000' });
+
+  const file = Buffer.from('0123456789abcdefghij');
+  const url = `/v1/reading/${reading.body.id}/file`;
+  const sendChunk = (offset: number, chunk: Buffer, checksum?: string) =>
+    request(app)
+      .patch(url)
+      .set({
+        Authorization: 'Bearer ' + enrol.body.token,
+        'Content-Type': 'application/offset+octet-stream',
+        'Upload-Offset': offset.toString(),
+        'Upload-Length': file.length.toString(),
+        'Upload-Filename': 'recording.webm',
+        'Upload-Checksum':
+          'sha256 ' +
+          (checksum ?? createHash('sha256').update(chunk).digest('base64')),
+      })
+      .send(chunk);
+
+  const started = await request(app)
+    .head(url)
+    .set({ Authorization: 'Bearer ' + enrol.body.token });
+  expect(started.headers['upload-offset']).toBe('0');
+
+  const other = await request(app)
+    .post('/v1/enrolment')
+    .send({ enrolmentKey: 'key' });
+  const foreign = await request(app)
+    .head(url)
+    .set({ Authorization: 'Bearer ' + other.body.token });
+  expect(foreign.statusCode).toBe(404);
+
+  // the same chunk sent twice at once is only appended once
+  const [first, concurrent] = await Promise.all([
+    sendChunk(0, file.subarray(0, 8)),
+    sendChunk(0, file.subarray(0, 8)),
+  ]);
+  expect([first.statusCode, concurrent.statusCode].sort()).toEqual([
+    204, 409,
+  ]);
+  expect(first.headers['upload-offset']).toBe('8');
+  expect(concurrent.headers['upload-offset']).toBe('8');
+
+  const corrupted = await sendChunk(8, file.subarray(8, 16), 'AAAA');
+  expect(corrupted.statusCode).toBe(400);
+
+  const repeated = await sendChunk(0, file.subarray(0, 8));
+  expect(repeated.statusCode).toBe(409);
+  expect(repeated.headers['upload-offset']).toBe('8');
+
+  const resumed = await request(app)
+    .head(url)
+    .set({ Authorization: 'Bearer ' + enrol.body.token });
+  expect(resumed.headers['upload-offset']).toBe('8');
+
+  const second = await sendChunk(8, file.subarray(8, 16));
+  expect(second.statusCode).toBe(204);
+
+  const last = await sendChunk(16, file.subarray(16));
+  expect(last.statusCode).toBe(200);
+  expect(last.body).toMatchObject({
+    readingId: reading.body.id,
+    filename: 'recording.webm',
+  });
+  expect(await readFile(last.body.path)).toEqual(file);
+
+  const completed = await request(app)
+    .head(url)
+    .set({ Authorization: 'Bearer ' + enrol.body.token });
+  expect(completed.headers['upload-complete']).toBe('?1');
+
+  await rm(last.body.path);
+});
+
+test('should expand motion chunks in a batch of sensor readings', async () => {
+  await initializeBetweenGroupsStudy();
+
+  const enrol = await request(app)
+    .post('/v1/enrolment')
+    .send({ enrolmentKey: 'key' });
+
+  // two samples with three channels, the second one unreliable
+  const chunk = Buffer.alloc(2 * 17);
+  chunk.writeInt32LE(0, 0);
+  chunk.writeFloatLE(1.5, 4);
+  chunk.writeFloatLE(-2, 8);
+  chunk.writeFloatLE(9.75, 12);
+  chunk.writeInt8(3, 16);
+  chunk.writeInt32LE(20, 17);
+  chunk.writeFloatLE(0.5, 21);
+  chunk.writeFloatLE(0, 25);
+  chunk.writeFloatLE(-1, 29);
+  chunk.writeInt8(0, 33);
+
+  const res = await request(app)
+    .post('/v1/reading/batch')
+    .set({ Authorization: 'Bearer ' + enrol.body.token })
+    .send([
+      {
+        sensorType: 'Accelerometer',
+        timestamp: 1000,
+        encoding: 'motion-packed-v1',
+        channels: 3,
+        data: chunk.toString('base64'),
+      },
+    ]);
+
+  expect(res.statusCode).toBe(200);
+  expect(res.body).toHaveLength(2);
+  expect(res.body[0]).toMatchObject({
+    sensorType: 'Accelerometer',
+    timestamp: '1000',
+    data: '1.5,-2,9.75,true',
+  });
+  expect(res.body[1]).toMatchObject({
+    sensorType: 'Accelerometer',
+    timestamp: '1020',
+    data: '0.5,0,-1,false',
+  });
+
+  // no channels, fractional channels, and a payload that is not a whole
+  // number of samples
+  for (const malformed of [
+    { channels: 0, data: chunk.toString('base64') },
+    { channels: -1.25, data: chunk.toString('base64') },
+    { channels: 3, data: chunk.subarray(0, 20).toString('base64') },
+    { channels: 3, data: '' },
+  ]) {
+    const rejected = await request(app)
+      .post('/v1/reading/batch')
+      .set({ Authorization: 'Bearer ' + enrol.body.token })
+      .send([
+        {
+          sensorType: 'Accelerometer',
+          timestamp: 1000,
+          encoding: 'motion-packed-v1',
+          ...malformed,
+        },
+      ]);
+
+    expect(rejected.statusCode).toBe(400);
+  }
+});
+
+test('should expand compressed motion chunks in a batch of sensor readings', async () => {
+  await initializeBetweenGroupsStudy();
+
+  const enrol = await request(app)
+    .post('/v1/enrolment')
+    .send({ enrolmentKey: 'key' });
+
+  // four samples with three channels as encoded by the app, the last two unreliable
+  const chunk = 'BCgAAgMCAAI/wAAAwAAAAEEcAAA2g6A+APgZ/TA=';
+
+  const res = await request(app)
+    .post('/v1/reading/batch')
+    .set({ Authorization: 'Bearer ' + enrol.body.token })
+    .send([
+      {
+        sensorType: 'Accelerometer',
+        timestamp: 1000,
+        encoding: 'motion-gorilla-v1',
+        channels: 3,
+        data: chunk,
+      },
+    ]);
+
+  expect(res.statusCode).toBe(200);
+  expect(res.body.map((r: { timestamp: string }) => r.timestamp)).toEqual([
+    '1000',
+    '1020',
+    '1040',
+    '1061',
+  ]);
+  expect(res.body.map((r: { data: string }) => r.data)).toEqual([
+    '1.5,-2,9.75,true',
+    '1.5,-2,9.5,true',
+    '0.5,0,-1,false',
+    '0.5,0,-1,false',
+  ]);
+
+  const truncated = await request(app)
+    .post('/v1/reading/batch')
+    .set({ Authorization: 'Bearer ' + enrol.body.token })
+    .send([
+      {
+        sensorType: 'Accelerometer',
+        timestamp: 1000,
+        encoding: 'motion-gorilla-v1',
+        channels: 3,
+        data: chunk.substring(0, 20),
+      },
+    ]);
+
+  expect(truncated.statusCode).toBe(400);
+
+  // a sample count the chunk cannot hold, and an accuracy run of a million
+  // samples in a chunk of four
+  for (const data of [
+    Buffer.from([0xff, 0xff, 0x03, 0x00]).toString('base64'),
+    Buffer.from([0x04, 0x28, 0x00, 0x02, 0x03, 0xc0, 0x84, 0x3d]).toString(
+      'base64',
+    ),
+  ]) {
+    const malformed = await request(app)
+      .post('/v1/reading/batch')
+      .set({ Authorization: 'Bearer ' + enrol.body.token })
+      .send([
+        {
+          sensorType: 'Accelerometer',
+          timestamp: 1000,
+          encoding: 'motion-gorilla-v1',
+          channels: 3,
+          data,
+        },
+      ]);
+
+    expect(malformed.statusCode).toBe(400);
+  }
+});
+
 test('should fetch questionnaires in a study', async () => {
   const token = generateAdminToken();
   const study = await request(app)
@@ -0,0 +1,139 @@
+import request from 'supertest';
+import jwt from 'jsonwebtoken';
+import { usePool } from '../../src/config/database';
+import { makeExpressApp } from '../../src';
+import { Config } from '../../src/config';
+import { initializeRepositories } from '../../src/data/repositoryHelper';
+
+// Posts binary reading batches of increasing size and reports rows per second
+// and request latency. Run against a local database with `npm run test:load`,
+// the readings are deleted afterwards.
+
+const pool = usePool();
+const app = makeExpressApp(pool, initializeRepositories(pool));
+
+const SIZES = [10_000, 100_000, 1_000_000];
+const REQUESTS = Number(process.env.LOAD_TEST_REQUESTS) || 10;
+const BLOCK_SIZE = 1024;
+
+let enrolment: { enrolmentId: number; token: string };
+
+function writeVarint(out: number[], value: number) {
+  while (value >= 0x80) {
+    out.push((value % 0x80) | 0x80);
+    value = Math.floor(value / 0x80);
+  }
+  out.push(value);
+}
+
+function writeZigzag(out: number[], value: number) {
+  writeVarint(out, value < 0 ? -value * 2 - 1 : value * 2);
+}
+
+// the layout written by ReadingBatchEncoder in the app, one integer group per
+// block with readings every 20 ms
+function encodeBatch(count: number): Buffer {
+  const out: number[] = [];
+  for (const c of 'SRB1') {
+    out.push(c.charCodeAt(0));
+  }
+
+  for (let start = 0; start < count; start += BLOCK_SIZE) {
+    const size = Math.min(BLOCK_SIZE, count - start);
+    writeVarint(out, 1);
+    if (start === 0) {
+      writeVarint(out, 0);
+      writeVarint(out, 'Load'.length);
+      for (const c of 'Load') {
+        out.push(c.charCodeAt(0));
+      }
+    } else {
+      writeVarint(out, 2);
+    }
+    writeVarint(out, size);
+    out.push(0);
+
+    writeZigzag(out, 1_700_000_000_000 + start * 20);
+    for (let i = 1; i < size; i++) {
+      writeZigzag(out, 20);
+    }
+    for (let i = 0; i < size; i++) {
+      writeZigzag(out, (start + i) % 100);
+    }
+  }
+  return Buffer.from(out);
+}
+
+function percentile(sorted: number[], p: number): number {
+  return sorted[Math.min(sorted.length - 1, Math.ceil(sorted.length * p) - 1)];
+}
+
+beforeAll(async () => {
+  const admin = jwt.sign({ role: 'admin' }, Config.auth.jwtSecret, {
+    expiresIn: '1h',
+  });
+  const enrolmentKey = `load-${Date.now()}`;
+
+  const study = await request(app)
+    .post('/v1/study')
+    .set({ Authorization: 'Bearer ' + admin })
+    .send({
+      enrolmentKey,
+      name: enrolmentKey,
+      maxEnrolments: -1,
+      durationDays: 1,
+    });
+  await request(app)
+    .post(`/v1/study/${study.body.id}/group`)
+    .set({ Authorization: 'Bearer ' + admin })
+    .send({
+      internalName: 'load',
+      allocation: { type: 'Percentage', percentage: 1 },
+      interactionWidgetStrategy: 'Default',
+    });
+
+  const enrol = await request(app).post('/v1/enrolment').send({ enrolmentKey });
+  const payload = jwt.decode(enrol.body.token) as { enrolmentId: number };
+  enrolment = { enrolmentId: payload.enrolmentId, token: enrol.body.token };
+});
+
+afterAll(async () => {
+  await pool.query('DELETE FROM sensor_readings WHERE enrolment_id = $1', [
+    enrolment.enrolmentId,
+  ]);
+  await pool.end();
+});
+
+test.each(SIZES)(
+  'ingests binary batches of %i readings',
+  async (size) => {
+    const batch = encodeBatch(size);
+    const latencies: number[] = [];
+
+    const started = performance.now();
+    for (let i = 0; i < REQUESTS; i++) {
+      const sent = performance.now();
+      const res = await request(app)
+        .post('/v1/reading/batch')
+        .set({
+          Authorization: 'Bearer ' + enrolment.token,
+          'Content-Type': 'application/vnd.sisensing.readings-v1',
+        })
+        .send(batch);
+      latencies.push(performance.now() - sent);
+
+      expect(res.statusCode).toBe(200);
+      expect(res.body).toEqual({ count: size });
+    }
+    const elapsed = performance.now() - started;
+
+    latencies.sort((a, b) => a - b);
+    console.log(
+      `${size} readings/request, ${batch.length} bytes: ` +
+        `${Math.round((size * REQUESTS) / (elapsed / 1000))} rows/s, ` +
+        `p50 ${percentile(latencies, 0.5).toFixed(0)} ms, ` +
+        `p99 ${percentile(latencies, 0.99).toFixed(0)} ms`,
+    );
+  },
+  30 * 60 * 1000,
+);